@@ -0,0 +1,28 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Chạy JMH như org.openjdk.jmh.Main nhưng luôn bật GC profiler,
+ * để mỗi kết quả có cả throughput lẫn tốc độ cấp phát (gc.alloc.rate.norm).
+ *
+ *   java -jar target/benchmarks.jar                      chạy tất cả
+ *   java -jar target/benchmarks.jar ConverterBenchmark -p cues=1000
+ */
+public final class BenchmarkMain {
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(cli)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
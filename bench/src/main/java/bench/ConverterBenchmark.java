@@ -0,0 +1,78 @@
+package bench;
+
+import logic.Converter;
+import logic.SubtitleFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đo từng đường chuyển đổi của Converter trên file giả lập 1k, 100k và 1M cue.
+ * Chạy qua BenchmarkMain để có thêm số liệu cấp phát bộ nhớ của GC profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class ConverterBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"1000", "100000", "1000000"})
+    public int cues;
+
+    private File dir;
+    private File srt;
+    private File vtt;
+    private File lrc;
+    private File outLrc;
+    private File outSrt;
+    private File outVtt;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("converter-bench").toFile();
+        srt = new File(dir, "input.srt");
+        vtt = new File(dir, "input.vtt");
+        lrc = new File(dir, "input.lrc");
+        new CorpusGenerator(SEED).write(srt, SubtitleFormat.SRT, cues);
+        new CorpusGenerator(SEED).write(vtt, SubtitleFormat.VTT, cues);
+        new CorpusGenerator(SEED).write(lrc, SubtitleFormat.LRC, cues);
+        outLrc = new File(dir, "output.lrc");
+        outSrt = new File(dir, "output.srt");
+        outVtt = new File(dir, "output.vtt");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public void srtToLrc() throws IOException {
+        Converter.convertSrtToLrc(srt, outLrc);
+    }
+
+    @Benchmark
+    public void vttToLrc() throws IOException {
+        Converter.convertVttToLrc(vtt, outLrc);
+    }
+
+    @Benchmark
+    public void lrcToSrt() throws IOException {
+        Converter.convertLrcToSrt(lrc, outSrt);
+    }
+
+    @Benchmark
+    public void lrcToVtt() throws IOException {
+        Converter.convertLrcToVtt(lrc, outVtt);
+    }
+}
@@ -0,0 +1,332 @@
+package bench;
+
+import logic.SubtitleFormat;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Sinh file phụ đề giả lập có seed cố định: cùng seed và cùng cấu hình luôn cho ra cùng nội dung.
+ *
+ * Có thể chỉnh số dòng mỗi cue, độ dài dòng, bộ ký tự (tiếng Việt có dấu, CJK, emoji),
+ * kiểu xuống dòng CRLF/LF và BOM ở đầu file.
+ *
+ * Chạy trực tiếp để sinh cả một thư mục corpus:
+ *   java -cp target/benchmarks.jar bench.CorpusGenerator --out corpus --files 10000 --cues 50-500
+ */
+public final class CorpusGenerator {
+    /**
+     * Bộ từ dùng cho text của cue
+     */
+    public enum UnicodeMix {
+        ASCII, VIETNAMESE, CJK, EMOJI, MIXED
+    }
+
+    private static final String[] ASCII_WORDS = {
+        "love", "night", "tomorrow", "rain", "remember", "the", "and", "you", "me", "again",
+        "why", "stay", "light", "home", "dream", "forever", "city", "heart", "run", "slow"
+    };
+    private static final String[] VIETNAMESE_WORDS = {
+        "anh", "em", "yêu", "ngày", "mai", "trời", "mưa", "nhớ", "đêm", "nay",
+        "thương", "người", "đường", "xưa", "giấc", "mơ", "hạnh", "phúc", "những", "điều"
+    };
+    private static final String[] CJK_WORDS = {
+        "你好", "世界", "明天", "下雨", "我爱你", "回家", "ありがとう", "さようなら", "夢", "사랑해", "안녕", "밤"
+    };
+    private static final String[] EMOJI_WORDS = {
+        "😀", "🎵", "❤️", "👍🏽", "🇻🇳", "🌧️", "✨", "👨‍👩‍👧"
+    };
+
+    private final Random random;
+    private int minLineLength = 10;
+    private int maxLineLength = 60;
+    private int maxLinesPerCue = 2;
+    private UnicodeMix unicodeMix = UnicodeMix.VIETNAMESE;
+    private String newline = "\n";
+    private boolean bom = false;
+
+    public CorpusGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public CorpusGenerator lineLength(int min, int max) {
+        this.minLineLength = Math.max(1, min);
+        this.maxLineLength = Math.max(this.minLineLength, max);
+        return this;
+    }
+
+    // LRC luôn một dòng mỗi cue
+    public CorpusGenerator maxLinesPerCue(int lines) {
+        this.maxLinesPerCue = Math.max(1, lines);
+        return this;
+    }
+
+    public CorpusGenerator unicodeMix(UnicodeMix mix) {
+        this.unicodeMix = mix;
+        return this;
+    }
+
+    public CorpusGenerator crlf(boolean crlf) {
+        this.newline = crlf ? "\r\n" : "\n";
+        return this;
+    }
+
+    public CorpusGenerator bom(boolean bom) {
+        this.bom = bom;
+        return this;
+    }
+
+    /**
+     * Ghi file gồm cueCount cue liên tiếp theo thời gian
+     */
+    public void write(File file, SubtitleFormat format, int cueCount) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            if (bom) {
+                out.write('\uFEFF');
+            }
+            if (format == SubtitleFormat.VTT) {
+                out.write("WEBVTT");
+                out.write(newline);
+                out.write(newline);
+            }
+            long time = 0;
+            for (int i = 1; i <= cueCount; i++) {
+                long start = time + random.nextInt(500);
+                long end = start + 800 + random.nextInt(4000);
+                time = end;
+                writeCue(out, format, i, start, end);
+            }
+        }
+    }
+
+    private void writeCue(Writer out, SubtitleFormat format, int index, long start, long end) throws IOException {
+        switch (format) {
+            case LRC:
+                out.write(lrcTag(start));
+                out.write(line());
+                out.write(newline);
+                break;
+            case SRT:
+                out.write(Integer.toString(index));
+                out.write(newline);
+                out.write(clock(start, ',') + " --> " + clock(end, ','));
+                out.write(newline);
+                writeText(out);
+                break;
+            case VTT:
+            default:
+                out.write(clock(start, '.') + " --> " + clock(end, '.'));
+                out.write(newline);
+                writeText(out);
+                break;
+        }
+    }
+
+    // Một tới maxLinesPerCue dòng text rồi dòng trống
+    private void writeText(Writer out) throws IOException {
+        int lines = 1 + random.nextInt(maxLinesPerCue);
+        for (int i = 0; i < lines; i++) {
+            out.write(line());
+            out.write(newline);
+        }
+        out.write(newline);
+    }
+
+    private String line() {
+        int target = minLineLength + random.nextInt(maxLineLength - minLineLength + 1);
+        StringBuilder sb = new StringBuilder(target + 16);
+        while (sb.length() < target) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(word());
+        }
+        return sb.toString();
+    }
+
+    private String word() {
+        switch (unicodeMix) {
+            case ASCII:
+                return pick(ASCII_WORDS);
+            case VIETNAMESE:
+                return pick(VIETNAMESE_WORDS);
+            case CJK:
+                return pick(CJK_WORDS);
+            case EMOJI:
+                return random.nextInt(4) == 0 ? pick(EMOJI_WORDS) : pick(ASCII_WORDS);
+            case MIXED:
+            default:
+                int bucket = random.nextInt(10);
+                if (bucket < 4) return pick(VIETNAMESE_WORDS);
+                if (bucket < 7) return pick(ASCII_WORDS);
+                if (bucket < 9) return pick(CJK_WORDS);
+                return pick(EMOJI_WORDS);
+        }
+    }
+
+    private String pick(String[] words) {
+        return words[random.nextInt(words.length)];
+    }
+
+    static String clock(long millis, char separator) {
+        return String.format("%02d:%02d:%02d%c%03d",
+                millis / 3600000, (millis % 3600000) / 60000, (millis % 60000) / 1000, separator, millis % 1000);
+    }
+
+    static String lrcTag(long millis) {
+        return String.format("[%02d:%02d.%02d]", millis / 60000, (millis % 60000) / 1000, (millis % 1000) / 10);
+    }
+
+    /**
+     * Sinh cả một corpus theo cấu hình
+     */
+    public static final class Corpus {
+        public long seed = 1;
+        public int files = 1000;
+        public int minCues = 50;
+        public int maxCues = 500;
+        // null = trộn SRT/VTT/LRC
+        public SubtitleFormat format = null;
+        public UnicodeMix unicodeMix = UnicodeMix.MIXED;
+        public int minLineLength = 10;
+        public int maxLineLength = 60;
+        // Tỉ lệ file dùng CRLF và có BOM
+        public double crlfRatio = 0.3;
+        public double bomRatio = 0.2;
+
+        /**
+         * Ghi các file vào dir (song song), chia thư mục con 1000 file mỗi thư mục.
+         * Mỗi file có Random riêng suy ra từ seed và số thứ tự file nên kết quả không phụ thuộc
+         * số thread.
+         * @return tổng số cue đã sinh
+         */
+        public long generate(File dir) throws IOException {
+            for (int shard = 0; shard * 1000 < files; shard++) {
+                Files.createDirectories(shardDir(dir, shard).toPath());
+            }
+            try {
+                return IntStream.range(0, files).parallel().mapToLong(i -> {
+                    try {
+                        return generateFile(dir, i);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).sum();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        private long generateFile(File dir, int index) throws IOException {
+            Random layout = new Random(seed * 1_000_003L + index);
+            SubtitleFormat[] formats = SubtitleFormat.values();
+            SubtitleFormat fileFormat = format != null ? format : formats[layout.nextInt(formats.length)];
+            int cues = minCues + layout.nextInt(maxCues - minCues + 1);
+            CorpusGenerator generator = new CorpusGenerator(layout.nextLong())
+                    .unicodeMix(unicodeMix)
+                    .lineLength(minLineLength, maxLineLength)
+                    .crlf(layout.nextDouble() < crlfRatio)
+                    .bom(layout.nextDouble() < bomRatio);
+            File file = new File(shardDir(dir, index / 1000), String.format("sub%07d%s", index, fileFormat.getExtension()));
+            generator.write(file, fileFormat, cues);
+            return cues;
+        }
+
+        private static File shardDir(File dir, int shard) {
+            return new File(dir, String.format("%04d", shard));
+        }
+
+        /**
+         * Đọc tùy chọn dòng lệnh chung cho CorpusGenerator và ThroughputSuite
+         * @return true nếu args[i] là tùy chọn của corpus (khi đó đã dùng args[i + 1])
+         */
+        boolean parseOption(String option, String value) {
+            switch (option) {
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    return true;
+                case "--files":
+                    files = Integer.parseInt(value);
+                    return true;
+                case "--cues": {
+                    int[] range = parseRange(value);
+                    minCues = range[0];
+                    maxCues = range[1];
+                    return true;
+                }
+                case "--line-length": {
+                    int[] range = parseRange(value);
+                    minLineLength = range[0];
+                    maxLineLength = range[1];
+                    return true;
+                }
+                case "--format":
+                    format = value.equalsIgnoreCase("mixed") ? null : SubtitleFormat.valueOf(value.toUpperCase());
+                    return true;
+                case "--unicode":
+                    unicodeMix = UnicodeMix.valueOf(value.toUpperCase());
+                    return true;
+                case "--crlf":
+                    crlfRatio = Double.parseDouble(value);
+                    return true;
+                case "--bom":
+                    bomRatio = Double.parseDouble(value);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        // "50-500" hoặc "100"
+        private static int[] parseRange(String value) {
+            int dash = value.indexOf('-');
+            if (dash < 0) {
+                int n = Integer.parseInt(value);
+                return new int[] { n, n };
+            }
+            int min = Integer.parseInt(value.substring(0, dash));
+            int max = Integer.parseInt(value.substring(dash + 1));
+            return new int[] { min, Math.max(min, max) };
+        }
+
+        static String usage() {
+            return "  --files N          number of files (default 1000)\n"
+                 + "  --cues A-B         cues per file, fixed or range (default 50-500)\n"
+                 + "  --format F         srt, vtt, lrc or mixed (default mixed)\n"
+                 + "  --unicode M        ascii, vietnamese, cjk, emoji or mixed (default mixed)\n"
+                 + "  --line-length A-B  characters per text line (default 10-60)\n"
+                 + "  --crlf R           share of files with CRLF endings, 0..1 (default 0.3)\n"
+                 + "  --bom R            share of files starting with a BOM, 0..1 (default 0.2)\n"
+                 + "  --seed S           random seed (default 1)\n";
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Corpus corpus = new Corpus();
+        File out = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--out") && i + 1 < args.length) {
+                out = new File(args[++i]);
+            } else if (i + 1 < args.length && corpus.parseOption(args[i], args[i + 1])) {
+                i++;
+            } else {
+                System.err.println("Unknown option: " + args[i]);
+                out = null;
+                break;
+            }
+        }
+        if (out == null) {
+            System.err.println("Usage: CorpusGenerator --out dir [options]\n" + Corpus.usage());
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        long cues = corpus.generate(out);
+        System.out.printf("Generated %d files, %d cues in %.1f s%n",
+                corpus.files, cues, (System.nanoTime() - start) / 1e9);
+    }
+}
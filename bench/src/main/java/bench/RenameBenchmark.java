@@ -0,0 +1,48 @@
+package bench;
+
+import logic.Converter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đo renameFileKeepFirstNumber. Mỗi lần gọi đổi tên rồi đổi lại tên cũ,
+ * nên kết quả gồm cả hai lần move.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenameBenchmark {
+    private File dir;
+    private File original;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("rename-bench").toFile();
+        original = new File(dir, "[Fansub] Show 12 - Episode title 1080p.lrc");
+        Files.writeString(original.toPath(), "[00:01.00]hello\n");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public File renameKeepFirstNumber() throws IOException {
+        File renamed = Converter.renameFileKeepFirstNumber(original);
+        Files.move(renamed.toPath(), original.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return renamed;
+    }
+}
@@ -0,0 +1,307 @@
+package bench;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import logic.BatchConverter;
+import logic.Converter;
+import logic.SubtitleFormat;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Benchmark end-to-end: sinh corpus có seed, chạy chuyển đổi hàng loạt qua BatchConverter
+ * giống như giao diện/CLI, rồi ghi files/sec, cues/sec và peak RSS ra file JSON.
+ *
+ * Với --baseline, kết quả được so với lần đo trước và chương trình trả về exit code 1 nếu
+ * files/sec hoặc cues/sec giảm, hay peak RSS tăng, quá --tolerance.
+ *
+ *   java -cp target/benchmarks.jar bench.ThroughputSuite --files 10000 --out result.json --baseline baseline.json
+ *
+ * SRT/VTT được chuyển sang LRC, LRC được chuyển sang SRT. Corpus được sinh vào thư mục tạm và
+ * xóa khi xong, trừ khi chỉ định --corpus.
+ */
+public final class ThroughputSuite {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    /**
+     * Một lần đo, cũng là định dạng của file JSON baseline
+     */
+    static final class Result {
+        String java;
+        String os;
+        int cores;
+        int files;
+        long cues;
+        long bytes;
+        int jobs;
+        int rounds;
+        long seed;
+        // Trung vị của các vòng đo
+        double seconds;
+        double filesPerSec;
+        double cuesPerSec;
+        double mbPerSec;
+        // -1 nếu hệ điều hành không cho biết
+        double peakRssMb;
+        double peakHeapMb;
+        int failed;
+    }
+
+    private ThroughputSuite() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CorpusGenerator.Corpus corpus = new CorpusGenerator.Corpus();
+        corpus.files = 10_000;
+        corpus.minCues = 20;
+        corpus.maxCues = 200;
+        File corpusDir = null;
+        File outFile = new File("throughput.json");
+        File baselineFile = null;
+        int jobs = Runtime.getRuntime().availableProcessors();
+        int rounds = 3;
+        double tolerance = 0.10;
+
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            if (value != null && corpus.parseOption(option, value)) {
+                i++;
+                continue;
+            }
+            if (value == null) {
+                usage("Missing value for " + option);
+            }
+            i++;
+            switch (option) {
+                case "--corpus":
+                    corpusDir = new File(value);
+                    break;
+                case "--out":
+                    outFile = new File(value);
+                    break;
+                case "--baseline":
+                    baselineFile = new File(value);
+                    break;
+                case "--jobs":
+                    jobs = Integer.parseInt(value);
+                    break;
+                case "--rounds":
+                    rounds = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(value);
+                    break;
+                default:
+                    usage("Unknown option: " + option);
+            }
+        }
+
+        boolean tempCorpus = corpusDir == null;
+        if (tempCorpus) {
+            corpusDir = Files.createTempDirectory("subtitle-corpus").toFile();
+        }
+        File outputDir = Files.createTempDirectory("subtitle-output").toFile();
+        boolean regressed = false;
+        try {
+            System.out.printf("Generating %d files (%d-%d cues, seed %d)...%n",
+                    corpus.files, corpus.minCues, corpus.maxCues, corpus.seed);
+            long cues = corpus.generate(corpusDir);
+            List<File> inputs = listFiles(corpusDir);
+
+            Result result = run(inputs, outputDir, jobs, rounds);
+            result.cues = cues;
+            result.cuesPerSec = cues / result.seconds;
+            result.seed = corpus.seed;
+            print(result);
+
+            try (Writer writer = Files.newBufferedWriter(outFile.toPath(), StandardCharsets.UTF_8)) {
+                GSON.toJson(result, writer);
+            }
+            System.out.println("Wrote " + outFile);
+
+            if (baselineFile != null && baselineFile.isFile()) {
+                Result baseline;
+                try (Reader reader = Files.newBufferedReader(baselineFile.toPath(), StandardCharsets.UTF_8)) {
+                    baseline = GSON.fromJson(reader, Result.class);
+                }
+                regressed = !compare(baseline, result, tolerance);
+            }
+        } finally {
+            deleteTree(outputDir);
+            if (tempCorpus) deleteTree(corpusDir);
+        }
+        if (regressed) {
+            System.exit(1);
+        }
+    }
+
+    private static Result run(List<File> inputs, File outputDir, int jobs, int rounds) throws Exception {
+        long bytes = 0;
+        for (File input : inputs) bytes += input.length();
+
+        double[] seconds = new double[rounds];
+        int failed = 0;
+        resetPeaks();
+        for (int round = 0; round < rounds; round++) {
+            BatchConverter batch = new BatchConverter(jobs);
+            long start = System.nanoTime();
+            int ok;
+            try {
+                ok = batch.run(inputs, input -> {
+                    SubtitleFormat from = SubtitleFormat.fromFile(input);
+                    SubtitleFormat to = from == SubtitleFormat.LRC ? SubtitleFormat.SRT : SubtitleFormat.LRC;
+                    String name = input.getName();
+                    File output = new File(outputDir, name.substring(0, name.lastIndexOf('.')) + to.getExtension());
+                    Converter.convert(input, from, output, to);
+                    return true;
+                }, null);
+            } finally {
+                batch.shutdown();
+            }
+            seconds[round] = (System.nanoTime() - start) / 1e9;
+            failed = inputs.size() - ok;
+            System.out.printf("Round %d: %.2f s%n", round + 1, seconds[round]);
+        }
+        Arrays.sort(seconds);
+
+        Result result = new Result();
+        result.java = System.getProperty("java.vm.name") + " " + System.getProperty("java.version");
+        result.os = System.getProperty("os.name") + " " + System.getProperty("os.arch");
+        result.cores = Runtime.getRuntime().availableProcessors();
+        result.files = inputs.size();
+        result.bytes = bytes;
+        result.jobs = jobs;
+        result.rounds = rounds;
+        result.seconds = seconds[rounds / 2];
+        result.filesPerSec = inputs.size() / result.seconds;
+        result.mbPerSec = bytes / 1e6 / result.seconds;
+        result.peakRssMb = peakRssMb();
+        result.peakHeapMb = peakHeapMb();
+        result.failed = failed;
+        return result;
+    }
+
+    /**
+     * So kết quả với baseline, in bảng chênh lệch
+     * @return false nếu có chỉ số xấu đi quá tolerance
+     */
+    static boolean compare(Result baseline, Result current, double tolerance) {
+        System.out.printf("%nAgainst baseline (tolerance %.0f%%):%n", tolerance * 100);
+        boolean ok = true;
+        ok &= compareMetric("files/sec", baseline.filesPerSec, current.filesPerSec, true, tolerance);
+        ok &= compareMetric("cues/sec", baseline.cuesPerSec, current.cuesPerSec, true, tolerance);
+        if (baseline.peakRssMb > 0 && current.peakRssMb > 0) {
+            ok &= compareMetric("peak RSS MB", baseline.peakRssMb, current.peakRssMb, false, tolerance);
+        }
+        if (baseline.files != current.files || baseline.seed != current.seed || baseline.jobs != current.jobs) {
+            System.out.println("  note: corpus or job count differs from the baseline run");
+        }
+        System.out.println(ok ? "No regression" : "REGRESSION");
+        return ok;
+    }
+
+    private static boolean compareMetric(String name, double base, double current, boolean higherIsBetter,
+                                         double tolerance) {
+        double change = base == 0 ? 0 : (current - base) / base;
+        boolean regressed = higherIsBetter ? change < -tolerance : change > tolerance;
+        System.out.printf("  %-12s %12.1f -> %12.1f  %+6.1f%%%s%n",
+                name, base, current, change * 100, regressed ? "  <-- regression" : "");
+        return !regressed;
+    }
+
+    private static void print(Result r) {
+        System.out.printf("%nFiles: %d (%d failed), cues: %d, %.1f MB, jobs: %d%n",
+                r.files, r.failed, r.cues, r.bytes / 1e6, r.jobs);
+        System.out.printf("Median of %d rounds: %.2f s%n", r.rounds, r.seconds);
+        System.out.printf("  %.0f files/sec, %.0f cues/sec, %.1f MB/sec%n", r.filesPerSec, r.cuesPerSec, r.mbPerSec);
+        System.out.printf("  peak RSS %.1f MB, peak heap %.1f MB%n", r.peakRssMb, r.peakHeapMb);
+    }
+
+    // Peak RSS của tiến trình (VmHWM trên Linux); đặt lại trước khi đo để không tính lúc sinh corpus
+    private static void resetPeaks() {
+        try {
+            Files.writeString(Paths.get("/proc/self/clear_refs"), "5");
+        } catch (IOException | UnsupportedOperationException ignored) {
+            // Không phải Linux hoặc không có quyền: peak RSS gồm cả lúc sinh corpus
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+    }
+
+    private static double peakRssMb() {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmHWM:")) {
+                    String kb = line.substring(6).trim().split("\\s+")[0];
+                    return Long.parseLong(kb) / 1024.0;
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) {
+        }
+        return -1;
+    }
+
+    private static double peakHeapMb() {
+        long bytes = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                bytes += pool.getPeakUsage().getUsed();
+            }
+        }
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    private static List<File> listFiles(File dir) throws IOException {
+        List<File> files = new ArrayList<>();
+        Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(file.toFile());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        files.sort(null);
+        return files;
+    }
+
+    private static void deleteTree(File dir) throws IOException {
+        if (!dir.exists()) return;
+        Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: ThroughputSuite [--corpus dir] [--out result.json] [--baseline baseline.json]");
+        System.err.println("                       [--jobs N] [--rounds N] [--tolerance 0.10] [corpus options]");
+        System.err.println("  (default corpus: 10000 files of 20-200 cues in a temp folder)");
+        System.err.print(CorpusGenerator.Corpus.usage());
+        System.exit(2);
+    }
+}
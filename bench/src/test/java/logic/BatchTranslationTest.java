@@ -0,0 +1,117 @@
+package logic;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchTranslationTest {
+    // Cue 3 trùng cue 1 nên không được gửi: chunk gồm các block 0, 1, 3
+    private static final String SRT = "1\n00:00:01,000 --> 00:00:02,000\nHello\n\n"
+            + "2\n00:00:03,000 --> 00:00:04,000\nWorld\n\n"
+            + "3\n00:00:05,000 --> 00:00:06,000\nHello\n\n"
+            + "4\n00:00:07,000 --> 00:00:08,000\nBye\n";
+
+    @TempDir
+    Path dir;
+
+    private StubBackend stub;
+
+    @AfterEach
+    void stopStub() {
+        if (stub != null) stub.close();
+    }
+
+    @Test
+    void submitsPollsAndJournalsResultsAtBlockPositions() throws Exception {
+        stub = StubBackend.start(new StubBackend.Options().batchDelay(50));
+        File input = write("a.srt", SRT);
+        File output = dir.resolve("a_vi.srt").toFile();
+        File stateFile = dir.resolve("batch.json").toFile();
+
+        BatchTranslation batch = new BatchTranslation(translator(stub, null), stateFile);
+        batch.setPollInterval(10);
+        assertEquals(1, batch.run(list(input), list(output), "vi"));
+        assertFalse(stateFile.exists());
+
+        // Mọi cue đã có trong nhật ký: dịch trực tiếp không gọi API lần nào
+        assertEquals(0, translator(stub, null).translateSrtFile(input, output, "vi"));
+        assertEquals(0, stub.getChatRequests());
+        assertEquals(SRT.toUpperCase(), read(output));
+    }
+
+    @Test
+    void resubmitsWhenServerNoLongerKnowsTheBatch() throws Exception {
+        File input = write("a.srt", SRT);
+        File output = dir.resolve("a_vi.srt").toFile();
+        File stateFile = dir.resolve("batch.json").toFile();
+
+        // Lần chạy đầu dừng khi batch còn đang chờ, server sau đó tắt và mất batch
+        stub = StubBackend.start(new StubBackend.Options().batchDelay(60_000));
+        CountDownLatch polled = new CountDownLatch(1);
+        BatchTranslation first = new BatchTranslation(translator(stub, message -> {
+            if (message.startsWith("Batch batch_")) polled.countDown();
+        }), stateFile);
+        first.setPollInterval(60_000);
+        Thread run = new Thread(() -> {
+            try {
+                first.run(list(input), list(output), "vi");
+            } catch (IOException | InterruptedException e) {
+                // Bị dừng giữa chừng
+            }
+        });
+        run.start();
+        assertTrue(polled.await(10, TimeUnit.SECONDS));
+        run.interrupt();
+        run.join();
+        stub.close();
+        assertTrue(stateFile.exists());
+
+        stub = StubBackend.start(new StubBackend.Options().batchDelay(50));
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        BatchTranslation second = new BatchTranslation(translator(stub, log::add), stateFile);
+        second.setPollInterval(10);
+        assertEquals(1, second.run(list(input), list(output), "vi"));
+        assertFalse(stateFile.exists());
+        assertTrue(log.stream().anyMatch(line -> line.startsWith("Batch đã gửi không còn trên server")), log.toString());
+
+        assertEquals(0, translator(stub, null).translateSrtFile(input, output, "vi"));
+        assertEquals(0, stub.getChatRequests());
+        assertEquals(SRT.toUpperCase(), read(output));
+    }
+
+    private static Translator translator(StubBackend backend, Translator.LogCallback log) {
+        Translator translator = new Translator(backend, "gpt-4o-mini",
+                Translator.DEFAULT_CONNECT_TIMEOUT, Translator.DEFAULT_REQUEST_TIMEOUT);
+        translator.setLogCallback(log);
+        return translator;
+    }
+
+    private static List<File> list(File file) {
+        return Collections.singletonList(file);
+    }
+
+    private File write(String name, String content) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,58 @@
+package logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CueDocumentTest {
+
+    @TempDir
+    Path dir;
+
+    // Header WEBVTT, NOTE và identifier không được gửi đi dịch, nhưng vẫn có trong file kết quả
+    @Test
+    void vttKeepsHeaderNotesAndIdentifiersOutOfCueText() throws IOException {
+        String vtt = "WEBVTT\nKind: captions\n\nNOTE ghi chú\nhai dòng\n\n"
+                + "intro\n00:00:01.000 --> 00:00:02.000 align:start\nHello there\nsecond line\n\n"
+                + "00:00:03.000 --> 00:00:04.000\nBye\n";
+        CueDocument doc = CueDocument.read(write("a.vtt", vtt));
+
+        assertEquals(Arrays.asList("Hello there\nsecond line", "Bye"), doc.texts());
+        assertEquals("intro", doc.cues.get(0).number);
+        assertEquals("", doc.cues.get(1).number);
+        assertEquals(vtt, rebuild(doc));
+        assertEquals("WEBVTT\nKind: captions\n\nNOTE ghi chú\nhai dòng\n\n"
+                + "intro\n00:00:01.000 --> 00:00:02.000 align:start\nXin chào\n", doc.cues.get(0).withText("Xin chào"));
+    }
+
+    // Tag thời gian và metadata LRC nằm ngoài text
+    @Test
+    void lrcKeepsTagsOutOfCueText() throws IOException {
+        String lrc = "[ar:Ca sĩ]\n[ti:Bài hát]\n[00:12.00][01:05.00] Điệp khúc\n[00:15.50]Câu hai\n";
+        CueDocument doc = CueDocument.read(write("a.lrc", lrc));
+
+        assertEquals(Arrays.asList("Điệp khúc", "Câu hai"), doc.texts());
+        assertEquals(lrc, rebuild(doc));
+        assertEquals("[00:15.50]Line two\n", doc.cues.get(1).withText("Line\ntwo"));
+    }
+
+    private File write(String name, String content) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+
+    private static String rebuild(CueDocument doc) {
+        StringBuilder out = new StringBuilder();
+        for (CueDocument.Cue cue : doc.cues) out.append(cue.original());
+        return out.append(doc.trailer).toString();
+    }
+}
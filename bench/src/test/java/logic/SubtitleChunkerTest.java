@@ -0,0 +1,48 @@
+package logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SubtitleChunkerTest {
+
+    @TempDir
+    Path dir;
+
+    // File lời bài hát không có dòng trống: vẫn phải chia theo từng dòng lời, không thành một block
+    @Test
+    void longLyricFileIsSplitPerLineWithinBudget() throws IOException {
+        StringBuilder lrc = new StringBuilder("[ar:Ca sĩ]\n[ti:Bài hát rất dài]\n");
+        for (int i = 0; i < 2000; i++) {
+            lrc.append(String.format("[%02d:%02d.%02d]", i / 60, i % 60, i % 100))
+                    .append("Line ").append(i).append(" of a very long song that keeps going on and on\n");
+        }
+        Path file = dir.resolve("song.lrc");
+        Files.write(file, lrc.toString().getBytes(StandardCharsets.UTF_8));
+
+        List<String> texts = CueDocument.read(file.toFile()).texts();
+        assertEquals(2000, texts.size());
+
+        SubtitleChunker chunker = SubtitleChunker.forModel("gpt-4o-mini");
+        List<SubtitleChunker.Chunk> chunks = chunker.splitTexts(texts, "vi");
+        assertTrue(chunks.size() > 1, "chỉ có " + chunks.size() + " chunk");
+        List<String> joined = new ArrayList<>();
+        for (SubtitleChunker.Chunk chunk : chunks) {
+            assertTrue(chunk.getExpectedOutputTokens() <= chunker.getOutputBudget());
+            assertTrue(chunk.getMaxTokens() <= chunker.getMaxOutputTokens());
+            joined.addAll(chunk.getBlocks());
+        }
+        // Đủ và đúng thứ tự các dòng lời
+        assertEquals(texts, joined);
+    }
+}
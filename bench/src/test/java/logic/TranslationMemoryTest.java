@@ -0,0 +1,52 @@
+package logic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TranslationMemoryTest {
+
+    @TempDir
+    Path dir;
+
+    // LRU 0 mục: mọi get() đều đọc từ file
+    @Test
+    void reputKeyWithNewValueKeepsLatestAfterReopen() throws IOException {
+        File file = dir.resolve("memory.tm").toFile();
+        try (TranslationMemory memory = TranslationMemory.open(file, 0)) {
+            memory.put("Hello", "vi", "gpt-4o-mini", "Xin chào");
+            memory.put("Hello", "vi", "gpt-4o-mini", "Chào bạn");
+            memory.put("Goodbye", "vi", "gpt-4o-mini", "Tạm biệt");
+            assertEquals("Chào bạn", memory.get("Hello", "vi", "gpt-4o-mini"));
+            assertEquals("Tạm biệt", memory.get("Goodbye", "vi", "gpt-4o-mini"));
+        }
+        try (TranslationMemory memory = TranslationMemory.open(file, 0)) {
+            assertEquals("Chào bạn", memory.get("Hello", "vi", "gpt-4o-mini"));
+            assertEquals("Tạm biệt", memory.get("Goodbye", "vi", "gpt-4o-mini"));
+        }
+    }
+
+    // Hai bản mở cùng file (như hai tiến trình): bản ghi sau không được đè record của bản kia
+    @Test
+    void writersSharingFileDoNotOverwriteEachOther() throws IOException {
+        File file = dir.resolve("memory.tm").toFile();
+        try (TranslationMemory first = TranslationMemory.open(file, 0);
+             TranslationMemory second = TranslationMemory.open(file, 0)) {
+            first.put("Hello", "vi", "gpt-4o-mini", "Xin chào");
+            second.put("Goodbye", "vi", "gpt-4o-mini", "Tạm biệt");
+            first.put("Thanks", "vi", "gpt-4o-mini", "Cảm ơn");
+            assertEquals("Xin chào", second.get("Hello", "vi", "gpt-4o-mini"));
+            assertEquals("Tạm biệt", first.get("Goodbye", "vi", "gpt-4o-mini"));
+        }
+        try (TranslationMemory memory = TranslationMemory.open(file, 0)) {
+            assertEquals("Xin chào", memory.get("Hello", "vi", "gpt-4o-mini"));
+            assertEquals("Tạm biệt", memory.get("Goodbye", "vi", "gpt-4o-mini"));
+            assertEquals("Cảm ơn", memory.get("Thanks", "vi", "gpt-4o-mini"));
+        }
+    }
+}
@@ -1,9 +1,18 @@
+import ui.CommandLineApp;
 import ui.MainApp;
-import javafx.stage.Stage;
 
 public class App {
-    public static void main(String[] args) 
+    public static void main(String[] args)
     {
+        // Có lệnh (convert, translate...) thì chạy headless, không khởi động JavaFX
+        if (args.length > 0 && CommandLineApp.isCommand(args[0])) {
+            System.exit(CommandLineApp.run(args));
+        }
+        launchGui(args);
+    }
+
+    // Tách riêng để class JavaFX chỉ được nạp khi thực sự mở giao diện
+    private static void launchGui(String[] args) {
         javafx.application.Application.launch(MainApp.class, args);
     }
 }
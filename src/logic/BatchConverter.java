@@ -0,0 +1,129 @@
+package logic;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chạy xử lý hàng loạt file song song trên một ForkJoinPool (work-stealing)
+ * có số thread bằng số core. Dùng chung cho cả Swing và JavaFX UI.
+ */
+public class BatchConverter {
+    private final ForkJoinPool pool;
+    private volatile boolean cancelled = false;
+
+    public BatchConverter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchConverter(int parallelism) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    /**
+     * Công việc cho một file (chuyển đổi, dịch, đổi tên...)
+     */
+    public interface FileTask {
+        boolean process(File file) throws Exception;
+    }
+
+    /**
+     * Callback tiến độ, được gọi từ các worker thread ngay khi một file xong.
+     * UI cần tự chuyển về thread giao diện (invokeLater / Platform.runLater).
+     */
+    public interface ProgressCallback {
+        void onFileCompleted(int index, File file, boolean success, int completed, int total);
+    }
+
+    /**
+     * Xử lý tất cả file, chặn cho tới khi xong hoặc bị hủy
+     * @return số file xử lý thành công
+     */
+    public int run(List<File> files, FileTask task, ProgressCallback callback) throws InterruptedException {
+        List<File> snapshot = new ArrayList<>(files);
+        int total = snapshot.size();
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger success = new AtomicInteger();
+
+        ForkJoinTask<Void> job = pool.submit(new FileRange(snapshot, 0, total, task, callback, completed, success));
+        try {
+            job.get();
+        } catch (ExecutionException e) {
+            // Lỗi từng file đã được bắt trong FileRange, tới đây chỉ có thể là lỗi lập trình
+            throw new IllegalStateException("Batch conversion failed", e.getCause());
+        } catch (InterruptedException e) {
+            cancel();
+            throw e;
+        }
+        return success.get();
+    }
+
+    /**
+     * Hủy batch: các file chưa bắt đầu sẽ bị bỏ qua, file đang xử lý được chạy nốt
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Chia đôi danh sách cho tới khi còn một file, các thread rảnh sẽ lấy bớt việc của thread bận
+     */
+    private class FileRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<File> files;
+        private final int from;
+        private final int to;
+        private final FileTask task;
+        private final ProgressCallback callback;
+        private final AtomicInteger completed;
+        private final AtomicInteger success;
+
+        FileRange(List<File> files, int from, int to, FileTask task, ProgressCallback callback,
+                  AtomicInteger completed, AtomicInteger success) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.task = task;
+            this.callback = callback;
+            this.completed = completed;
+            this.success = success;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new FileRange(files, from, mid, task, callback, completed, success),
+                          new FileRange(files, mid, to, task, callback, completed, success));
+                return;
+            }
+            if (from >= to || cancelled) {
+                return;
+            }
+
+            File file = files.get(from);
+            boolean ok;
+            try {
+                ok = task.process(file);
+            } catch (Exception e) {
+                ok = false;
+            }
+            if (ok) success.incrementAndGet();
+
+            int done = completed.incrementAndGet();
+            if (callback != null) {
+                callback.onFileCompleted(from, file, ok, done, files.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package logic;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.*;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dịch cả thư viện qua Batch API của OpenAI thay vì gọi chat completions từng chunk: rẻ hơn
+ * một nửa, không bị rate limit theo phút, đổi lại phải chờ (tối đa 24 giờ).
+ *
+ * Mọi chunk còn thiếu của các file được ghi thành file JSONL (mỗi dòng một request, custom_id
+ * cho biết file và chunk), upload lên /files rồi tạo batch qua /batches. Sau đó chỉ việc hỏi
+ * trạng thái định kỳ; xong thì tải file kết quả và ghi từng chunk vào nhật ký dịch của file
+ * kết quả tương ứng. Translator.translateSrtFile chạy sau đó đọc lại nhật ký, chỉ những chunk
+ * batch không dịch được mới phải gọi API trực tiếp.
+ *
+ * Batch đã gửi được lưu trong file trạng thái: tắt chương trình trong lúc chờ rồi chạy lại
+ * đúng lệnh đó thì chờ tiếp batch cũ thay vì gửi lại. Server không còn batch đó (404) thì bỏ
+ * trạng thái cũ và gửi lại những chunk chưa có trong nhật ký.
+ */
+public final class BatchTranslation {
+    public static final String DEFAULT_STATE_FILE = "translation_batch.json";
+    public static final long DEFAULT_POLL_MILLIS = 60_000;
+    // Giới hạn của Batch API cho một batch: 50.000 request, file input 200 MB
+    static final int MAX_REQUESTS_PER_BATCH = 50_000;
+    static final long MAX_BATCH_BYTES = 190L * 1024 * 1024;
+    private static final Duration UPLOAD_TIMEOUT = Duration.ofMinutes(30);
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    /**
+     * Trạng thái lưu trên đĩa giữa các lần chạy
+     */
+    static final class State {
+        String lang;
+        String model;
+        boolean textOnly;
+        // Đường dẫn tuyệt đối của file kết quả, theo thứ tự file trong custom_id
+        List<String> outputs = new ArrayList<>();
+        List<Request> requests = new ArrayList<>();
+        List<Submission> batches = new ArrayList<>();
+    }
+
+    // Một chunk đã gửi
+    static final class Request {
+        String id;
+        int file;
+        int[] blocks;
+        long crc;
+        int maxTokens;
+        // VTT, LRC luôn chỉ gửi text dù state.textOnly là false
+        boolean textOnly;
+    }
+
+    // Một batch đã tạo trên server
+    static final class Submission {
+        String inputFileId;
+        String batchId;
+        String status;
+        String outputFileId;
+        String errorFileId;
+        boolean collected;
+    }
+
+    private final Translator translator;
+    private final File stateFile;
+    private volatile long pollMillis = DEFAULT_POLL_MILLIS;
+
+    public BatchTranslation(Translator translator, File stateFile) {
+        this.translator = translator;
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Khoảng cách giữa hai lần hỏi trạng thái batch
+     */
+    public void setPollInterval(long millis) {
+        this.pollMillis = Math.max(1, millis);
+    }
+
+    /**
+     * Gửi mọi chunk còn thiếu của các file (hoặc tiếp tục batch đã gửi lần trước), chờ batch
+     * xong và ghi kết quả vào nhật ký của từng file kết quả
+     * @param outputs file kết quả của từng input, cùng thứ tự
+     * @return số chunk đã có bản dịch từ batch
+     */
+    public int run(List<File> inputs, List<File> outputs, String targetLanguage)
+            throws IOException, InterruptedException {
+        State state = loadState(outputs, targetLanguage);
+        int translated;
+        if (state == null) {
+            state = submit(inputs, outputs, targetLanguage);
+            translated = collectAll(state);
+        } else {
+            translator.log("Tiếp tục " + state.batches.size() + " batch đã gửi (" + state.requests.size() + " chunk)");
+            try {
+                translated = collectAll(state);
+            } catch (Translator.ApiException e) {
+                if (e.statusCode != 404) throw e;
+                // Batch/file của lần trước không còn trên server (hết hạn, stub đã khởi động lại...):
+                // phần đã tải về nằm trong nhật ký, chỉ gửi lại phần còn thiếu
+                translator.log("Batch đã gửi không còn trên server (" + e.getMessage() + "), gửi lại");
+                Files.deleteIfExists(stateFile.toPath());
+                state = submit(inputs, outputs, targetLanguage);
+                translated = collectAll(state);
+            }
+        }
+        Files.deleteIfExists(stateFile.toPath());
+        translator.log("Batch API: " + translated + "/" + state.requests.size() + " chunk đã dịch");
+        return translated;
+    }
+
+    // Chờ và tải kết quả các batch chưa tải, trả về số chunk đã dịch
+    private int collectAll(State state) throws IOException, InterruptedException {
+        Map<String, Request> byId = new HashMap<>();
+        for (Request request : state.requests) byId.put(request.id, request);
+        int translated = 0;
+        for (Submission submission : state.batches) {
+            if (submission.collected) continue;
+            await(submission, state);
+            translated += collect(submission, state, byId);
+            submission.collected = true;
+            saveState(state);
+        }
+        return translated;
+    }
+
+    // Chia các chunk thành file JSONL (không quá giới hạn của một batch), upload và tạo batch
+    private State submit(List<File> inputs, List<File> outputs, String targetLanguage)
+            throws IOException, InterruptedException {
+        State state = new State();
+        state.lang = targetLanguage;
+        state.model = translator.getModelName();
+        state.textOnly = translator.isTextOnly();
+        for (File output : outputs) state.outputs.add(output.getAbsolutePath());
+
+        String url = translator.getEndpoint().getPath();
+        Path jsonl = Files.createTempFile("translation-batch", ".jsonl");
+        try {
+            BufferedWriter writer = Files.newBufferedWriter(jsonl, StandardCharsets.UTF_8);
+            int lines = 0;
+            long bytes = 0;
+            for (int file = 0; file < inputs.size(); file++) {
+                List<Translator.PlannedChunk> chunks;
+                try {
+                    chunks = translator.planChunks(inputs.get(file), outputs.get(file), targetLanguage);
+                } catch (IOException e) {
+                    // File lỗi sẽ được báo lại khi dịch trực tiếp
+                    translator.log("Bỏ qua " + inputs.get(file).getName() + ": " + e.getMessage());
+                    continue;
+                }
+                for (int i = 0; i < chunks.size(); i++) {
+                    Translator.PlannedChunk chunk = chunks.get(i);
+                    Request request = new Request();
+                    request.id = "f" + file + "-c" + i;
+                    request.file = file;
+                    request.blocks = chunk.blocks;
+                    request.crc = chunk.checksum;
+                    request.maxTokens = chunk.maxTokens;
+                    request.textOnly = chunk.textOnly;
+
+                    JsonObject line = new JsonObject();
+                    line.addProperty("custom_id", request.id);
+                    line.addProperty("method", "POST");
+                    line.addProperty("url", url);
+                    line.add("body", chunk.body);
+                    String encoded = line.toString();
+                    int size = encoded.getBytes(StandardCharsets.UTF_8).length + 1;
+                    if (lines > 0 && (lines >= MAX_REQUESTS_PER_BATCH || bytes + size > MAX_BATCH_BYTES)) {
+                        writer.close();
+                        createBatch(jsonl, lines, state);
+                        writer = Files.newBufferedWriter(jsonl, StandardCharsets.UTF_8);
+                        lines = 0;
+                        bytes = 0;
+                    }
+                    writer.write(encoded);
+                    writer.write('\n');
+                    lines++;
+                    bytes += size;
+                    state.requests.add(request);
+                }
+            }
+            writer.close();
+            if (lines > 0) {
+                createBatch(jsonl, lines, state);
+            }
+        } finally {
+            Files.deleteIfExists(jsonl);
+        }
+        return state;
+    }
+
+    private void createBatch(Path jsonl, int lines, State state) throws IOException, InterruptedException {
+        Submission submission = new Submission();
+        submission.inputFileId = upload(jsonl);
+
+        JsonObject body = new JsonObject();
+        body.addProperty("input_file_id", submission.inputFileId);
+        body.addProperty("endpoint", translator.getEndpoint().getPath());
+        body.addProperty("completion_window", "24h");
+        HttpRequest request = translator.apiRequest("batches")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        JsonObject batch = sendJson(request);
+        submission.batchId = batch.get("id").getAsString();
+        submission.status = string(batch, "status");
+        state.batches.add(submission);
+        // Lưu ngay: từ đây batch đã tính tiền, chạy lại không được gửi lần nữa
+        saveState(state);
+        translator.log("Đã tạo batch " + submission.batchId + " (" + lines + " chunk)");
+    }
+
+    // Upload file JSONL (multipart/form-data, purpose=batch), trả về id của file
+    private String upload(Path jsonl) throws IOException, InterruptedException {
+        String boundary = "----subtitle-batch-" + System.nanoTime();
+        byte[] head = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"purpose\"\r\n\r\nbatch\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + jsonl.getFileName() + "\"\r\n"
+                + "Content-Type: application/jsonl\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        // File có thể tới gần 200 MB: đọc dần khi gửi thay vì nạp hết vào bộ nhớ
+        HttpRequest request = translator.apiRequest("files")
+                .timeout(UPLOAD_TIMEOUT)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> {
+                    try {
+                        return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                                new ByteArrayInputStream(head),
+                                Files.newInputStream(jsonl),
+                                new ByteArrayInputStream(tail))));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }))
+                .build();
+        return sendJson(request).get("id").getAsString();
+    }
+
+    // Hỏi trạng thái cho tới khi batch kết thúc (xong, lỗi, hết hạn hoặc bị hủy)
+    private void await(Submission submission, State state) throws IOException, InterruptedException {
+        String progress = null;
+        while (true) {
+            HttpRequest request = translator.apiRequest("batches/" + submission.batchId).GET().build();
+            JsonObject batch = sendJson(request);
+            submission.status = string(batch, "status");
+            submission.outputFileId = string(batch, "output_file_id");
+            submission.errorFileId = string(batch, "error_file_id");
+
+            String counts = "";
+            JsonElement requestCounts = batch.get("request_counts");
+            if (requestCounts != null && requestCounts.isJsonObject()) {
+                JsonObject count = requestCounts.getAsJsonObject();
+                counts = " " + count.get("completed") + "/" + count.get("total") + " xong, "
+                        + count.get("failed") + " lỗi";
+            }
+            String current = submission.status + counts;
+            if (!current.equals(progress)) {
+                translator.log("Batch " + submission.batchId + ": " + current);
+                progress = current;
+            }
+            if (isFinished(submission.status)) {
+                saveState(state);
+                if (!"completed".equals(submission.status)) {
+                    translator.log("Batch " + submission.batchId + " kết thúc với trạng thái " + submission.status
+                            + ", các chunk thiếu sẽ được dịch trực tiếp");
+                }
+                return;
+            }
+            Thread.sleep(pollMillis);
+        }
+    }
+
+    private static boolean isFinished(String status) {
+        return "completed".equals(status) || "failed".equals(status) || "expired".equals(status)
+                || "cancelled".equals(status);
+    }
+
+    // Tải kết quả (kể cả kết quả một phần của batch hết hạn/bị hủy) và ghi vào nhật ký từng file
+    private int collect(Submission submission, State state, Map<String, Request> byId)
+            throws IOException, InterruptedException {
+        if (submission.outputFileId == null) {
+            return 0;
+        }
+        HttpRequest request = translator.apiRequest("files/" + submission.outputFileId + "/content")
+                .timeout(UPLOAD_TIMEOUT)
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = translator.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new Translator.ApiException(response.statusCode(),
+                    "Cannot download batch results: HTTP " + response.statusCode());
+        }
+
+        int translated = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                if (apply(line, state, byId)) translated++;
+            }
+        }
+        return translated;
+    }
+
+    // Một dòng kết quả: {"custom_id":..., "response":{"status_code":200,"body":{...}}, "error":...}
+    private boolean apply(String line, State state, Map<String, Request> byId) {
+        String id = null;
+        try {
+            JsonObject result = JsonParser.parseString(line).getAsJsonObject();
+            id = string(result, "custom_id");
+            Request request = id == null ? null : byId.get(id);
+            if (request == null) return false;
+            JsonElement response = result.get("response");
+            if (response == null || !response.isJsonObject()) {
+                translator.log("Chunk " + id + " lỗi: " + result.get("error"));
+                return false;
+            }
+            JsonObject responseJson = response.getAsJsonObject();
+            int status = responseJson.get("status_code").getAsInt();
+            JsonObject body = responseJson.getAsJsonObject("body");
+            if (status != 200 || body == null) {
+                translator.log("Chunk " + id + " lỗi: HTTP " + status + " " + body);
+                return false;
+            }
+            List<String> texts = translator.readChunkResponse(body, request.blocks.length, request.maxTokens,
+                    state.textOnly || request.textOnly);
+            TranslationJournal.appendRecord(new File(state.outputs.get(request.file)), state.lang, state.model,
+                    request.blocks, texts, request.crc);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // Bản dịch bị cắt, thiếu block...: chunk này sẽ được dịch trực tiếp (có chia nhỏ)
+            translator.log("Chunk " + id + " không dùng được: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private JsonObject sendJson(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = translator.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new Translator.ApiException(response.statusCode(),
+                    "Batch API error: " + response.statusCode() + " - " + response.body());
+        }
+        try {
+            return JsonParser.parseString(response.body()).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Invalid Batch API response: " + response.body());
+        }
+    }
+
+    private static String string(JsonObject json, String name) {
+        JsonElement value = json.get(name);
+        return value == null || !value.isJsonPrimitive() ? null : value.getAsString();
+    }
+
+    // Trạng thái lần trước, null nếu không có hoặc là của danh sách file / ngôn ngữ / model khác
+    private State loadState(List<File> outputs, String targetLanguage) {
+        if (!stateFile.isFile()) return null;
+        State state;
+        try (Reader reader = Files.newBufferedReader(stateFile.toPath(), StandardCharsets.UTF_8)) {
+            state = GSON.fromJson(reader, State.class);
+        } catch (IOException | JsonParseException e) {
+            translator.log("Không đọc được " + stateFile + ", gửi batch mới");
+            return null;
+        }
+        List<String> paths = new ArrayList<>(outputs.size());
+        for (File output : outputs) paths.add(output.getAbsolutePath());
+        if (state == null || state.batches == null || state.requests == null
+                || !targetLanguage.equals(state.lang) || !translator.getModelName().equals(state.model)
+                || !paths.equals(state.outputs)) {
+            translator.log("Bỏ qua " + stateFile + " (của một lần dịch khác), gửi batch mới");
+            return null;
+        }
+        return state;
+    }
+
+    private void saveState(State state) throws IOException {
+        Path path = stateFile.toPath();
+        Path temp = path.resolveSibling(stateFile.getName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            GSON.toJson(state, writer);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
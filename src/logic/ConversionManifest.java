@@ -0,0 +1,239 @@
+package logic;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Manifest lưu trên đĩa để chạy lại một batch mà không làm lại các file không đổi.
+ *
+ * Mỗi file kết quả có một entry ghi lại file nguồn (kích thước, mtime, SHA-256) cùng định
+ * dạng đích, model và ngôn ngữ đã dùng. Kết quả còn mới khi file kết quả vẫn tồn tại và các
+ * thông tin đó khớp. Nếu chỉ mtime thay đổi (copy lại, touch) thì so hash, hash trùng thì vẫn
+ * coi là còn mới và cập nhật mtime để lần sau không phải hash lại.
+ *
+ * Các hàm kiểm tra và ghi nhận an toàn khi gọi từ nhiều thread.
+ */
+public class ConversionManifest {
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private final File file;
+    // Khóa là đường dẫn tuyệt đối của file kết quả dự kiến
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty = false;
+
+    private ConversionManifest(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Đọc manifest, file không tồn tại hoặc hỏng thì bắt đầu với manifest rỗng
+     */
+    public static ConversionManifest load(File file) {
+        ConversionManifest manifest = new ConversionManifest(file);
+        if (!file.isFile()) {
+            return manifest;
+        }
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            Map<String, Entry> stored = GSON.fromJson(reader, new TypeToken<Map<String, Entry>>() {}.getType());
+            if (stored != null) {
+                stored.values().removeIf(Objects::isNull);
+                manifest.entries.putAll(stored);
+            }
+        } catch (IOException | JsonParseException e) {
+            // Manifest hỏng chỉ làm mất cache, lần chạy này sẽ xử lý lại mọi file
+            manifest.entries.clear();
+        }
+        return manifest;
+    }
+
+    /**
+     * Thông tin của một file nguồn tại thời điểm đọc
+     */
+    public static final class Stamp {
+        final String input;
+        final long size;
+        final long modified;
+        final String hash;
+
+        Stamp(String input, long size, long modified, String hash) {
+            this.input = input;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Đọc kích thước, mtime và hash của file nguồn; gọi trước khi xử lý rồi truyền vào record()
+     */
+    public static Stamp stamp(File input) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(input.toPath(), BasicFileAttributes.class);
+        return new Stamp(key(input), attrs.size(), attrs.lastModifiedTime().toMillis(), hash(input));
+    }
+
+    /**
+     * @param output file kết quả dự kiến (trước khi đổi tên nếu có)
+     * @param model null nếu không dịch
+     * @param language null nếu không dịch
+     */
+    public boolean isCurrent(File input, File output, SubtitleFormat format, String model, String language) {
+        Entry entry = entries.get(key(output));
+        if (entry == null
+                || !key(input).equals(entry.input)
+                || !Objects.equals(format.name(), entry.format)
+                || !Objects.equals(model, entry.model)
+                || !Objects.equals(language, entry.language)
+                || entry.output == null || !new File(entry.output).isFile()) {
+            return false;
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(input.toPath(), BasicFileAttributes.class);
+            if (attrs.size() != entry.size) {
+                return false;
+            }
+            long modified = attrs.lastModifiedTime().toMillis();
+            if (modified == entry.modified) {
+                return true;
+            }
+            // mtime đổi nhưng nội dung có thể vẫn vậy
+            if (!hash(input).equals(entry.hash)) {
+                return false;
+            }
+            entries.put(key(output), entry.withModified(modified));
+            dirty = true;
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Lọc song song các việc cần làm lại; việc còn mới bị loại bỏ
+     * @param isCurrent trả về true nếu kết quả của việc đó còn mới
+     */
+    public <T> List<T> outOfDate(List<T> jobs, Predicate<T> isCurrent) {
+        return jobs.parallelStream()
+                .filter(isCurrent.negate())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Ghi nhận kết quả vừa tạo xong
+     * @param output file kết quả dự kiến, dùng làm khóa
+     * @param actualOutput file thực tế (khác output nếu đã đổi tên)
+     */
+    public void record(Stamp stamp, File output, File actualOutput, SubtitleFormat format,
+                       String model, String language) {
+        Entry entry = new Entry();
+        entry.input = stamp.input;
+        entry.size = stamp.size;
+        entry.modified = stamp.modified;
+        entry.hash = stamp.hash;
+        entry.output = key(actualOutput);
+        entry.format = format.name();
+        entry.model = model;
+        entry.language = language;
+        entries.put(key(output), entry);
+        dirty = true;
+    }
+
+    /**
+     * Ghi manifest ra file tạm rồi đổi tên, không để lại manifest ghi dở
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        Files.createDirectories(parent.toPath());
+        Path temp = Files.createTempFile(parent.toPath(), file.getName(), ".tmp");
+        // Xóa cờ trước khi ghi: record() chạy song song trong lúc ghi sẽ đặt lại cờ, lần save sau ghi tiếp
+        dirty = false;
+        boolean saved = false;
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                GSON.toJson(entries, writer);
+            }
+            try {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            saved = true;
+        } finally {
+            if (!saved) dirty = true;
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private static String key(File file) {
+        return file.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    // SHA-256 của nội dung file, dạng hex
+    static String hash(File input) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(input)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    // Một dòng trong manifest (Gson đọc/ghi trực tiếp các field)
+    private static class Entry {
+        String input;
+        long size;
+        long modified;
+        String hash;
+        String output;
+        String format;
+        String model;
+        String language;
+
+        Entry withModified(long newModified) {
+            Entry copy = new Entry();
+            copy.input = input;
+            copy.size = size;
+            copy.modified = newModified;
+            copy.hash = hash;
+            copy.output = output;
+            copy.format = format;
+            copy.model = model;
+            copy.language = language;
+            return copy;
+        }
+    }
+}
@@ -8,46 +8,45 @@ import java.util.*;
 
 public class Converter {
 
+    /**
+     * Chuyển đổi giữa hai định dạng bất kỳ, định dạng được xác định theo đuôi file
+     */
+    public static void convert(File inputFile, File outputFile) throws IOException {
+        SubtitleFormat from = SubtitleFormat.fromFile(inputFile);
+        SubtitleFormat to = SubtitleFormat.fromFile(outputFile);
+        if (from == null || to == null) {
+            throw new IOException("Unsupported conversion: " + inputFile.getName() + " -> " + outputFile.getName());
+        }
+        convert(inputFile, from, outputFile, to);
+    }
+
+    /**
+     * Chuyển đổi từ định dạng from sang định dạng to trong một lượt đọc.
+     * File SRT/VTT lớn được xử lý trực tiếp trên byte bằng MappedConverter.
+     */
+    public static void convert(File inputFile, SubtitleFormat from, File outputFile, SubtitleFormat to) throws IOException {
+        if (MappedConverter.supports(from, to) && inputFile.length() >= MappedConverter.MAPPED_THRESHOLD) {
+            MappedConverter.convert(inputFile, outputFile, to);
+            return;
+        }
+        if (from == SubtitleFormat.LRC) {
+            convertLrc(inputFile, outputFile, to);
+            return;
+        }
+        try (CueReader reader = CueReader.open(inputFile, from);
+             CueWriter writer = CueWriter.open(outputFile, to)) {
+            copyCues(reader, writer, false);
+        }
+    }
+
     // Chuyển đổi SRT sang LRC
     public static void convertSrtToLrc(File srtFile, File lrcFile) throws IOException {
-        BufferedReader reader = new BufferedReader(new FileReader(srtFile));
-        BufferedWriter writer = new BufferedWriter(new FileWriter(lrcFile));
-        String line;
-        Pattern timePattern = Pattern.compile("(\\d{2}):(\\d{2}):(\\d{2}),(\\d{3}) --> .*");
-        while ((line = reader.readLine()) != null) {
-            Matcher matcher = timePattern.matcher(line);
-            if (matcher.matches()) {
-                int min = Integer.parseInt(matcher.group(2));
-                int sec = Integer.parseInt(matcher.group(3));
-                int ms = Integer.parseInt(matcher.group(4));
-                String lrcTime = String.format("[%02d:%02d.%02d]", min, sec, ms / 10);
-                String lyric = reader.readLine();
-                writer.write(lrcTime + lyric + "\n");
-            }
-        }
-        reader.close();
-        writer.close();
+        convert(srtFile, SubtitleFormat.SRT, lrcFile, SubtitleFormat.LRC);
     }
 
     // Chuyển đổi VTT sang LRC
     public static void convertVttToLrc(File vttFile, File lrcFile) throws IOException {
-        BufferedReader reader = new BufferedReader(new FileReader(vttFile));
-        BufferedWriter writer = new BufferedWriter(new FileWriter(lrcFile));
-        String line;
-        Pattern timePattern = Pattern.compile("(\\d{2}):(\\d{2})\\.(\\d{3}) --> .*");
-        while ((line = reader.readLine()) != null) {
-            Matcher matcher = timePattern.matcher(line);
-            if (matcher.matches()) {
-                int min = Integer.parseInt(matcher.group(1));
-                int sec = Integer.parseInt(matcher.group(2));
-                int ms = Integer.parseInt(matcher.group(3));
-                String lrcTime = String.format("[%02d:%02d.%02d]", min, sec, ms / 10);
-                String lyric = reader.readLine();
-                writer.write(lrcTime + lyric + "\n");
-            }
-        }
-        reader.close();
-        writer.close();
+        convert(vttFile, SubtitleFormat.VTT, lrcFile, SubtitleFormat.LRC);
     }
 
     // Đổi tên file chỉ giữ số đầu tiên
@@ -72,141 +71,54 @@ public class Converter {
      * Convert LRC to SRT format
      */
     public static void convertLrcToSrt(File lrcFile, File srtFile) throws IOException {
-        List<String> lines = Files.readAllLines(lrcFile.toPath());
-        List<LrcEntry> entries = new ArrayList<>();
-        Pattern timePattern = Pattern.compile("\\[(\\d{2}):(\\d{2})\\.(\\d{2})\\](.*)");
-        
-        // Đọc tất cả các entry từ file LRC
-        for (String line : lines) {
-            Matcher matcher = timePattern.matcher(line);
-            if (matcher.matches()) {
-                int min = Integer.parseInt(matcher.group(1));
-                int sec = Integer.parseInt(matcher.group(2));
-                int ms = Integer.parseInt(matcher.group(3)) * 10; // Convert to milliseconds
-                String text = matcher.group(4).trim();
-                
-                long startTime = (min * 60 + sec) * 1000 + ms;
-                entries.add(new LrcEntry(startTime, text));
-            }
-        }
-        
-        // Sắp xếp entries theo thời gian
-        Collections.sort(entries);
-        
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(srtFile))) {
-            for (int i = 0; i < entries.size(); i++) {
-                LrcEntry current = entries.get(i);
-                
-                // Tính thời gian kết thúc (hoặc là thời gian bắt đầu của entry tiếp theo, hoặc + 5 giây)
-                long endTime;
-                if (i < entries.size() - 1) {
-                    endTime = entries.get(i + 1).startTime;
-                } else {
-                    endTime = current.startTime + 5000; // Thêm 5 giây cho entry cuối
-                }
-                
-                // Ghi vào file SRT
-                writer.write(String.valueOf(i + 1));
-                writer.newLine();
-                
-                // Format: 00:00:00,000 --> 00:00:00,000
-                writer.write(String.format("%02d:%02d:%02d,%03d --> %02d:%02d:%02d,%03d",
-                        current.startTime / 3600000,                            // Giờ bắt đầu
-                        (current.startTime % 3600000) / 60000,                  // Phút bắt đầu
-                        (current.startTime % 60000) / 1000,                     // Giây bắt đầu
-                        current.startTime % 1000,                               // Milli bắt đầu
-                        endTime / 3600000,                                      // Giờ kết thúc
-                        (endTime % 3600000) / 60000,                            // Phút kết thúc
-                        (endTime % 60000) / 1000,                               // Giây kết thúc
-                        endTime % 1000                                          // Milli kết thúc
-                ));
-                writer.newLine();
-                
-                writer.write(current.text);
-                writer.newLine();
-                writer.newLine();
-            }
-        }
+        convert(lrcFile, SubtitleFormat.LRC, srtFile, SubtitleFormat.SRT);
     }
 
     /**
      * Convert LRC to VTT format
      */
     public static void convertLrcToVtt(File lrcFile, File vttFile) throws IOException {
-        List<String> lines = Files.readAllLines(lrcFile.toPath());
-        List<LrcEntry> entries = new ArrayList<>();
-        Pattern timePattern = Pattern.compile("\\[(\\d{2}):(\\d{2})\\.(\\d{2})\\](.*)");
-        
-        // Đọc tất cả các entry từ file LRC
-        for (String line : lines) {
-            Matcher matcher = timePattern.matcher(line);
-            if (matcher.matches()) {
-                int min = Integer.parseInt(matcher.group(1));
-                int sec = Integer.parseInt(matcher.group(2));
-                int ms = Integer.parseInt(matcher.group(3)) * 10; // Convert to milliseconds
-                String text = matcher.group(4).trim();
-                
-                long startTime = (min * 60 + sec) * 1000 + ms;
-                entries.add(new LrcEntry(startTime, text));
+        convert(lrcFile, SubtitleFormat.LRC, vttFile, SubtitleFormat.VTT);
+    }
+
+    /**
+     * Ghi lần lượt từng cue, thời gian kết thúc còn thiếu (LRC) lấy từ cue tiếp theo
+     * @param requireSorted dừng lại và trả về false khi gặp cue có thời gian nhỏ hơn cue trước
+     * @return true nếu đã ghi hết các cue
+     */
+    static boolean copyCues(CueReader reader, CueWriter writer, boolean requireSorted) throws IOException {
+        SubtitleCue current = reader.next();
+        while (current != null) {
+            SubtitleCue next = reader.next();
+            if (requireSorted && next != null && next.getStartTime() < current.getStartTime()) {
+                return false;
             }
-        }
-        
-        // Sắp xếp entries theo thời gian
-        Collections.sort(entries);
-        
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(vttFile))) {
-            // VTT header
-            writer.write("WEBVTT");
-            writer.newLine();
-            writer.newLine();
-            
-            for (int i = 0; i < entries.size(); i++) {
-                LrcEntry current = entries.get(i);
-                
-                // Tính thời gian kết thúc (hoặc là thời gian bắt đầu của entry tiếp theo, hoặc + 5 giây)
-                long endTime;
-                if (i < entries.size() - 1) {
-                    endTime = entries.get(i + 1).startTime;
-                } else {
-                    endTime = current.startTime + 5000; // Thêm 5 giây cho entry cuối
-                }
-                
-                // Ghi vào file VTT
-                // Format: 00:00:00.000 --> 00:00:00.000
-                writer.write(String.format("%02d:%02d:%02d.%03d --> %02d:%02d:%02d.%03d",
-                        current.startTime / 3600000,                            // Giờ bắt đầu
-                        (current.startTime % 3600000) / 60000,                  // Phút bắt đầu
-                        (current.startTime % 60000) / 1000,                     // Giây bắt đầu
-                        current.startTime % 1000,                               // Milli bắt đầu
-                        endTime / 3600000,                                      // Giờ kết thúc
-                        (endTime % 3600000) / 60000,                            // Phút kết thúc
-                        (endTime % 60000) / 1000,                               // Giây kết thúc
-                        endTime % 1000                                          // Milli kết thúc
-                ));
-                writer.newLine();
-                
-                writer.write(current.text);
-                writer.newLine();
-                writer.newLine();
+            if (!current.hasEndTime()) {
+                // Thời gian kết thúc là thời gian bắt đầu của entry tiếp theo, hoặc + 5 giây cho entry cuối
+                current = current.withEndTime(next != null
+                        ? next.getStartTime()
+                        : current.getStartTime() + CueWriter.DEFAULT_DURATION);
             }
+            writer.write(current);
+            current = next;
         }
+        return true;
     }
-    
+
     /**
-     * Lớp lưu trữ entry LRC
+     * Dòng LRC có thể không theo thứ tự thời gian. Thử ghi thẳng trước (đa số file đã
+     * sắp xếp sẵn), nếu gặp dòng ngược thứ tự thì sắp xếp ngoài bộ nhớ rồi ghi lại từ đầu.
      */
-    private static class LrcEntry implements Comparable<LrcEntry> {
-        long startTime; // thời gian tính theo milliseconds
-        String text;
-        
-        public LrcEntry(long startTime, String text) {
-            this.startTime = startTime;
-            this.text = text;
+    private static void convertLrc(File inputFile, File outputFile, SubtitleFormat to) throws IOException {
+        try (CueReader reader = CueReader.open(inputFile, SubtitleFormat.LRC);
+             CueWriter writer = CueWriter.open(outputFile, to)) {
+            if (copyCues(reader, writer, true)) {
+                return;
+            }
         }
-        
-        @Override
-        public int compareTo(LrcEntry other) {
-            return Long.compare(this.startTime, other.startTime);
+        try (CueReader sorted = ExternalCueSorter.sort(CueReader.open(inputFile, SubtitleFormat.LRC));
+             CueWriter writer = CueWriter.open(outputFile, to)) {
+            copyCues(sorted, writer, false);
         }
     }
 }
@@ -0,0 +1,157 @@
+package logic;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File phụ đề tách thành các cue cần dịch, đọc bằng CueReader của đúng định dạng (SRT, VTT, LRC).
+ *
+ * Chỉ text của cue được gửi đi dịch. Phần còn lại được giữ tại chỗ và ghép lại nguyên văn khi
+ * ghi file kết quả: số thứ tự SRT, identifier và dòng timing (kể cả cue settings) của VTT, header
+ * WEBVTT, khối NOTE/STYLE, tag thời gian và metadata ([ar:], [ti:]...) của LRC. Mỗi dòng lời LRC
+ * là một cue, nên điệp khúc lặp lại được bộ nhớ dịch, lọc trùng và chunker xử lý theo từng dòng.
+ *
+ * File kết quả luôn xuống dòng bằng LF.
+ */
+final class CueDocument {
+    final SubtitleFormat format;
+    final List<Cue> cues;
+    // Phần sau cue cuối cùng
+    final String trailer;
+
+    private CueDocument(SubtitleFormat format, List<Cue> cues, String trailer) {
+        this.format = format;
+        this.cues = cues;
+        this.trailer = trailer;
+    }
+
+    /**
+     * Định dạng theo đuôi file, đuôi lạ thì đọc như SRT
+     */
+    static CueDocument read(File file) throws IOException {
+        SubtitleFormat format = SubtitleFormat.fromFile(file);
+        if (format == null) format = SubtitleFormat.SRT;
+        try (CueReader reader = CueReader.open(file, format)) {
+            return read(reader, format);
+        }
+    }
+
+    static CueDocument read(CueReader reader, SubtitleFormat format) throws IOException {
+        // Các dòng reader đã đọc mà chưa thuộc về cue nào
+        List<String> lines = new ArrayList<>();
+        reader.recordLines(lines);
+        TimestampScanner scanner = new TimestampScanner();
+        List<Cue> cues = new ArrayList<>();
+        StringBuilder prefix = new StringBuilder();
+        SubtitleCue cue;
+        while ((cue = reader.next()) != null) {
+            Cue parsed;
+            int consumed;
+            if (format == SubtitleFormat.LRC) {
+                // LrcReader trả về ngay khi gặp dòng có tag: dòng cuối là dòng của cue
+                int cueLine = lines.size() - 1;
+                appendLines(prefix, lines, 0, cueLine);
+                parsed = lrcCue(prefix.toString(), lines.get(cueLine), cues.size() + 1, scanner);
+                consumed = cueLine + 1;
+            } else {
+                // BlockReader bỏ qua mọi dòng trước dòng timing đầu tiên, rồi đọc text tới dòng trống
+                int timing = 0;
+                while (!scanner.scanCueTiming(lines.get(timing))) timing++;
+                boolean hasIdentifier = timing > 0 && !TimestampScanner.isBlank(lines.get(timing - 1));
+                int first = hasIdentifier ? timing - 1 : timing;
+                appendLines(prefix, lines, 0, first);
+                String identifier = hasIdentifier ? lines.get(first) : null;
+                String header = hasIdentifier ? identifier + "\n" + lines.get(timing) : lines.get(timing);
+                String number = identifier == null ? "" : identifier.trim();
+                if (format == SubtitleFormat.SRT && !number.matches("\\d+")) number = "";
+                parsed = new Cue(prefix.toString(), header, "\n", cue.getText(), number);
+                consumed = timing + 1 + lineCount(cue.getText());
+            }
+            cues.add(parsed);
+            prefix.setLength(0);
+            // Dòng trống kết thúc cue (nếu đã đọc) thuộc về phần trước cue sau
+            lines.subList(0, consumed).clear();
+        }
+        appendLines(prefix, lines, 0, lines.size());
+        return new CueDocument(format, cues, prefix.toString());
+    }
+
+    // "[00:12.34][01:05.00] lời": các tag đầu dòng và khoảng trắng sau chúng là header
+    private static Cue lrcCue(String prefix, String line, int number, TimestampScanner scanner) {
+        int position = 0;
+        while (scanner.scanLrcTag(line, position) != TimestampScanner.NO_MATCH) {
+            position = scanner.getPosition();
+        }
+        while (position < line.length() && Character.isWhitespace(line.charAt(position))) position++;
+        return new Cue(prefix, line.substring(0, position), "", line.substring(position).trim(),
+                String.valueOf(number));
+    }
+
+    private static void appendLines(StringBuilder out, List<String> lines, int from, int to) {
+        for (int i = from; i < to; i++) out.append(lines.get(i)).append('\n');
+    }
+
+    private static int lineCount(String text) {
+        if (text.isEmpty()) return 0;
+        int count = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') count++;
+        }
+        return count;
+    }
+
+    List<String> texts() {
+        List<String> texts = new ArrayList<>(cues.size());
+        for (Cue cue : cues) texts.add(cue.text);
+        return texts;
+    }
+
+    /**
+     * Một cue: phần giữ nguyên (các dòng trước cue, header) và text cần dịch
+     */
+    static final class Cue {
+        // Các dòng trước cue không thuộc cue nào (dòng trống, header WEBVTT, NOTE, metadata LRC)
+        final String prefix;
+        // Số thứ tự/identifier và dòng timing (SRT, VTT) hoặc các tag thời gian (LRC)
+        final String header;
+        // Nối header với text: xuống dòng (SRT, VTT) hoặc không gì cả (LRC)
+        private final String separator;
+        final String text;
+        // Số thứ tự SRT, identifier VTT, số dòng LRC (từ 1); "" nếu không có
+        final String number;
+
+        Cue(String prefix, String header, String separator, String text, String number) {
+            this.prefix = prefix;
+            this.header = header;
+            this.separator = separator;
+            this.text = text;
+            this.number = number;
+        }
+
+        /**
+         * Cue với text đã dịch, kèm các dòng trước nó, để ghi thẳng ra file kết quả
+         */
+        String withText(String translated) {
+            if (translated.isEmpty()) return prefix + header + "\n";
+            // Cue LRC chỉ được nằm trên một dòng
+            if (separator.isEmpty()) translated = translated.replace('\n', ' ');
+            return prefix + header + separator + translated + "\n";
+        }
+
+        /**
+         * Cue như trong file gốc
+         */
+        String original() {
+            return withText(text);
+        }
+
+        /**
+         * Block SRT (số thứ tự, timestamp, text) để gửi khi không dịch theo kiểu chỉ text
+         */
+        String block() {
+            return text.isEmpty() ? header : header + "\n" + text;
+        }
+    }
+}
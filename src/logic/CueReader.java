@@ -0,0 +1,151 @@
+package logic;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Bộ đọc cue dạng pull: mỗi lần gọi next() chỉ đọc đủ dòng cho một cue,
+ * nên bộ nhớ không phụ thuộc vào kích thước file.
+ */
+public abstract class CueReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    protected final BufferedReader reader;
+    private boolean firstLine = true;
+    // Nơi ghi lại mọi dòng đã đọc, null nếu không cần
+    private List<String> rawLines;
+
+    protected CueReader(Reader in) {
+        this.reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, BUFFER_SIZE);
+    }
+
+    /**
+     * Đọc cue tiếp theo
+     * @return cue kế tiếp, hoặc null khi đã hết file
+     */
+    public abstract SubtitleCue next() throws IOException;
+
+    public static CueReader open(File file) throws IOException {
+        SubtitleFormat format = SubtitleFormat.fromFile(file);
+        if (format == null) {
+            throw new IOException("Unsupported subtitle format: " + file.getName());
+        }
+        return open(file, format);
+    }
+
+    public static CueReader open(File file, SubtitleFormat format) throws IOException {
+        // InputStreamReader thay byte UTF-8 lỗi bằng ký tự thay thế thay vì ném exception như Files.newBufferedReader
+        return create(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), format);
+    }
+
+    public static CueReader create(Reader in, SubtitleFormat format) {
+        switch (format) {
+            case LRC:
+                return new LrcReader(in);
+            case SRT:
+            case VTT:
+            default:
+                return new BlockReader(in);
+        }
+    }
+
+    /**
+     * Ghi lại vào lines mọi dòng đọc được, kể cả dòng bị bỏ qua (header WEBVTT, NOTE, số thứ tự,
+     * metadata LRC), để dựng lại file gốc quanh từng cue
+     */
+    void recordLines(List<String> lines) {
+        this.rawLines = lines;
+    }
+
+    // Đọc một dòng, bỏ BOM ở đầu file nếu có
+    protected String readLine() throws IOException {
+        String line = reader.readLine();
+        if (firstLine) {
+            firstLine = false;
+            if (line != null && !line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                line = line.substring(1);
+            }
+        }
+        if (line != null && rawLines != null) rawLines.add(line);
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Đọc SRT và VTT: cả hai đều là các block "timestamp --> timestamp" + các dòng text,
+     * chỉ khác dấu phân cách milliseconds và phần giờ có thể bị lược bỏ trong VTT.
+     */
+    static class BlockReader extends CueReader {
+        private final TimestampScanner scanner = new TimestampScanner();
+
+        BlockReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public SubtitleCue next() throws IOException {
+            String line;
+            while ((line = readLine()) != null) {
+                if (!scanner.scanCueTiming(line)) {
+                    continue; // Bỏ qua số thứ tự, header WEBVTT, NOTE...
+                }
+                long start = scanner.getStart();
+                long end = scanner.getEnd();
+
+                // Gom các dòng text cho tới dòng trống
+                StringBuilder text = new StringBuilder();
+                while ((line = readLine()) != null && !TimestampScanner.isBlank(line)) {
+                    if (text.length() > 0) text.append('\n');
+                    text.append(line);
+                }
+                return new SubtitleCue(start, end, text.toString());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Đọc LRC: mỗi dòng "[mm:ss.xx]lời bài hát" là một cue, chưa có thời gian kết thúc.
+     */
+    static class LrcReader extends CueReader {
+        private final TimestampScanner scanner = new TimestampScanner();
+
+        LrcReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public SubtitleCue next() throws IOException {
+            String line;
+            while ((line = readLine()) != null) {
+                long startTime = scanner.scanLrcTag(line, 0);
+                if (startTime != TimestampScanner.NO_MATCH) {
+                    return new SubtitleCue(startTime, line.substring(scanner.getPosition()).trim());
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Đọc lại các cue đã có sẵn trong bộ nhớ (dùng cho LRC cần sắp xếp trước khi ghi)
+     */
+    static class ListReader extends CueReader {
+        private final Iterator<SubtitleCue> iterator;
+
+        ListReader(List<SubtitleCue> cues) {
+            super(new StringReader(""));
+            this.iterator = cues.iterator();
+        }
+
+        @Override
+        public SubtitleCue next() {
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+    }
+}
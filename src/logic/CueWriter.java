@@ -0,0 +1,125 @@
+package logic;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Bộ ghi cue tương ứng với CueReader, mỗi định dạng một lớp con.
+ * Cue được ghi ngay khi nhận nên không cần giữ toàn bộ file trong bộ nhớ.
+ */
+public abstract class CueWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Thời lượng mặc định khi cue chưa có thời gian kết thúc
+    static final long DEFAULT_DURATION = 5000;
+
+    protected final BufferedWriter writer;
+    protected final TimestampFormatter formatter = new TimestampFormatter();
+
+    protected CueWriter(Writer out) {
+        this.writer = out instanceof BufferedWriter ? (BufferedWriter) out : new BufferedWriter(out, BUFFER_SIZE);
+    }
+
+    public abstract void write(SubtitleCue cue) throws IOException;
+
+    public static CueWriter open(File file) throws IOException {
+        SubtitleFormat format = SubtitleFormat.fromFile(file);
+        if (format == null) {
+            throw new IOException("Unsupported subtitle format: " + file.getName());
+        }
+        return open(file, format);
+    }
+
+    public static CueWriter open(File file, SubtitleFormat format) throws IOException {
+        return create(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8), format);
+    }
+
+    public static CueWriter create(Writer out, SubtitleFormat format) throws IOException {
+        switch (format) {
+            case SRT:
+                return new SrtWriter(out);
+            case VTT:
+                return new VttWriter(out);
+            case LRC:
+            default:
+                return new LrcWriter(out);
+        }
+    }
+
+    protected static long endTimeOf(SubtitleCue cue) {
+        return cue.hasEndTime() ? cue.getEndTime() : cue.getStartTime() + DEFAULT_DURATION;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Ghi SRT: số thứ tự, "00:00:00,000 --> 00:00:00,000", text, dòng trống
+     */
+    static class SrtWriter extends CueWriter {
+        private int index = 0;
+
+        SrtWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(SubtitleCue cue) throws IOException {
+            formatter.writeNumber(writer, ++index);
+            writer.newLine();
+            formatter.writeCueTiming(writer, cue.getStartTime(), endTimeOf(cue), ',');
+            writer.newLine();
+            writer.write(cue.getText());
+            writer.newLine();
+            writer.newLine();
+        }
+    }
+
+    /**
+     * Ghi VTT: header "WEBVTT" rồi các block "00:00:00.000 --> 00:00:00.000" + text
+     */
+    static class VttWriter extends CueWriter {
+        VttWriter(Writer out) throws IOException {
+            super(out);
+            writer.write("WEBVTT");
+            writer.newLine();
+            writer.newLine();
+        }
+
+        @Override
+        public void write(SubtitleCue cue) throws IOException {
+            formatter.writeCueTiming(writer, cue.getStartTime(), endTimeOf(cue), '.');
+            writer.newLine();
+            writer.write(cue.getText());
+            writer.newLine();
+            writer.newLine();
+        }
+    }
+
+    /**
+     * Ghi LRC: "[mm:ss.xx]lời bài hát", cue nhiều dòng được gộp thành một dòng
+     */
+    static class LrcWriter extends CueWriter {
+        LrcWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(SubtitleCue cue) throws IOException {
+            formatter.writeLrcTag(writer, cue.getStartTime());
+            // Ghi từng đoạn giữa các '\n' thay vì tạo chuỗi mới bằng replace()
+            String text = cue.getText();
+            int from = 0;
+            int newline;
+            while ((newline = text.indexOf('\n', from)) >= 0) {
+                writer.write(text, from, newline - from);
+                writer.write(' ');
+                from = newline + 1;
+            }
+            writer.write(text, from, text.length() - from);
+            writer.write('\n');
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package logic;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Sắp xếp cue theo thời gian bắt đầu với bộ nhớ giới hạn (external merge sort).
+ *
+ * Cue được đọc theo từng run có kích thước cố định, mỗi run sắp xếp trong bộ nhớ rồi ghi
+ * ra file tạm; sau đó các run được trộn k-way và trả về dưới dạng CueReader nên
+ * Converter vẫn ghi từng cue một như bình thường. Thứ tự các cue cùng thời gian được giữ
+ * nguyên như trong file gốc (giống Collections.sort).
+ */
+final class ExternalCueSorter {
+    // Giới hạn mỗi run theo số cue và tổng số ký tự text để heap không phụ thuộc kích thước file
+    static final int DEFAULT_RUN_SIZE = 100_000;
+    private static final long RUN_CHAR_BUDGET = 16L * 1024 * 1024;
+    // Số file run được mở cùng lúc khi trộn
+    private static final int MAX_MERGE_WIDTH = 64;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private ExternalCueSorter() {
+    }
+
+    /**
+     * Đọc hết source (và đóng nó), trả về CueReader đọc các cue đã sắp xếp.
+     * Các file tạm bị xóa khi đóng reader trả về.
+     */
+    static CueReader sort(CueReader source, int runSize, File tempDir) throws IOException {
+        List<File> runs = new ArrayList<>();
+        // Run đã trộn xong của lượt trộn đang chạy, chưa nằm trong runs
+        List<File> merged = new ArrayList<>();
+        try (CueReader in = source) {
+            List<SubtitleCue> run = new ArrayList<>();
+            long runChars = 0;
+            SubtitleCue cue;
+            while ((cue = in.next()) != null) {
+                run.add(cue);
+                runChars += cue.getText().length();
+                if (run.size() >= runSize || runChars >= RUN_CHAR_BUDGET) {
+                    runs.add(spill(run, tempDir));
+                    run.clear();
+                    runChars = 0;
+                }
+            }
+            if (runs.isEmpty()) {
+                // Vừa một run: sắp xếp trong bộ nhớ, không cần file tạm
+                Collections.sort(run);
+                return new CueReader.ListReader(run);
+            }
+            if (!run.isEmpty()) {
+                runs.add(spill(run, tempDir));
+            }
+
+            // Trộn bớt từng nhóm liên tiếp cho tới khi đủ ít để mở cùng lúc
+            while (runs.size() > MAX_MERGE_WIDTH) {
+                merged = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += MAX_MERGE_WIDTH) {
+                    List<File> group = runs.subList(i, Math.min(i + MAX_MERGE_WIDTH, runs.size()));
+                    merged.add(group.size() == 1 ? group.get(0) : mergeToFile(group, tempDir));
+                }
+                runs = merged;
+            }
+            return new MergeReader(runs);
+        } catch (IOException | RuntimeException e) {
+            deleteAll(runs);
+            deleteAll(merged);
+            throw e;
+        }
+    }
+
+    static CueReader sort(CueReader source) throws IOException {
+        return sort(source, DEFAULT_RUN_SIZE, null);
+    }
+
+    // Sắp xếp run trong bộ nhớ rồi ghi ra file tạm
+    private static File spill(List<SubtitleCue> run, File tempDir) throws IOException {
+        Collections.sort(run);
+        File file = File.createTempFile("cues", ".run", tempDir);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), IO_BUFFER_SIZE))) {
+            for (SubtitleCue cue : run) {
+                writeCue(out, cue);
+            }
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+        return file;
+    }
+
+    private static File mergeToFile(List<File> group, File tempDir) throws IOException {
+        File file = File.createTempFile("cues", ".run", tempDir);
+        try (MergeReader reader = new MergeReader(new ArrayList<>(group));
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(file), IO_BUFFER_SIZE))) {
+            SubtitleCue cue;
+            while ((cue = reader.next()) != null) {
+                writeCue(out, cue);
+            }
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+        return file;
+    }
+
+    private static void writeCue(DataOutputStream out, SubtitleCue cue) throws IOException {
+        byte[] text = cue.getText().getBytes(StandardCharsets.UTF_8);
+        out.writeLong(cue.getStartTime());
+        out.writeLong(cue.getEndTime());
+        out.writeInt(text.length);
+        out.write(text);
+    }
+
+    private static SubtitleCue readCue(DataInputStream in) throws IOException {
+        long start;
+        try {
+            start = in.readLong();
+        } catch (EOFException e) {
+            return null;
+        }
+        long end = in.readLong();
+        byte[] text = new byte[in.readInt()];
+        in.readFully(text);
+        return new SubtitleCue(start, end, new String(text, StandardCharsets.UTF_8));
+    }
+
+    private static void deleteAll(List<File> files) {
+        for (File file : files) {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Trộn k-way các run đã sắp xếp; cue bằng thời gian lấy từ run đứng trước
+     */
+    private static class MergeReader extends CueReader {
+        private final List<File> runs;
+        private final List<DataInputStream> inputs = new ArrayList<>();
+        private final PriorityQueue<RunHead> heads = new PriorityQueue<>();
+
+        MergeReader(List<File> runs) throws IOException {
+            super(new StringReader(""));
+            this.runs = runs;
+            try {
+                for (int i = 0; i < runs.size(); i++) {
+                    DataInputStream in = new DataInputStream(
+                            new BufferedInputStream(new FileInputStream(runs.get(i)), IO_BUFFER_SIZE));
+                    inputs.add(in);
+                    SubtitleCue first = readCue(in);
+                    if (first != null) {
+                        heads.add(new RunHead(first, i));
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public SubtitleCue next() throws IOException {
+            RunHead head = heads.poll();
+            if (head == null) {
+                return null;
+            }
+            SubtitleCue following = readCue(inputs.get(head.run));
+            if (following != null) {
+                heads.add(new RunHead(following, head.run));
+            }
+            return head.cue;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (DataInputStream in : inputs) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+            deleteAll(runs);
+        }
+    }
+
+    private static class RunHead implements Comparable<RunHead> {
+        final SubtitleCue cue;
+        final int run;
+
+        RunHead(SubtitleCue cue, int run) {
+            this.cue = cue;
+            this.run = run;
+        }
+
+        @Override
+        public int compareTo(RunHead other) {
+            int byTime = cue.compareTo(other.cue);
+            return byTime != 0 ? byTime : Integer.compare(run, other.run);
+        }
+    }
+}
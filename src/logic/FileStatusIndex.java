@@ -0,0 +1,290 @@
+package logic;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Trạng thái (chờ / đã chuyển đổi / đã dịch) của các file trong bảng, để renderer đọc trong O(1).
+ *
+ * - Việc kiểm tra file kết quả có tồn tại (stat) chạy trên một thread nền, không bao giờ trên
+ *   thread giao diện; trong lúc chờ file được coi là "chờ".
+ * - Thư mục chứa file kết quả được theo dõi bằng WatchService: file kết quả được tạo, sửa hay
+ *   xoá thì chỉ file gốc tương ứng được kiểm tra lại. Sau mỗi file chuyển đổi xong, giao diện
+ *   gọi invalidate() (cần khi WatchService không nhận được sự kiện, ví dụ ổ mạng).
+ * - Đổi định dạng, ngôn ngữ hay thư mục đích (setTargets) thì cả bảng được kiểm tra lại;
+ *   kết quả của cấu hình cũ đang chạy dở bị bỏ.
+ */
+public class FileStatusIndex implements Closeable {
+
+    public enum Status { WAITING, CONVERTED, TRANSLATED }
+
+    /**
+     * Nhận thay đổi trạng thái, được gọi từ thread nền
+     */
+    public interface Listener {
+        void onStatusChanged(File input, Status status);
+    }
+
+    private final Listener listener;
+    private final Set<File> inputs = ConcurrentHashMap.newKeySet();
+    private final Map<File, Status> statuses = new ConcurrentHashMap<>();
+    // File kết quả -> các file gốc sinh ra nó (a.srt và a.vtt cùng ra a.lrc)
+    private final Map<Path, Set<File>> outputs = new ConcurrentHashMap<>();
+    // Chỉ thread checker đăng ký/huỷ, nên không cần đồng bộ
+    private final Map<Path, WatchKey> watchedDirs = new HashMap<>();
+    private final ExecutorService checker;
+    private final WatchService watchService;
+    private volatile Targets targets;
+    private volatile boolean closed = false;
+
+    public FileStatusIndex(Listener listener) {
+        this.listener = listener;
+        this.checker = Executors.newSingleThreadExecutor(daemonThreads("file-status"));
+        WatchService service;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            service = null; // Không theo dõi được: chỉ còn invalidate()/refreshAll()
+        }
+        this.watchService = service;
+        if (service != null) {
+            Thread watcher = new Thread(this::watch, "file-status-watch");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+    }
+
+    /**
+     * Đặt cách đặt tên file kết quả. Gọi lại với giá trị cũ thì không làm gì.
+     * @param outputDir null để ghi cạnh file gốc
+     */
+    public void setTargets(String format, File outputDir, String targetLanguage) {
+        Targets next = new Targets(format.toLowerCase(), outputDir, targetLanguage);
+        if (next.equals(targets)) return;
+        targets = next;
+        checker.execute(() -> {
+            // Thư mục đích đổi: bỏ hết watch cũ, rescan sẽ đăng ký lại
+            for (WatchKey key : watchedDirs.values()) key.cancel();
+            watchedDirs.clear();
+            outputs.clear();
+            rescan(next);
+        });
+    }
+
+    public void add(File input) {
+        if (inputs.add(input)) {
+            Targets current = targets;
+            checker.execute(() -> recheck(input, current));
+        }
+    }
+
+    public void remove(File input) {
+        inputs.remove(input);
+        statuses.remove(input);
+        Targets current = targets;
+        checker.execute(() -> forget(input, current));
+    }
+
+    public void clear() {
+        inputs.clear();
+        statuses.clear();
+        checker.execute(() -> {
+            for (WatchKey key : watchedDirs.values()) key.cancel();
+            watchedDirs.clear();
+            outputs.clear();
+        });
+    }
+
+    /**
+     * Trạng thái đã biết của file, WAITING nếu chưa kiểm tra xong
+     */
+    public Status get(File input) {
+        return statuses.getOrDefault(input, Status.WAITING);
+    }
+
+    /**
+     * Kiểm tra lại một file, ví dụ ngay sau khi chuyển đổi/dịch xong
+     */
+    public void invalidate(File input) {
+        if (inputs.contains(input)) {
+            Targets current = targets;
+            checker.execute(() -> recheck(input, current));
+        }
+    }
+
+    public void refreshAll() {
+        Targets current = targets;
+        checker.execute(() -> rescan(current));
+    }
+
+    /**
+     * File đã chuyển sang định dạng format (đuôi .srt/.vtt/.lrc được thay, tên khác giữ nguyên)
+     * @param outputDir null để ghi cạnh file gốc
+     */
+    public static File convertedFile(File input, File outputDir, String format) {
+        return outputFile(input, outputDir, "." + format);
+    }
+
+    /**
+     * File đã dịch: tên_ngôn-ngữ.format
+     */
+    public static File translatedFile(File input, File outputDir, String format, String targetLanguage) {
+        return outputFile(input, outputDir, "_" + targetLanguage + "." + format);
+    }
+
+    private static File outputFile(File input, File outputDir, String suffix) {
+        String name = input.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0) {
+            String ext = name.substring(dot + 1);
+            if (ext.equals("srt") || ext.equals("vtt") || ext.equals("lrc")) {
+                name = name.substring(0, dot) + suffix;
+            }
+        }
+        return new File(outputDir != null ? outputDir : input.getParentFile(), name);
+    }
+
+    private void rescan(Targets current) {
+        for (File input : inputs) {
+            if (current != targets || closed) return; // Cấu hình đã đổi, lần rescan mới sẽ lo
+            recheck(input, current);
+        }
+    }
+
+    // Chỉ chạy trên thread checker
+    private void recheck(File input, Targets current) {
+        if (current == null || current != targets || !inputs.contains(input)) return;
+        File translated = translatedFile(input, current.outputDir, current.format, current.language);
+        File converted = convertedFile(input, current.outputDir, current.format);
+        watchOutput(input, translated);
+        watchOutput(input, converted);
+
+        Status status = Status.WAITING;
+        if (!translated.equals(input) && translated.exists()) {
+            status = Status.TRANSLATED;
+        } else if (!converted.equals(input) && converted.exists()) {
+            status = Status.CONVERTED;
+        }
+        // File bị gỡ hoặc cấu hình đổi trong lúc stat thì bỏ kết quả
+        if (current != targets || !inputs.contains(input)) return;
+        Status previous = statuses.put(input, status);
+        if (status != (previous == null ? Status.WAITING : previous)) {
+            listener.onStatusChanged(input, status);
+        }
+    }
+
+    private void watchOutput(File input, File output) {
+        Path path = output.toPath().toAbsolutePath().normalize();
+        outputs.computeIfAbsent(path, p -> ConcurrentHashMap.newKeySet()).add(input);
+        Path dir = path.getParent();
+        if (watchService == null || dir == null || watchedDirs.containsKey(dir)) return;
+        try {
+            watchedDirs.put(dir, dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+        } catch (IOException | ClosedWatchServiceException e) {
+            // Thư mục chưa có hoặc không theo dõi được: vẫn còn invalidate() sau mỗi lần chuyển đổi
+        }
+    }
+
+    // Chỉ chạy trên thread checker: file gốc đã gỡ khỏi bảng thì bỏ file kết quả của nó, và thôi
+    // theo dõi thư mục không còn file kết quả nào
+    private void forget(File input, Targets current) {
+        if (current == null || inputs.contains(input)) return; // Được thêm lại ngay sau khi gỡ
+        File[] files = {
+            translatedFile(input, current.outputDir, current.format, current.language),
+            convertedFile(input, current.outputDir, current.format)
+        };
+        for (File file : files) {
+            Path path = file.toPath().toAbsolutePath().normalize();
+            Set<File> sources = outputs.get(path);
+            if (sources == null) continue;
+            sources.remove(input);
+            if (sources.isEmpty()) {
+                outputs.remove(path);
+                unwatchIfUnused(path.getParent());
+            }
+        }
+    }
+
+    private void unwatchIfUnused(Path dir) {
+        if (dir == null) return;
+        for (Path output : outputs.keySet()) {
+            if (dir.equals(output.getParent())) return;
+        }
+        WatchKey key = watchedDirs.remove(dir);
+        if (key != null) key.cancel();
+    }
+
+    private void watch() {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    refreshAll(); // Mất sự kiện
+                    continue;
+                }
+                Path path = dir.resolve((Path) event.context());
+                for (File input : outputs.getOrDefault(path, Collections.emptySet())) {
+                    invalidate(input);
+                }
+            }
+            key.reset();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        checker.shutdownNow();
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Targets {
+        final String format;
+        final File outputDir;
+        final String language;
+
+        Targets(String format, File outputDir, String language) {
+            this.format = format;
+            this.outputDir = outputDir;
+            this.language = language;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Targets)) return false;
+            Targets other = (Targets) o;
+            return format.equals(other.format) && Objects.equals(outputDir, other.outputDir)
+                    && Objects.equals(language, other.language);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(format, outputDir, language);
+        }
+    }
+}
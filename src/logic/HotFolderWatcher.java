@@ -0,0 +1,294 @@
+package logic;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Theo dõi thư mục (đệ quy) bằng WatchService và tự chuyển đổi file phụ đề mới hoặc vừa sửa.
+ *
+ * - Chỉ xử lý file có trong sự kiện, không bao giờ quét lại cả cây thư mục; thư mục con mới
+ *   tạo được đăng ký thêm, khi OVERFLOW chỉ thư mục bị mất sự kiện được xem lại.
+ * - Debounce: file chỉ được xử lý khi kích thước và thời gian sửa không đổi trong
+ *   quietMillis, để không đọc file đang được copy dở.
+ * - Chuyển đổi chạy trên thread pool có số thread và hàng đợi giới hạn.
+ * - Khi rảnh, thread theo dõi nằm chờ trong WatchService.take() nên gần như không tốn CPU.
+ *
+ * File đã ở định dạng đích bị bỏ qua, nhờ vậy file kết quả ghi vào chính cây đang theo dõi
+ * không bị xử lý lại.
+ */
+public class HotFolderWatcher implements Closeable {
+    public static final long DEFAULT_QUIET_MILLIS = 1000;
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private final Path root;
+    private final SubtitleFormat targetFormat;
+    private final Path outputDir;
+    private final Translator translator;
+    private final String targetLanguage;
+    private final long quietMillis;
+    private final Listener listener;
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor workers;
+    // File đang chờ hết thời gian debounce
+    private final Map<Path, Pending> pending = new ConcurrentHashMap<>();
+    // Phiên bản (mtime) đã xử lý của từng file, để bỏ qua sự kiện MODIFY lặp lại; bỏ khi file bị xoá
+    private final Map<Path, Long> processed = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    /**
+     * Nhận kết quả xử lý, được gọi từ worker thread
+     */
+    public interface Listener {
+        void onConverted(File input, File output);
+
+        void onTranslated(File input, File output);
+
+        void onError(File input, Exception error);
+    }
+
+    /**
+     * @param outputDir thư mục đích (giữ nguyên cấu trúc thư mục con), null để ghi cạnh file gốc
+     * @param translator null nếu không cần dịch
+     */
+    public HotFolderWatcher(File root, SubtitleFormat targetFormat, File outputDir, int workerCount,
+                            Translator translator, String targetLanguage, long quietMillis,
+                            Listener listener) throws IOException {
+        this.root = root.toPath().toAbsolutePath().normalize();
+        this.targetFormat = targetFormat;
+        this.outputDir = outputDir == null ? null : outputDir.toPath().toAbsolutePath().normalize();
+        this.translator = translator;
+        this.targetLanguage = targetLanguage;
+        this.quietMillis = quietMillis;
+        this.listener = listener;
+        this.watchService = this.root.getFileSystem().newWatchService();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("watch-debounce"));
+        int threads = Math.max(1, workerCount);
+        // Hàng đợi đầy thì thread debounce tự chạy việc, làm chậm việc nhận thêm file
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), daemonThreads("watch-worker"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Đăng ký cây thư mục rồi chặn và xử lý sự kiện cho tới khi close() được gọi
+     */
+    public void run() throws IOException {
+        registerTree(root);
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+            Path dir = directories.get(key);
+            if (dir != null) {
+                handleEvents(dir, key);
+            }
+            if (!key.reset()) {
+                directories.remove(key);
+            }
+        }
+    }
+
+    private void handleEvents(Path dir, WatchKey key) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Mất sự kiện: chỉ xem lại các file trong thư mục này
+                rescanDirectory(dir);
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    // Thư mục mới (có thể được move vào cùng file bên trong)
+                    try {
+                        registerTree(path);
+                        scheduleTree(path);
+                    } catch (IOException e) {
+                        listener.onError(path.toFile(), e);
+                    }
+                }
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                forget(path);
+            } else {
+                schedule(path);
+            }
+        }
+    }
+
+    // File (hoặc cả thư mục) bị xoá: không giữ trạng thái của nó mãi trong bộ nhớ
+    private void forget(Path path) {
+        processed.keySet().removeIf(p -> p.startsWith(path));
+        pending.entrySet().removeIf(entry -> {
+            if (!entry.getKey().startsWith(path)) return false;
+            entry.getValue().future.cancel(false);
+            return true;
+        });
+    }
+
+    private void registerTree(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (outputDir != null && !outputDir.equals(root) && dir.startsWith(outputDir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                directories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // Chỉ dùng cho thư mục vừa xuất hiện, không phải cả cây đang theo dõi
+    private void scheduleTree(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                schedule(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void rescanDirectory(Path dir) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                if (Files.isRegularFile(path)) schedule(path);
+            }
+        } catch (IOException e) {
+            listener.onError(dir.toFile(), e);
+        }
+    }
+
+    /**
+     * Đặt (hoặc đặt lại) hẹn giờ debounce cho file
+     */
+    private void schedule(Path path) {
+        SubtitleFormat format = SubtitleFormat.fromFileName(path.getFileName().toString());
+        if (format == null || format == targetFormat || closed) {
+            return;
+        }
+        pending.compute(path, (p, previous) -> {
+            if (previous != null) previous.future.cancel(false);
+            Pending next = new Pending(snapshot(p));
+            next.future = scheduler.schedule(() -> settle(p, next), quietMillis, TimeUnit.MILLISECONDS);
+            return next;
+        });
+    }
+
+    // Hết thời gian chờ: nếu file vẫn đang thay đổi thì chờ thêm, ngược lại đưa vào worker
+    private void settle(Path path, Pending entry) {
+        long[] current = snapshot(path);
+        if (current == null) {
+            pending.remove(path, entry);
+            return;
+        }
+        if (entry.size != current[0] || entry.modified != current[1]) {
+            schedule(path);
+            return;
+        }
+        if (!pending.remove(path, entry)) {
+            return;
+        }
+        Long done = processed.get(path);
+        if (done != null && done == current[1]) {
+            return; // Đã xử lý phiên bản này
+        }
+        try {
+            workers.execute(() -> process(path, current[1]));
+        } catch (RejectedExecutionException e) {
+            // Đã close
+        }
+    }
+
+    private void process(Path path, long modified) {
+        File input = path.toFile();
+        SubtitleFormat from = SubtitleFormat.fromFile(input);
+        try {
+            File output = outputFile(path, "");
+            Files.createDirectories(output.toPath().getParent());
+            Converter.convert(input, from, output, targetFormat);
+            processed.put(path, modified);
+            listener.onConverted(input, output);
+
+            if (translator != null) {
+                File translated = outputFile(path, "_" + targetLanguage);
+                int failedChunks = translator.translateSrtFile(output, translated, targetLanguage);
+                if (failedChunks > 0) {
+                    // Nhật ký được giữ lại: sửa (hoặc lưu lại) file gốc để dịch tiếp phần còn thiếu
+                    throw new IOException(failedChunks + " chunk(s) left untranslated, save the file again to resume");
+                }
+                listener.onTranslated(input, translated);
+            }
+        } catch (Exception e) {
+            listener.onError(input, e);
+        }
+    }
+
+    // Cùng tên với file gốc, đổi đuôi; giữ cấu trúc thư mục con khi có outputDir
+    private File outputFile(Path input, String suffix) {
+        String name = input.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        Path dir = input.getParent();
+        if (outputDir != null) {
+            dir = outputDir.resolve(root.relativize(dir));
+        }
+        return dir.resolve(base + suffix + targetFormat.getExtension()).toFile();
+    }
+
+    // {size, mtime} hoặc null nếu file không còn
+    private static long[] snapshot(Path path) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) return null;
+            return new long[] { attrs.size(), attrs.lastModifiedTime().toMillis() };
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        scheduler.shutdownNow();
+        workers.shutdown();
+        watchService.close();
+        try {
+            workers.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class Pending {
+        final long size;
+        final long modified;
+        volatile ScheduledFuture<?> future;
+
+        Pending(long[] snapshot) {
+            this.size = snapshot == null ? -1 : snapshot[0];
+            this.modified = snapshot == null ? -1 : snapshot[1];
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package logic;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Engine chuyển đổi ở mức byte cho file SRT/VTT rất lớn.
+ *
+ * File nguồn được map vào bộ nhớ bằng FileChannel.map theo từng cửa sổ, ranh giới cue và
+ * timestamp được quét trực tiếp trên byte UTF-8, còn text của cue được copy nguyên byte
+ * sang file đích qua một direct ByteBuffer mà không bao giờ giải mã thành String.
+ * Kết quả giống hệt đường CueReader/CueWriter.
+ */
+public final class MappedConverter {
+    // Dưới ngưỡng này chi phí map file không đáng, Converter dùng CueReader/CueWriter
+    static final long MAPPED_THRESHOLD = 8L * 1024 * 1024;
+
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+    private static final int OUTPUT_BUFFER_SIZE = 256 * 1024;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final SubtitleFormat target;
+    private final FileChannel outputChannel;
+    private final ByteBuffer output = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+    private final TimestampScanner scanner = new TimestampScanner();
+    private final TimestampFormatter formatter = new TimestampFormatter();
+    // Bản sao của cửa sổ hiện tại, chỉ dùng để đặt position/limit khi copy text
+    private ByteBuffer source;
+
+    // Vị trí (start, end) các dòng text của cue đang đọc, dùng lại giữa các cue
+    private int[] textLines = new int[16];
+    private int cueIndex = 0;
+
+    private MappedConverter(FileChannel outputChannel, SubtitleFormat target) {
+        this.outputChannel = outputChannel;
+        this.target = target;
+    }
+
+    /**
+     * Chỉ nguồn SRT/VTT có đủ thời gian bắt đầu/kết thúc trong từng block,
+     * LRC cần sắp xếp và tính thời gian kết thúc nên đi đường CueReader
+     */
+    public static boolean supports(SubtitleFormat from, SubtitleFormat to) {
+        return from != SubtitleFormat.LRC && to != null;
+    }
+
+    public static void convert(File inputFile, File outputFile, SubtitleFormat to) throws IOException {
+        try (FileChannel in = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(outputFile.toPath(), StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedConverter converter = new MappedConverter(out, to);
+            converter.run(in);
+        }
+    }
+
+    private void run(FileChannel in) throws IOException {
+        if (target == SubtitleFormat.VTT) {
+            output.put("WEBVTT".getBytes(StandardCharsets.US_ASCII));
+            output.put(LINE_SEPARATOR);
+            output.put(LINE_SEPARATOR);
+        }
+
+        long size = in.size();
+        long windowStart = 0;
+        while (windowStart < size) {
+            long windowLength = Math.min(WINDOW_SIZE, size - windowStart);
+            boolean lastWindow = windowStart + windowLength == size;
+            MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+
+            int consumed = processWindow(window, windowStart == 0, lastWindow);
+            if (consumed == 0 && !lastWindow) {
+                throw new IOException("Subtitle cue larger than " + WINDOW_SIZE + " bytes at offset " + windowStart);
+            }
+            windowStart += consumed;
+        }
+        flush();
+    }
+
+    /**
+     * Xử lý các cue hoàn chỉnh trong cửa sổ
+     * @return số byte đã xử lý xong; cue bị cắt ngang ở cuối cửa sổ sẽ được đọc lại ở cửa sổ sau
+     */
+    private int processWindow(MappedByteBuffer window, boolean firstWindow, boolean lastWindow) throws IOException {
+        int limit = window.limit();
+        int pos = 0;
+        source = window.duplicate();
+        // Bỏ BOM UTF-8 ở đầu file
+        if (firstWindow && limit >= 3
+                && window.get(0) == (byte) 0xEF && window.get(1) == (byte) 0xBB && window.get(2) == (byte) 0xBF) {
+            pos = 3;
+        }
+
+        while (pos < limit) {
+            int lineEnd = indexOfNewline(window, pos, limit);
+            if (lineEnd == limit && !lastWindow) {
+                return pos; // Dòng chưa trọn vẹn trong cửa sổ này
+            }
+            int next = lineEnd < limit ? lineEnd + 1 : limit;
+
+            if (!scanner.scanCueTiming(window, pos, trimCarriageReturn(window, pos, lineEnd))) {
+                pos = next; // Bỏ qua số thứ tự, header WEBVTT, NOTE...
+                continue;
+            }
+            long start = scanner.getStart();
+            long end = scanner.getEnd();
+
+            // Gom vị trí các dòng text cho tới dòng trống
+            int lineCount = 0;
+            int cursor = next;
+            boolean complete = false;
+            while (cursor < limit) {
+                int textEnd = indexOfNewline(window, cursor, limit);
+                if (textEnd == limit && !lastWindow) break;
+                int contentEnd = trimCarriageReturn(window, cursor, textEnd);
+                int after = textEnd < limit ? textEnd + 1 : limit;
+                if (TimestampScanner.isBlank(window, cursor, contentEnd)) {
+                    cursor = after;
+                    complete = true;
+                    break;
+                }
+                if (lineCount * 2 + 2 > textLines.length) {
+                    textLines = Arrays.copyOf(textLines, textLines.length * 2);
+                }
+                textLines[lineCount * 2] = cursor;
+                textLines[lineCount * 2 + 1] = contentEnd;
+                lineCount++;
+                cursor = after;
+            }
+            if (!complete && !(lastWindow && cursor >= limit)) {
+                return pos; // Cue bị cắt ngang bởi cửa sổ
+            }
+
+            writeCue(start, end, lineCount);
+            pos = cursor;
+        }
+        return limit;
+    }
+
+    private void writeCue(long start, long end, int lineCount) throws IOException {
+        ensureCapacity(128);
+        switch (target) {
+            case LRC:
+                formatter.putLrcTag(output, start);
+                for (int i = 0; i < lineCount; i++) {
+                    if (i > 0) putByte((byte) ' ');
+                    copy(textLines[i * 2], textLines[i * 2 + 1]);
+                }
+                putByte((byte) '\n');
+                break;
+            case SRT:
+                formatter.putNumber(output, ++cueIndex);
+                output.put(LINE_SEPARATOR);
+                formatter.putCueTiming(output, start, end, ',');
+                output.put(LINE_SEPARATOR);
+                writeTextBlock(lineCount);
+                break;
+            case VTT:
+            default:
+                formatter.putCueTiming(output, start, end, '.');
+                output.put(LINE_SEPARATOR);
+                writeTextBlock(lineCount);
+                break;
+        }
+    }
+
+    // Các dòng text nối bằng '\n' giống CueWriter, sau đó là dòng trống
+    private void writeTextBlock(int lineCount) throws IOException {
+        for (int i = 0; i < lineCount; i++) {
+            if (i > 0) putByte((byte) '\n');
+            copy(textLines[i * 2], textLines[i * 2 + 1]);
+        }
+        ensureCapacity(LINE_SEPARATOR.length * 2);
+        output.put(LINE_SEPARATOR);
+        output.put(LINE_SEPARATOR);
+    }
+
+    // Copy nguyên byte text từ file nguồn sang buffer đích
+    private void copy(int from, int to) throws IOException {
+        int length = to - from;
+        if (length <= 0) return;
+        ByteBuffer slice = source;
+        slice.limit(to).position(from);
+        if (length > output.capacity()) {
+            flush();
+            while (slice.hasRemaining()) {
+                outputChannel.write(slice);
+            }
+            return;
+        }
+        ensureCapacity(length);
+        output.put(slice);
+    }
+
+    private void putByte(byte b) throws IOException {
+        ensureCapacity(1);
+        output.put(b);
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (output.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        output.flip();
+        while (output.hasRemaining()) {
+            outputChannel.write(output);
+        }
+        output.clear();
+    }
+
+    private static int indexOfNewline(ByteBuffer buf, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buf.get(i) == '\n') return i;
+        }
+        return limit;
+    }
+
+    private static int trimCarriageReturn(ByteBuffer buf, int from, int end) {
+        return end > from && buf.get(end - 1) == '\r' ? end - 1 : end;
+    }
+}
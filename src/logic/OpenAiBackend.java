@@ -0,0 +1,112 @@
+package logic;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+
+/**
+ * Chat completions API của OpenAI, hoặc của server/gateway tương thích (đổi endpoint)
+ */
+public class OpenAiBackend implements TranslationBackend {
+    public static final String DEFAULT_ENDPOINT = "https://api.openai.com/v1/chat/completions";
+
+    private final URI endpoint;
+    private final String apiKey;
+
+    public OpenAiBackend(String apiKey) {
+        this(URI.create(DEFAULT_ENDPOINT), apiKey);
+    }
+
+    public OpenAiBackend(URI endpoint, String apiKey) {
+        this.endpoint = endpoint;
+        this.apiKey = apiKey;
+    }
+
+    @Override
+    public URI getEndpoint() {
+        return endpoint;
+    }
+
+    @Override
+    public HttpRequest.Builder newRequest(URI uri) {
+        return HttpRequest.newBuilder()
+                .uri(uri)
+                .header("Authorization", "Bearer " + apiKey);
+    }
+
+    @Override
+    public JsonObject chatRequest(String model, String prompt, int maxTokens, boolean stream) {
+        JsonObject requestBody = new JsonObject();
+        requestBody.addProperty("model", model);
+        requestBody.addProperty("max_tokens", maxTokens);
+        requestBody.addProperty("temperature", 0.3);
+
+        JsonArray messages = new JsonArray();
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "user");
+        message.addProperty("content", prompt);
+        messages.add(message);
+        requestBody.add("messages", messages);
+
+        if (stream) {
+            requestBody.addProperty("stream", true);
+            // Chunk cuối của stream mang usage để rate limiter trừ đúng số token
+            JsonObject streamOptions = new JsonObject();
+            streamOptions.addProperty("include_usage", true);
+            requestBody.add("stream_options", streamOptions);
+        }
+        return requestBody;
+    }
+
+    @Override
+    public Completion readCompletion(JsonObject response) throws IOException {
+        if (response.has("error")) {
+            throw new IOException("OpenAI API error: " + response.get("error"));
+        }
+        JsonArray choices = response.getAsJsonArray("choices");
+        if (choices == null || choices.size() == 0) {
+            throw new IOException("No translation received from OpenAI");
+        }
+        JsonObject choice = choices.get(0).getAsJsonObject();
+        JsonObject message = choice.getAsJsonObject("message");
+        JsonElement content = message == null ? null : message.get("content");
+        if (content == null || !content.isJsonPrimitive()) {
+            throw new IOException("No translation received from OpenAI");
+        }
+        return new Completion(content.getAsString(), finishReason(choice), usedTokens(response));
+    }
+
+    @Override
+    public Completion readStreamEvent(JsonObject event) throws IOException {
+        if (event.has("error")) {
+            throw new IOException(event.get("error").toString());
+        }
+        int used = usedTokens(event);
+        JsonArray choices = event.getAsJsonArray("choices");
+        if (choices == null || choices.size() == 0) {
+            return new Completion(null, null, used); // Event cuối chỉ có usage
+        }
+        JsonObject choice = choices.get(0).getAsJsonObject();
+        JsonObject delta = choice.getAsJsonObject("delta");
+        JsonElement text = delta == null ? null : delta.get("content");
+        String content = text != null && text.isJsonPrimitive() ? text.getAsString() : null;
+        return new Completion(content, finishReason(choice), used);
+    }
+
+    private static String finishReason(JsonObject choice) {
+        JsonElement reason = choice.get("finish_reason");
+        return reason != null && reason.isJsonPrimitive() ? reason.getAsString() : null;
+    }
+
+    // usage.total_tokens, 0 nếu không có
+    private static int usedTokens(JsonObject json) {
+        JsonElement usage = json.get("usage");
+        if (usage == null || !usage.isJsonObject()) return 0;
+        JsonElement total = usage.getAsJsonObject().get("total_tokens");
+        return total == null || !total.isJsonPrimitive() ? 0 : total.getAsInt();
+    }
+}
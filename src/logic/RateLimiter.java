@@ -0,0 +1,203 @@
+package logic;
+
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token bucket giới hạn cả số request/phút (RPM) lẫn số token/phút (TPM) khi gọi API.
+ *
+ * Dùng chung trong cả tiến trình: mọi Translator gọi cùng endpoint và model lấy cùng một
+ * limiter qua shared(), nên nhiều file/batch dịch song song vẫn chia nhau một quota.
+ *
+ * Limiter không giữ thread nào: reserve() trừ quota ngay (có thể âm) và trả về số ms cần chờ
+ * trước khi gửi, người gọi tự hẹn giờ. Giới hạn và quota còn lại được chỉnh theo header
+ * x-ratelimit-* của mỗi response; khi bị 429 thì dừng mọi request theo Retry-After và giảm
+ * tốc độ, sau đó tăng dần lại khi các request thành công.
+ */
+public final class RateLimiter {
+    // Mặc định khi server chưa cho biết giới hạn (mức thấp của OpenAI cho gpt-4o-mini)
+    static final double DEFAULT_RPM = 500;
+    static final double DEFAULT_TPM = 200_000;
+    // Khi không có header giới hạn: giảm còn 70% mỗi lần 429, tăng lại 2% mỗi lần thành công
+    private static final double DECREASE_FACTOR = 0.7;
+    private static final double INCREASE_FACTOR = 1.02;
+    private static final double MIN_RPM = 1;
+    private static final double MIN_TPM = 1000;
+
+    private static final Map<String, RateLimiter> SHARED = new ConcurrentHashMap<>();
+
+    private double rpm = DEFAULT_RPM;
+    private double tpm = DEFAULT_TPM;
+    // Giới hạn do server báo qua header, 0 nếu chưa biết
+    private double serverRpm = 0;
+    private double serverTpm = 0;
+    // Quota hiện có, âm nghĩa là đã hẹn trước cho các request đang chờ
+    private double requests;
+    private double tokens;
+    private long lastRefill;
+    // Không gửi request nào trước thời điểm này (sau 429)
+    private long pausedUntil = 0;
+
+    RateLimiter() {
+        this.requests = rpm;
+        this.tokens = tpm;
+        this.lastRefill = System.currentTimeMillis();
+    }
+
+    /**
+     * Limiter dùng chung cho một endpoint và model
+     */
+    public static RateLimiter shared(URI endpoint, String model) {
+        String key = endpoint.getScheme() + "://" + endpoint.getAuthority() + "|" + model;
+        return SHARED.computeIfAbsent(key, k -> new RateLimiter());
+    }
+
+    /**
+     * Giữ chỗ cho một request dùng khoảng estimatedTokens token
+     * @return số ms cần chờ trước khi gửi (0 nếu gửi được ngay)
+     */
+    public synchronized long reserve(int estimatedTokens) {
+        long now = System.currentTimeMillis();
+        refill(now);
+        // Một request lớn hơn cả quota/phút vẫn được gửi khi bucket đầy, nếu không sẽ chờ mãi
+        double cost = Math.min(estimatedTokens, tpm);
+        requests -= 1;
+        tokens -= cost;
+
+        long waitRequests = requests >= 0 ? 0 : (long) Math.ceil(-requests * 60_000 / rpm);
+        long waitTokens = tokens >= 0 ? 0 : (long) Math.ceil(-tokens * 60_000 / tpm);
+        long wait = Math.max(waitRequests, waitTokens);
+        return Math.max(wait, pausedUntil - now);
+    }
+
+    /**
+     * Trả lại phần token ước lượng dư (hoặc trừ thêm nếu thiếu) khi đã biết usage thực tế
+     */
+    public synchronized void adjust(int estimatedTokens, int actualTokens) {
+        if (actualTokens > 0) {
+            tokens += Math.min(estimatedTokens, tpm) - actualTokens;
+            tokens = Math.min(tokens, tpm);
+        }
+    }
+
+    /**
+     * Cập nhật theo header của một response thành công
+     */
+    public synchronized void onResponse(HttpHeaders headers) {
+        refill(System.currentTimeMillis());
+        double limitRequests = number(headers, "x-ratelimit-limit-requests");
+        double limitTokens = number(headers, "x-ratelimit-limit-tokens");
+        if (limitRequests > 0) {
+            serverRpm = limitRequests;
+            rpm = limitRequests;
+        }
+        if (limitTokens > 0) {
+            serverTpm = limitTokens;
+            tpm = limitTokens;
+        }
+
+        // Server là nguồn chính xác nhất: không cho quota cục bộ vượt quá phần server còn lại
+        double remainingRequests = number(headers, "x-ratelimit-remaining-requests");
+        double remainingTokens = number(headers, "x-ratelimit-remaining-tokens");
+        if (remainingRequests >= 0) requests = Math.min(requests, remainingRequests);
+        if (remainingTokens >= 0) tokens = Math.min(tokens, remainingTokens);
+
+        // Không có header giới hạn thì tự tăng dần sau khi đã giảm vì 429
+        if (limitRequests <= 0 && rpm < DEFAULT_RPM) rpm = Math.min(DEFAULT_RPM, rpm * INCREASE_FACTOR);
+        if (limitTokens <= 0 && tpm < DEFAULT_TPM) tpm = Math.min(DEFAULT_TPM, tpm * INCREASE_FACTOR);
+    }
+
+    /**
+     * Bị 429: dừng mọi request tới hết Retry-After (hoặc thời gian reset của quota)
+     * @return số ms cần chờ trước khi thử lại
+     */
+    public synchronized long onRateLimited(HttpHeaders headers) {
+        long now = System.currentTimeMillis();
+        refill(now);
+        long wait = retryAfterMillis(headers);
+        if (wait <= 0) {
+            wait = Math.max(duration(headers, "x-ratelimit-reset-requests"),
+                            duration(headers, "x-ratelimit-reset-tokens"));
+        }
+        if (wait <= 0) {
+            wait = 1000;
+        }
+        pausedUntil = Math.max(pausedUntil, now + wait);
+
+        // Không biết giới hạn thật thì giảm tốc độ; biết rồi thì chỉ cần chờ
+        if (serverRpm <= 0) rpm = Math.max(MIN_RPM, rpm * DECREASE_FACTOR);
+        if (serverTpm <= 0) tpm = Math.max(MIN_TPM, tpm * DECREASE_FACTOR);
+        requests = Math.min(requests, 0);
+        return pausedUntil - now;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed <= 0) return;
+        requests = Math.min(rpm, requests + rpm * elapsed / 60_000);
+        tokens = Math.min(tpm, tokens + tpm * elapsed / 60_000);
+        lastRefill = now;
+    }
+
+    // Retry-After tính bằng giây (hoặc retry-after-ms của OpenAI), 0 nếu không có
+    static long retryAfterMillis(HttpHeaders headers) {
+        double ms = number(headers, "retry-after-ms");
+        if (ms > 0) return (long) ms;
+        double seconds = number(headers, "retry-after");
+        return seconds > 0 ? (long) (seconds * 1000) : 0;
+    }
+
+    private static double number(HttpHeaders headers, String name) {
+        Optional<String> value = headers.firstValue(name);
+        if (!value.isPresent()) return -1;
+        try {
+            return Double.parseDouble(value.get().trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long duration(HttpHeaders headers, String name) {
+        return headers.firstValue(name).map(RateLimiter::parseDuration).orElse(0L);
+    }
+
+    /**
+     * Đọc khoảng thời gian dạng "1s", "6m0s", "1h2m3.5s", "250ms"
+     * @return milliseconds, 0 nếu không đọc được
+     */
+    static long parseDuration(String text) {
+        double total = 0;
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            int start = i;
+            while (i < length && (Character.isDigit(text.charAt(i)) || text.charAt(i) == '.')) i++;
+            if (start == i) return 0;
+            double value;
+            try {
+                value = Double.parseDouble(text.substring(start, i));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+            if (text.startsWith("ms", i)) {
+                total += value;
+                i += 2;
+            } else if (i < length && text.charAt(i) == 'h') {
+                total += value * 3_600_000;
+                i++;
+            } else if (i < length && text.charAt(i) == 'm') {
+                total += value * 60_000;
+                i++;
+            } else if (i < length && text.charAt(i) == 's') {
+                total += value * 1000;
+                i++;
+            } else {
+                return 0;
+            }
+        }
+        return (long) Math.ceil(total);
+    }
+}
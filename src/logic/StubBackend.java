@@ -0,0 +1,606 @@
+package logic;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Backend giả lập: một server tương thích API của OpenAI chạy ngay trong tiến trình
+ * (com.sun.net.httpserver), để đo và chỉnh số request song song, thử lại, rate limit mà không
+ * tốn tiền hay cần mạng.
+ *
+ * Hỗ trợ /v1/chat/completions (cả stream SSE) và Batch API (/v1/files, /v1/batches). Có thể
+ * giả lập độ trễ theo phân phối (cố định, đều, chuẩn, log-chuẩn), tỉ lệ lỗi 500, các đợt 429
+ * lặp lại theo chu kỳ và giới hạn số request mỗi phút kèm header x-ratelimit-* như API thật.
+ *
+ * "Bản dịch" là text gốc viết hoa: với mảng JSON [{"id":..,"text":..}] thì viết hoa từng text
+ * và giữ id, với SRT thì viết hoa cả phần sau dòng trống đầu tiên của prompt.
+ *
+ *   App translate --lang vi --backend stub:latency=300,dist=lognormal,errors=0.02,burst=20000/2000 ...
+ *   java -cp ... logic.StubBackend --port 18080 latency=200,batch-delay=5000
+ */
+public final class StubBackend extends OpenAiBackend implements Closeable {
+    private static final long MINUTE_MILLIS = 60_000;
+
+    /**
+     * Phân phối độ trễ quanh giá trị latency
+     */
+    public enum Distribution {
+        FIXED, UNIFORM, NORMAL, LOGNORMAL
+    }
+
+    /**
+     * Cấu hình của server giả lập
+     */
+    public static final class Options {
+        private int port = 0; // 0: cổng trống bất kỳ
+        private long latencyMillis = 0;
+        private Distribution distribution = Distribution.FIXED;
+        private double spread = 0.5;
+        private double errorRate = 0;
+        private long burstEveryMillis = 0;
+        private long burstLengthMillis = 0;
+        private int requestsPerMinute = 0;
+        private long batchDelayMillis = 1000;
+
+        public Options port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Độ trễ trung vị trước khi trả lời mỗi request chat completions
+         */
+        public Options latency(long millis) {
+            this.latencyMillis = millis;
+            return this;
+        }
+
+        /**
+         * Phân phối độ trễ; spread là độ lệch tương đối (0.5: khoảng ±50% với UNIFORM,
+         * độ lệch chuẩn 50% với NORMAL, sigma 0.5 với LOGNORMAL)
+         */
+        public Options distribution(Distribution distribution, double spread) {
+            this.distribution = distribution;
+            this.spread = spread;
+            return this;
+        }
+
+        /**
+         * Tỉ lệ request (0..1) bị trả lỗi 500
+         */
+        public Options errorRate(double rate) {
+            this.errorRate = rate;
+            return this;
+        }
+
+        /**
+         * Cứ mỗi everyMillis thì có một đợt lengthMillis mọi request đều bị 429, Retry-After là
+         * thời gian còn lại của đợt
+         */
+        public Options burst(long everyMillis, long lengthMillis) {
+            this.burstEveryMillis = everyMillis;
+            this.burstLengthMillis = lengthMillis;
+            return this;
+        }
+
+        /**
+         * Giới hạn số request chat completions trong 60 giây gần nhất, 0 là không giới hạn
+         */
+        public Options requestsPerMinute(int limit) {
+            this.requestsPerMinute = limit;
+            return this;
+        }
+
+        /**
+         * Thời gian từ lúc tạo batch tới khi batch xong
+         */
+        public Options batchDelay(long millis) {
+            this.batchDelayMillis = millis;
+            return this;
+        }
+
+        /**
+         * Đọc cấu hình dạng "latency=200,dist=lognormal,spread=0.5,errors=0.02,burst=30000/3000,
+         * rpm=120,batch-delay=1000,port=18080" (bỏ trống là mặc định)
+         * @throws IllegalArgumentException nếu có mục không hợp lệ
+         */
+        public static Options parse(String spec) {
+            Options options = new Options();
+            if (spec == null || spec.trim().isEmpty()) return options;
+            for (String item : spec.split(",")) {
+                int eq = item.indexOf('=');
+                if (eq < 0) throw new IllegalArgumentException("Expected key=value: " + item);
+                String key = item.substring(0, eq).trim();
+                String value = item.substring(eq + 1).trim();
+                try {
+                    switch (key) {
+                        case "port":
+                            options.port = Integer.parseInt(value);
+                            break;
+                        case "latency":
+                            options.latencyMillis = Long.parseLong(value);
+                            break;
+                        case "dist":
+                            options.distribution = Distribution.valueOf(value.toUpperCase(Locale.ROOT));
+                            break;
+                        case "spread":
+                            options.spread = Double.parseDouble(value);
+                            break;
+                        case "errors":
+                            options.errorRate = Double.parseDouble(value);
+                            break;
+                        case "burst": {
+                            int slash = value.indexOf('/');
+                            if (slash < 0) throw new IllegalArgumentException("Expected burst=every/length: " + value);
+                            options.burstEveryMillis = Long.parseLong(value.substring(0, slash));
+                            options.burstLengthMillis = Long.parseLong(value.substring(slash + 1));
+                            break;
+                        }
+                        case "rpm":
+                            options.requestsPerMinute = Integer.parseInt(value);
+                            break;
+                        case "batch-delay":
+                            options.batchDelayMillis = Long.parseLong(value);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unknown stub option: " + key);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid stub option " + key + ": " + value);
+                }
+            }
+            return options;
+        }
+    }
+
+    private final HttpServer server;
+    private final Options options;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "stub-backend");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stub-backend-batch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<String, JsonObject> batches = new ConcurrentHashMap<>();
+    // Thời điểm các request được nhận trong 60 giây gần nhất (khi có rpm)
+    private final ArrayDeque<Long> window = new ArrayDeque<>();
+    private final long startMillis = System.currentTimeMillis();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final AtomicInteger chatRequests = new AtomicInteger();
+    private final AtomicInteger injectedErrors = new AtomicInteger();
+    private final AtomicInteger rateLimited = new AtomicInteger();
+
+    private StubBackend(HttpServer server, Options options) {
+        super(URI.create("http://localhost:" + server.getAddress().getPort() + "/v1/chat/completions"), "stub");
+        this.server = server;
+        this.options = options;
+        server.createContext("/v1/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Khởi động server giả lập; close() để tắt
+     */
+    public static StubBackend start(Options options) throws IOException {
+        return new StubBackend(HttpServer.create(new InetSocketAddress("localhost", options.port), 0), options);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Số request chat completions đã nhận trực tiếp (không tính request trong batch)
+     */
+    public int getChatRequests() {
+        return chatRequests.get();
+    }
+
+    /**
+     * Tóm tắt số request, lỗi 500 và 429 đã trả
+     */
+    public String getStats() {
+        return "stub: " + chatRequests.get() + " requests, " + injectedErrors.get() + " errors (500), "
+                + rateLimited.get() + " rate limited (429)";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            if (method.equals("POST") && path.equals("/v1/chat/completions")) {
+                chatCompletions(exchange);
+            } else if (method.equals("POST") && path.equals("/v1/files")) {
+                uploadFile(exchange);
+            } else if (method.equals("GET") && path.startsWith("/v1/files/") && path.endsWith("/content")) {
+                byte[] content = files.get(path.substring("/v1/files/".length(), path.length() - "/content".length()));
+                if (content == null) {
+                    error(exchange, 404, "No such file");
+                } else {
+                    send(exchange, 200, "application/jsonl", content);
+                }
+            } else if (method.equals("POST") && path.equals("/v1/batches")) {
+                createBatch(exchange);
+            } else if (method.equals("GET") && path.startsWith("/v1/batches/")) {
+                JsonObject batch = batches.get(path.substring("/v1/batches/".length()));
+                if (batch == null) {
+                    error(exchange, 404, "No such batch");
+                } else {
+                    synchronized (batch) {
+                        json(exchange, 200, batch);
+                    }
+                }
+            } else {
+                error(exchange, 404, "Unknown endpoint " + method + " " + path);
+            }
+        } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+            error(exchange, 400, "Invalid request: " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void chatCompletions(HttpExchange exchange) throws IOException {
+        chatRequests.incrementAndGet();
+        JsonObject request = JsonParser.parseString(body(exchange)).getAsJsonObject();
+        if (rejected(exchange)) return;
+        sleep(sampleLatency());
+        if (options.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < options.errorRate) {
+            injectedErrors.incrementAndGet();
+            error(exchange, 500, "The server had an error while processing your request (stub)");
+            return;
+        }
+        JsonObject response = complete(request);
+        JsonElement stream = request.get("stream");
+        if (stream != null && stream.getAsBoolean()) {
+            stream(exchange, response);
+        } else {
+            json(exchange, 200, response);
+        }
+    }
+
+    // Trả 429 nếu đang trong đợt burst hoặc vượt giới hạn rpm, kèm header như API thật
+    private boolean rejected(HttpExchange exchange) throws IOException {
+        long now = System.currentTimeMillis();
+        long retryAfter = 0;
+        if (options.burstEveryMillis > 0) {
+            long phase = (now - startMillis) % options.burstEveryMillis;
+            // Đợt đầu tiên bắt đầu sau một chu kỳ, không phải ngay lúc khởi động
+            if (now - startMillis >= options.burstEveryMillis && phase < options.burstLengthMillis) {
+                retryAfter = options.burstLengthMillis - phase;
+            }
+        }
+        if (retryAfter == 0 && options.requestsPerMinute > 0) {
+            synchronized (window) {
+                while (!window.isEmpty() && window.peekFirst() <= now - MINUTE_MILLIS) window.pollFirst();
+                if (window.size() >= options.requestsPerMinute) {
+                    retryAfter = window.peekFirst() + MINUTE_MILLIS - now;
+                } else {
+                    window.addLast(now);
+                    exchange.getResponseHeaders().add("x-ratelimit-limit-requests",
+                            Integer.toString(options.requestsPerMinute));
+                    exchange.getResponseHeaders().add("x-ratelimit-remaining-requests",
+                            Integer.toString(options.requestsPerMinute - window.size()));
+                    exchange.getResponseHeaders().add("x-ratelimit-reset-requests",
+                            (window.peekFirst() + MINUTE_MILLIS - now) + "ms");
+                }
+            }
+        }
+        if (retryAfter == 0) return false;
+        rateLimited.incrementAndGet();
+        exchange.getResponseHeaders().add("retry-after-ms", Long.toString(retryAfter));
+        exchange.getResponseHeaders().add("retry-after", Long.toString((retryAfter + 999) / 1000));
+        error(exchange, 429, "Rate limit reached (stub), retry after " + retryAfter + " ms");
+        return true;
+    }
+
+    private long sampleLatency() {
+        long median = options.latencyMillis;
+        if (median <= 0) return 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double spread = options.spread;
+        switch (options.distribution) {
+            case UNIFORM:
+                return Math.max(0, Math.round(median * (1 + spread * (2 * random.nextDouble() - 1))));
+            case NORMAL:
+                return Math.max(0, Math.round(median * (1 + spread * random.nextGaussian())));
+            case LOGNORMAL:
+                // Đuôi dài: đa số request nhanh, thỉnh thoảng có request rất chậm
+                return Math.round(median * Math.exp(spread * random.nextGaussian()));
+            default:
+                return median;
+        }
+    }
+
+    // Trả lời một request chat completions
+    private JsonObject complete(JsonObject request) {
+        JsonArray messages = request.getAsJsonArray("messages");
+        String prompt = messages.get(messages.size() - 1).getAsJsonObject().get("content").getAsString();
+        int start = prompt.indexOf("\n\n");
+        String payload = start < 0 ? prompt : prompt.substring(start + 2);
+
+        String content;
+        if (payload.startsWith("[")) {
+            JsonArray items = JsonParser.parseString(payload).getAsJsonArray();
+            JsonArray translated = new JsonArray();
+            for (JsonElement element : items) {
+                JsonObject item = element.getAsJsonObject();
+                JsonObject out = new JsonObject();
+                out.add("id", item.get("id"));
+                out.addProperty("text", item.get("text").getAsString().toUpperCase(Locale.ROOT));
+                translated.add(out);
+            }
+            content = translated.toString();
+        } else {
+            content = payload.toUpperCase(Locale.ROOT);
+        }
+
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "assistant");
+        message.addProperty("content", content);
+        JsonObject choice = new JsonObject();
+        choice.addProperty("index", 0);
+        choice.add("message", message);
+        choice.addProperty("finish_reason", "stop");
+        JsonArray choices = new JsonArray();
+        choices.add(choice);
+
+        // Ước lượng thô 4 ký tự một token
+        JsonObject usage = new JsonObject();
+        usage.addProperty("prompt_tokens", prompt.length() / 4);
+        usage.addProperty("completion_tokens", content.length() / 4);
+        usage.addProperty("total_tokens", (prompt.length() + content.length()) / 4);
+
+        JsonObject response = new JsonObject();
+        response.addProperty("id", "chatcmpl-" + ids.incrementAndGet());
+        response.addProperty("object", "chat.completion");
+        response.add("model", request.get("model"));
+        response.add("choices", choices);
+        response.add("usage", usage);
+        return response;
+    }
+
+    // Gửi response dưới dạng server-sent events, mỗi event vài chục ký tự
+    private void stream(HttpExchange exchange, JsonObject response) throws IOException {
+        JsonObject choice = response.getAsJsonArray("choices").get(0).getAsJsonObject();
+        String content = choice.getAsJsonObject("message").get("content").getAsString();
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        for (int i = 0; i < content.length(); i += 32) {
+            JsonObject delta = new JsonObject();
+            delta.addProperty("content", content.substring(i, Math.min(content.length(), i + 32)));
+            event(out, delta, JsonNull.INSTANCE, null);
+        }
+        event(out, new JsonObject(), choice.get("finish_reason"), null);
+        event(out, null, null, response.getAsJsonObject("usage"));
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void event(OutputStream out, JsonObject delta, JsonElement finishReason, JsonObject usage)
+            throws IOException {
+        JsonArray choices = new JsonArray();
+        if (delta != null) {
+            JsonObject choice = new JsonObject();
+            choice.addProperty("index", 0);
+            choice.add("delta", delta);
+            choice.add("finish_reason", finishReason);
+            choices.add(choice);
+        }
+        JsonObject chunk = new JsonObject();
+        chunk.addProperty("object", "chat.completion.chunk");
+        chunk.add("choices", choices);
+        if (usage != null) chunk.add("usage", usage);
+        out.write(("data: " + chunk + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    // multipart/form-data với một phần "file"
+    private void uploadFile(HttpExchange exchange) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        int at = contentType == null ? -1 : contentType.indexOf("boundary=");
+        if (at < 0) {
+            error(exchange, 400, "Expected multipart/form-data");
+            return;
+        }
+        String boundary = "--" + contentType.substring(at + "boundary=".length()).replace("\"", "");
+        // ISO-8859-1 giữ nguyên từng byte nên vị trí trong chuỗi cũng là vị trí byte
+        String raw = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.ISO_8859_1);
+        int part = raw.indexOf("name=\"file\"");
+        int start = part < 0 ? -1 : raw.indexOf("\r\n\r\n", part);
+        int end = start < 0 ? -1 : raw.indexOf("\r\n" + boundary, start);
+        if (end < 0) {
+            error(exchange, 400, "Missing file part");
+            return;
+        }
+        byte[] content = raw.substring(start + 4, end).getBytes(StandardCharsets.ISO_8859_1);
+        String id = "file-" + ids.incrementAndGet();
+        files.put(id, content);
+
+        JsonObject file = new JsonObject();
+        file.addProperty("id", id);
+        file.addProperty("object", "file");
+        file.addProperty("bytes", content.length);
+        file.addProperty("purpose", "batch");
+        json(exchange, 200, file);
+    }
+
+    private void createBatch(HttpExchange exchange) throws IOException {
+        JsonObject request = JsonParser.parseString(body(exchange)).getAsJsonObject();
+        String inputFileId = request.get("input_file_id").getAsString();
+        byte[] input = files.get(inputFileId);
+        if (input == null) {
+            error(exchange, 400, "No such file: " + inputFileId);
+            return;
+        }
+        String[] lines = new String(input, StandardCharsets.UTF_8).split("\n");
+
+        JsonObject counts = new JsonObject();
+        counts.addProperty("total", lines.length);
+        counts.addProperty("completed", 0);
+        counts.addProperty("failed", 0);
+        JsonObject batch = new JsonObject();
+        String id = "batch_" + ids.incrementAndGet();
+        batch.addProperty("id", id);
+        batch.addProperty("object", "batch");
+        batch.add("endpoint", request.get("endpoint"));
+        batch.addProperty("input_file_id", inputFileId);
+        batch.add("completion_window", request.get("completion_window"));
+        batch.addProperty("status", "validating");
+        batch.add("output_file_id", JsonNull.INSTANCE);
+        batch.add("error_file_id", JsonNull.INSTANCE);
+        batch.add("request_counts", counts);
+        batches.put(id, batch);
+
+        long delay = options.batchDelayMillis;
+        scheduler.schedule(() -> {
+            synchronized (batch) {
+                batch.addProperty("status", "in_progress");
+            }
+        }, delay / 2, TimeUnit.MILLISECONDS);
+        scheduler.schedule(() -> runBatch(batch, lines), delay, TimeUnit.MILLISECONDS);
+        synchronized (batch) {
+            json(exchange, 200, batch);
+        }
+    }
+
+    // Trả lời mọi request của batch, ghi thành file kết quả JSONL
+    private void runBatch(JsonObject batch, String[] lines) {
+        StringBuilder output = new StringBuilder();
+        int completed = 0;
+        int failed = 0;
+        for (String line : lines) {
+            if (line.trim().isEmpty()) continue;
+            JsonObject result = new JsonObject();
+            result.addProperty("id", "batch_req_" + ids.incrementAndGet());
+            try {
+                JsonObject request = JsonParser.parseString(line).getAsJsonObject();
+                result.add("custom_id", request.get("custom_id"));
+                JsonObject response = new JsonObject();
+                response.addProperty("status_code", 200);
+                response.addProperty("request_id", "req_" + ids.incrementAndGet());
+                response.add("body", complete(request.getAsJsonObject("body")));
+                result.add("response", response);
+                result.add("error", JsonNull.INSTANCE);
+                completed++;
+            } catch (RuntimeException e) {
+                JsonObject error = new JsonObject();
+                error.addProperty("code", "invalid_request");
+                error.addProperty("message", String.valueOf(e.getMessage()));
+                result.add("response", JsonNull.INSTANCE);
+                result.add("error", error);
+                failed++;
+            }
+            output.append(result).append('\n');
+        }
+        String outputId = "file-" + ids.incrementAndGet();
+        files.put(outputId, output.toString().getBytes(StandardCharsets.UTF_8));
+        synchronized (batch) {
+            JsonObject counts = batch.getAsJsonObject("request_counts");
+            counts.addProperty("completed", completed);
+            counts.addProperty("failed", failed);
+            batch.addProperty("output_file_id", outputId);
+            batch.addProperty("status", "completed");
+        }
+    }
+
+    private static String body(HttpExchange exchange) throws IOException {
+        return new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static void json(HttpExchange exchange, int status, JsonObject body) throws IOException {
+        send(exchange, status, "application/json", body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void error(HttpExchange exchange, int status, String message) throws IOException {
+        JsonObject error = new JsonObject();
+        error.addProperty("message", message);
+        error.addProperty("type", status == 429 ? "requests" : "server_error");
+        JsonObject body = new JsonObject();
+        body.add("error", error);
+        json(exchange, status, body);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Chạy server giả lập riêng (để app khác trỏ --endpoint vào), Ctrl+C để dừng
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String spec = null;
+        int port = 18080;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (!args[i].startsWith("--")) {
+                spec = args[i];
+            } else {
+                System.err.println("Usage: StubBackend [--port 18080] [latency=ms,dist=...,errors=0.01,burst=every/length,...]");
+                System.exit(2);
+            }
+        }
+        Options options;
+        try {
+            options = Options.parse(spec);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        if (spec == null || !spec.contains("port=")) options.port(port);
+        StubBackend stub = start(options);
+        System.out.println("Stub OpenAI API on " + stub.getEndpoint());
+        // Thread của server là daemon nên giữ main sống
+        Thread.currentThread().join();
+    }
+}
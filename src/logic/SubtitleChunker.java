@@ -0,0 +1,351 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Chia các block SRT thành chunk để gửi API theo ngân sách token thay vì số block cố định.
+ *
+ * Số token được ước lượng offline (không cần tokenizer thật): chữ ASCII khoảng 5 ký tự/token,
+ * chữ có dấu, CJK và emoji tốn nhiều token hơn, số đếm theo nhóm 3 chữ số. Ước lượng hơi dư
+ * để chunk không bị cắt ở max_tokens.
+ *
+ * Mỗi chunk gom block liên tiếp cho tới khi số token đầu ra dự kiến chạm ngân sách của model,
+ * và mang theo max_tokens riêng (dự kiến + phần dư) thay vì một giá trị chung cho mọi chunk.
+ *
+ * split() dùng cho block SRT nguyên vẹn, splitTexts() cho chế độ chỉ gửi text của cue
+ * dưới dạng mảng JSON đánh số.
+ */
+public final class SubtitleChunker {
+    /**
+     * Giới hạn của một model: cửa sổ context và số token đầu ra tối đa
+     */
+    private static final class ModelLimits {
+        final String prefix;
+        final int contextTokens;
+        final int maxOutputTokens;
+
+        ModelLimits(String prefix, int contextTokens, int maxOutputTokens) {
+            this.prefix = prefix;
+            this.contextTokens = contextTokens;
+            this.maxOutputTokens = maxOutputTokens;
+        }
+    }
+
+    // So khớp theo tiền tố, tên cụ thể hơn đứng trước
+    private static final ModelLimits[] MODELS = {
+        new ModelLimits("gpt-4o-mini", 128_000, 16_384),
+        new ModelLimits("gpt-4o", 128_000, 16_384),
+        new ModelLimits("gpt-4.1", 1_047_576, 32_768),
+        new ModelLimits("gpt-4-turbo", 128_000, 4096),
+        new ModelLimits("gpt-4-1106", 128_000, 4096),
+        new ModelLimits("gpt-4-0125", 128_000, 4096),
+        new ModelLimits("gpt-4-vision", 128_000, 4096),
+        new ModelLimits("gpt-4-32k", 32_768, 4096),
+        new ModelLimits("gpt-4", 8192, 4096),
+        new ModelLimits("gpt-3.5-turbo", 16_385, 4096),
+    };
+    // Model lạ: giả định mức thấp
+    private static final ModelLimits UNKNOWN_MODEL = new ModelLimits("", 8192, 4096);
+
+    // Token đầu ra dự kiến tối đa mỗi chunk: chunk quá dài thì một request chạy lâu, dễ timeout
+    // và khi lỗi phải dịch lại nhiều
+    private static final int MAX_CHUNK_OUTPUT_TOKENS = 3000;
+    // Chỉ dùng 75% số token đầu ra của model làm ngân sách, phần còn lại để dư cho max_tokens
+    private static final double OUTPUT_BUDGET_RATIO = 0.75;
+    // max_tokens = dự kiến * 1.5 + 256
+    private static final double MAX_TOKENS_MARGIN = 1.5;
+    private static final int MAX_TOKENS_SLACK = 256;
+    // Phần chỉ dẫn trong prompt và overhead của message
+    public static final int PROMPT_OVERHEAD_TOKENS = 80;
+    // {"id":12,"text":"..."}, trong mảng JSON
+    private static final int JSON_ITEM_TOKENS = 8;
+
+    private final ModelLimits limits;
+    private final int outputBudget;
+
+    private SubtitleChunker(ModelLimits limits) {
+        this(limits, (int) Math.min(MAX_CHUNK_OUTPUT_TOKENS, limits.maxOutputTokens * OUTPUT_BUDGET_RATIO));
+    }
+
+    private SubtitleChunker(ModelLimits limits, int outputBudget) {
+        this.limits = limits;
+        this.outputBudget = outputBudget;
+    }
+
+    /**
+     * Chunker theo giới hạn của model (tên model lạ dùng giới hạn thấp nhất)
+     */
+    public static SubtitleChunker forModel(String modelName) {
+        String name = modelName == null ? "" : modelName.toLowerCase();
+        for (ModelLimits model : MODELS) {
+            if (name.startsWith(model.prefix)) {
+                return new SubtitleChunker(model);
+            }
+        }
+        return new SubtitleChunker(UNKNOWN_MODEL);
+    }
+
+    /**
+     * Số token đầu ra dự kiến tối đa của một chunk
+     */
+    public int getOutputBudget() {
+        return outputBudget;
+    }
+
+    /**
+     * Chunker cùng model nhưng chunk nhỏ hơn (không quá tokens đầu ra), để response về sớm hơn
+     */
+    public SubtitleChunker withOutputBudget(int tokens) {
+        return new SubtitleChunker(limits, Math.max(1, Math.min(outputBudget, tokens)));
+    }
+
+    public int getMaxOutputTokens() {
+        return limits.maxOutputTokens;
+    }
+
+    /**
+     * Một nhóm block liên tiếp gửi trong một request
+     */
+    public static final class Chunk {
+        private final List<String> blocks;
+        private final int[] inputTokens;
+        private final int[] outputTokens;
+        private final int totalInputTokens;
+        private final int expectedOutputTokens;
+        private final int maxTokens;
+
+        private Chunk(List<String> blocks, int[] inputTokens, int[] outputTokens, int maxOutputTokens) {
+            this.blocks = blocks;
+            this.inputTokens = inputTokens;
+            this.outputTokens = outputTokens;
+            int input = 0;
+            int expected = 0;
+            for (int i = 0; i < blocks.size(); i++) {
+                input += inputTokens[i];
+                expected += outputTokens[i];
+            }
+            this.totalInputTokens = input;
+            this.expectedOutputTokens = expected;
+            this.maxTokens = (int) Math.min(maxOutputTokens, expected * MAX_TOKENS_MARGIN + MAX_TOKENS_SLACK);
+        }
+
+        /**
+         * Các block (hoặc text của cue) theo thứ tự
+         */
+        public List<String> getBlocks() {
+            return Collections.unmodifiableList(blocks);
+        }
+
+        /**
+         * Các block nối bằng dòng trống, đúng định dạng SRT
+         */
+        public String getText() {
+            return String.join("\n\n", blocks);
+        }
+
+        public int getBlockCount() {
+            return blocks.size();
+        }
+
+        public int getInputTokens() {
+            return totalInputTokens;
+        }
+
+        public int getExpectedOutputTokens() {
+            return expectedOutputTokens;
+        }
+
+        /**
+         * Giá trị max_tokens nên gửi cho chunk này
+         */
+        public int getMaxTokens() {
+            return maxTokens;
+        }
+    }
+
+    /**
+     * Gom các block SRT theo thứ tự vào chunk, mỗi chunk đầy tới ngân sách token đầu ra.
+     * Block trống bị bỏ qua; một block vượt ngân sách thì đứng riêng một chunk.
+     * @param targetLanguage ngôn ngữ đích ("en" hoặc "vi"), ảnh hưởng số token đầu ra dự kiến
+     */
+    public List<Chunk> split(String[] blocks, String targetLanguage) {
+        double expansion = expansionFactor(targetLanguage);
+        List<String> items = new ArrayList<>(blocks.length);
+        int[] input = new int[blocks.length];
+        int[] output = new int[blocks.length];
+        for (String raw : blocks) {
+            String block = raw.trim();
+            if (block.isEmpty()) continue;
+            input[items.size()] = estimateTokens(block);
+            output[items.size()] = estimateOutputTokens(block, expansion);
+            items.add(block);
+        }
+        return pack(items, input, output);
+    }
+
+    /**
+     * Như split() nhưng cho text của cue gửi dưới dạng mảng JSON: không có số thứ tự, timestamp,
+     * mỗi phần tử chỉ tốn thêm id và dấu ngoặc. Không bỏ phần tử nào để vị trí khớp với đầu vào.
+     */
+    public List<Chunk> splitTexts(List<String> texts, String targetLanguage) {
+        double expansion = expansionFactor(targetLanguage);
+        int[] input = new int[texts.size()];
+        int[] output = new int[texts.size()];
+        for (int i = 0; i < texts.size(); i++) {
+            int tokens = estimateTokens(texts.get(i));
+            input[i] = tokens + JSON_ITEM_TOKENS;
+            output[i] = (int) Math.ceil(tokens * expansion) + JSON_ITEM_TOKENS;
+        }
+        return pack(new ArrayList<>(texts), input, output);
+    }
+
+    private List<Chunk> pack(List<String> items, int[] input, int[] output) {
+        // Giới hạn đầu vào để prompt + max_tokens không vượt context
+        int inputBudget = limits.contextTokens - limits.maxOutputTokens - PROMPT_OVERHEAD_TOKENS;
+        List<Chunk> chunks = new ArrayList<>();
+        int start = 0;
+        int outputTokens = 0;
+        int inputTokens = 0;
+        for (int i = 0; i < items.size(); i++) {
+            if (i > start && (outputTokens + output[i] > outputBudget || inputTokens + input[i] > inputBudget)) {
+                chunks.add(subChunk(items, input, output, start, i));
+                start = i;
+                outputTokens = 0;
+                inputTokens = 0;
+            }
+            outputTokens += output[i];
+            inputTokens += input[i];
+        }
+        if (start < items.size()) {
+            chunks.add(subChunk(items, input, output, start, items.size()));
+        }
+        return chunks;
+    }
+
+    /**
+     * Chia đôi một chunk (dùng khi response bị cắt ở max_tokens hoặc không khớp số block)
+     * @return hai nửa, hoặc chính chunk đó nếu chỉ có một block
+     */
+    public List<Chunk> halve(Chunk chunk) {
+        int count = chunk.blocks.size();
+        if (count < 2) {
+            return Collections.singletonList(chunk);
+        }
+        int middle = count / 2;
+        List<Chunk> halves = new ArrayList<>(2);
+        halves.add(subChunk(chunk.blocks, chunk.inputTokens, chunk.outputTokens, 0, middle));
+        halves.add(subChunk(chunk.blocks, chunk.inputTokens, chunk.outputTokens, middle, count));
+        return halves;
+    }
+
+    private Chunk subChunk(List<String> items, int[] input, int[] output, int from, int to) {
+        return new Chunk(new ArrayList<>(items.subList(from, to)), Arrays.copyOfRange(input, from, to),
+                Arrays.copyOfRange(output, from, to), limits.maxOutputTokens);
+    }
+
+    // Tiếng Việt tốn nhiều token hơn tiếng Anh cho cùng nội dung
+    private static double expansionFactor(String targetLanguage) {
+        return "vi".equals(targetLanguage) ? 1.8 : 1.3;
+    }
+
+    /**
+     * Token đầu ra dự kiến của một block: số thứ tự và timestamp giữ nguyên, phần text được dịch
+     */
+    static int estimateOutputTokens(String block, double expansion) {
+        int header = 0;
+        int textStart = 0;
+        // Tối đa 2 dòng đầu là số thứ tự và timestamp
+        for (int line = 0; line < 2; line++) {
+            int end = block.indexOf('\n', textStart);
+            if (end < 0) break;
+            String head = block.substring(textStart, end);
+            if (!isHeaderLine(head)) break;
+            header += estimateTokens(head) + 1;
+            textStart = end + 1;
+        }
+        int text = estimateTokens(block.substring(textStart));
+        return header + (int) Math.ceil(text * expansion);
+    }
+
+    // Dòng chỉ gồm số, dấu câu và khoảng trắng (số thứ tự, "00:00:01,000 --> 00:00:02,000")
+    private static boolean isHeaderLine(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (Character.isLetter(c)) return false;
+        }
+        return !line.trim().isEmpty();
+    }
+
+    /**
+     * Ước lượng số token BPE (họ cl100k/o200k) của một đoạn text, không cần tokenizer thật
+     */
+    public static int estimateTokens(CharSequence text) {
+        double tokens = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            int start = i;
+            if (c == ' ' || c == '\t') {
+                // Khoảng trắng đơn dính vào từ phía sau
+                i++;
+                while (i < length && (text.charAt(i) == ' ' || text.charAt(i) == '\t')) i++;
+                if (i - start > 1) tokens += 1;
+            } else if (c == '\n' || c == '\r') {
+                while (i < length && (text.charAt(i) == '\n' || text.charAt(i) == '\r')) i++;
+                tokens += 1;
+            } else if (c >= '0' && c <= '9') {
+                while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9') i++;
+                tokens += (i - start + 2) / 3;
+            } else if (isWordChar(c)) {
+                // Một từ: chữ ASCII ~5 ký tự/token, mỗi ký tự có dấu/ngoài ASCII tốn thêm một token
+                int ascii = 0;
+                int accented = 0;
+                while (i < length && isWordChar(text.charAt(i))) {
+                    if (text.charAt(i) < 0x80) ascii++;
+                    else accented++;
+                    i++;
+                }
+                tokens += Math.max(1, (ascii + 4) / 5) + accented;
+            } else if (c < 0x80) {
+                // Dấu câu ASCII, các ký tự liền nhau thường gộp 2 ký tự/token ("-->", "...")
+                while (i < length && isAsciiPunctuation(text.charAt(i))) i++;
+                if (i == start) i++;
+                tokens += (i - start + 1) / 2;
+            } else if (Character.isHighSurrogate(c)) {
+                // Emoji và ký tự ngoài BMP: vài byte UTF-8, thường 2 token
+                i += i + 1 < length ? 2 : 1;
+                tokens += 2;
+            } else if (c == '\u200D' || (c >= '\uFE00' && c <= '\uFE0F')) {
+                // ZWJ, variation selector trong emoji ghép
+                i++;
+                tokens += 1;
+            } else if (c >= '\u2E80') {
+                // CJK, kana, hangul: khoảng 1-2 token mỗi ký tự
+                i++;
+                tokens += 1.5;
+            } else {
+                i++;
+                tokens += 1;
+            }
+        }
+        return (int) Math.ceil(tokens);
+    }
+
+    // Chữ Latin (kể cả có dấu như tiếng Việt) và dấu kết hợp
+    private static boolean isWordChar(char c) {
+        if (c < 0x80) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '\'';
+        }
+        return (c >= '\u00C0' && c <= '\u024F' && c != '\u00D7' && c != '\u00F7')
+                || (c >= '\u0300' && c <= '\u036F')
+                || (c >= '\u1E00' && c <= '\u1EFF');
+    }
+
+    private static boolean isAsciiPunctuation(char c) {
+        return c < 0x80 && c > ' ' && !(c >= '0' && c <= '9') && !isWordChar(c);
+    }
+}
@@ -0,0 +1,54 @@
+package logic;
+
+/**
+ * Một cue phụ đề dùng chung cho cả SRT, VTT và LRC.
+ * Thời gian tính theo milliseconds, text có thể gồm nhiều dòng nối bằng '\n'.
+ */
+public class SubtitleCue implements Comparable<SubtitleCue> {
+    // LRC không có thời gian kết thúc, sẽ được tính từ cue tiếp theo khi chuyển đổi
+    public static final long UNKNOWN_END = -1;
+
+    private final long startTime;
+    private final long endTime;
+    private final String text;
+
+    public SubtitleCue(long startTime, long endTime, String text) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.text = text;
+    }
+
+    public SubtitleCue(long startTime, String text) {
+        this(startTime, UNKNOWN_END, text);
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public boolean hasEndTime() {
+        return endTime != UNKNOWN_END;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public SubtitleCue withEndTime(long endTime) {
+        return new SubtitleCue(startTime, endTime, text);
+    }
+
+    @Override
+    public int compareTo(SubtitleCue other) {
+        return Long.compare(this.startTime, other.startTime);
+    }
+
+    @Override
+    public String toString() {
+        return "SubtitleCue[" + startTime + " -> " + endTime + ": " + text + "]";
+    }
+}
@@ -0,0 +1,37 @@
+package logic;
+
+import java.io.File;
+
+/**
+ * Các định dạng phụ đề được hỗ trợ
+ */
+public enum SubtitleFormat {
+    SRT(".srt"),
+    VTT(".vtt"),
+    LRC(".lrc");
+
+    private final String extension;
+
+    SubtitleFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    // Xác định định dạng theo đuôi file, trả về null nếu không hỗ trợ
+    public static SubtitleFormat fromFileName(String fileName) {
+        String lower = fileName.toLowerCase();
+        for (SubtitleFormat format : values()) {
+            if (lower.endsWith(format.extension)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    public static SubtitleFormat fromFile(File file) {
+        return fromFileName(file.getName());
+    }
+}
@@ -0,0 +1,115 @@
+package logic;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
+/**
+ * Ghi timestamp bằng cách đặt từng chữ số vào một mảng char[] dùng lại,
+ * thay cho String.format (không tạo Formatter, mảng varargs hay boxing cho mỗi cue).
+ * Các hàm put(ByteBuffer, ...) ghi thẳng byte ASCII cho MappedConverter.
+ *
+ * Mỗi CueWriter giữ một instance riêng, không dùng chung giữa nhiều thread.
+ */
+public final class TimestampFormatter {
+    // Đủ cho "HHHHHHHHHH:MM:SS,mmm --> HHHHHHHHHH:MM:SS,mmm"
+    private final char[] buffer = new char[64];
+
+    /**
+     * Ghi "00:00:00,000 --> 00:00:00,000" (separator là ',' cho SRT, '.' cho VTT)
+     */
+    public void writeCueTiming(Writer out, long start, long end, char separator) throws IOException {
+        int pos = putClockTime(buffer, 0, start, separator);
+        buffer[pos++] = ' ';
+        buffer[pos++] = '-';
+        buffer[pos++] = '-';
+        buffer[pos++] = '>';
+        buffer[pos++] = ' ';
+        pos = putClockTime(buffer, pos, end, separator);
+        out.write(buffer, 0, pos);
+    }
+
+    /**
+     * Ghi tag LRC "[mm:ss.xx]"
+     */
+    public void writeLrcTag(Writer out, long time) throws IOException {
+        out.write(buffer, 0, putLrcTag(buffer, 0, time));
+    }
+
+    /**
+     * Ghi số nguyên không âm (số thứ tự SRT)
+     */
+    public void writeNumber(Writer out, long value) throws IOException {
+        out.write(buffer, 0, putNumber(buffer, 0, value, 1));
+    }
+
+    public void putCueTiming(ByteBuffer out, long start, long end, char separator) {
+        int pos = putClockTime(buffer, 0, start, separator);
+        buffer[pos++] = ' ';
+        buffer[pos++] = '-';
+        buffer[pos++] = '-';
+        buffer[pos++] = '>';
+        buffer[pos++] = ' ';
+        pos = putClockTime(buffer, pos, end, separator);
+        putAscii(out, pos);
+    }
+
+    public void putLrcTag(ByteBuffer out, long time) {
+        putAscii(out, putLrcTag(buffer, 0, time));
+    }
+
+    public void putNumber(ByteBuffer out, long value) {
+        putAscii(out, putNumber(buffer, 0, value, 1));
+    }
+
+    // Các ký tự trong buffer đều là ASCII nên mỗi char tương ứng đúng một byte UTF-8
+    private void putAscii(ByteBuffer out, int length) {
+        for (int i = 0; i < length; i++) {
+            out.put((byte) buffer[i]);
+        }
+    }
+
+    // HH:MM:SS,mmm - giờ có thể nhiều hơn 2 chữ số
+    static int putClockTime(char[] buf, int pos, long millis, char separator) {
+        pos = putNumber(buf, pos, millis / 3600000, 2);
+        buf[pos++] = ':';
+        pos = putTwoDigits(buf, pos, (int) ((millis % 3600000) / 60000));
+        buf[pos++] = ':';
+        pos = putTwoDigits(buf, pos, (int) ((millis % 60000) / 1000));
+        buf[pos++] = separator;
+        int ms = (int) (millis % 1000);
+        buf[pos++] = (char) ('0' + ms / 100);
+        return putTwoDigits(buf, pos, ms % 100);
+    }
+
+    // [mm:ss.xx] - phút có thể nhiều hơn 2 chữ số, xx là phần trăm giây
+    static int putLrcTag(char[] buf, int pos, long millis) {
+        buf[pos++] = '[';
+        pos = putNumber(buf, pos, millis / 60000, 2);
+        buf[pos++] = ':';
+        pos = putTwoDigits(buf, pos, (int) ((millis % 60000) / 1000));
+        buf[pos++] = '.';
+        pos = putTwoDigits(buf, pos, (int) ((millis % 1000) / 10));
+        buf[pos++] = ']';
+        return pos;
+    }
+
+    static int putTwoDigits(char[] buf, int pos, int value) {
+        buf[pos++] = (char) ('0' + value / 10);
+        buf[pos++] = (char) ('0' + value % 10);
+        return pos;
+    }
+
+    // Ghi số với ít nhất minDigits chữ số (thêm số 0 ở đầu như %02d)
+    static int putNumber(char[] buf, int pos, long value, int minDigits) {
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) digits++;
+        if (digits < minDigits) digits = minDigits;
+        int end = pos + digits;
+        for (int i = end - 1; i >= pos; i--) {
+            buf[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+}
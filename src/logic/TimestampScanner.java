@@ -0,0 +1,250 @@
+package logic;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bộ quét timestamp viết tay thay cho Pattern/Matcher.
+ * Đọc trực tiếp từng ký tự và tính ra milliseconds dạng long,
+ * không tạo String, Matcher hay đối tượng boxing nào.
+ *
+ * Hỗ trợ:
+ *  - "HH:MM:SS,mmm --> HH:MM:SS,mmm" (SRT)
+ *  - "MM:SS.mmm --> MM:SS.mmm" và "HH:MM:SS.mmm --> ..." (VTT, phần sau có thể kèm cue settings)
+ *  - "[mm:ss.xx]" (LRC)
+ *
+ * Có cả bản quét trực tiếp trên byte UTF-8 (dùng cho MappedConverter), vì các ký tự
+ * của timestamp đều là ASCII nên không cần giải mã dòng thành String.
+ *
+ * Một instance giữ kết quả của lần quét gần nhất nên không dùng chung giữa nhiều thread.
+ */
+public final class TimestampScanner {
+    public static final long NO_MATCH = -1;
+
+    private long start;
+    private long end;
+    private int position;
+
+    /**
+     * Quét dòng timing của SRT/VTT
+     * @return true nếu dòng là dòng timing hợp lệ, kết quả lấy qua getStart()/getEnd()
+     */
+    public boolean scanCueTiming(CharSequence line) {
+        int length = line.length();
+        int i = skipSpaces(line, 0, length);
+
+        long startTime = scanClockTime(line, i, length);
+        if (startTime == NO_MATCH) return false;
+        i = skipSpaces(line, position, length);
+
+        if (i + 3 > length || line.charAt(i) != '-' || line.charAt(i + 1) != '-' || line.charAt(i + 2) != '>') {
+            return false;
+        }
+        i = skipSpaces(line, i + 3, length);
+
+        long endTime = scanClockTime(line, i, length);
+        if (endTime == NO_MATCH) return false;
+
+        // Phần còn lại (cue settings của VTT) phải cách timestamp bằng khoảng trắng
+        if (position < length && !isSpace(line.charAt(position))) return false;
+
+        this.start = startTime;
+        this.end = endTime;
+        return true;
+    }
+
+    /**
+     * Quét tag thời gian LRC "[mm:ss.xx]" (hoặc "[mm:ss.xxx]", "[mm:ss:xx]") bắt đầu tại from
+     * @return thời gian tính bằng milliseconds, hoặc NO_MATCH; getPosition() trỏ tới ký tự sau ']'
+     */
+    public long scanLrcTag(CharSequence line, int from) {
+        int length = line.length();
+        int i = from;
+        if (i >= length || line.charAt(i) != '[') return NO_MATCH;
+        i++;
+
+        int digitsStart = i;
+        long minutes = 0;
+        while (i < length && isDigit(line.charAt(i))) {
+            minutes = minutes * 10 + (line.charAt(i++) - '0');
+        }
+        if (i == digitsStart || i >= length || line.charAt(i) != ':') return NO_MATCH;
+
+        int seconds = twoDigits(line, i + 1, length);
+        if (seconds < 0) return NO_MATCH;
+        i += 3;
+
+        if (i >= length || (line.charAt(i) != '.' && line.charAt(i) != ':')) return NO_MATCH;
+        i++;
+
+        // 2 chữ số là phần trăm giây, 3 chữ số là milliseconds
+        int fractionStart = i;
+        int fraction = 0;
+        while (i < length && i - fractionStart < 3 && isDigit(line.charAt(i))) {
+            fraction = fraction * 10 + (line.charAt(i++) - '0');
+        }
+        int fractionDigits = i - fractionStart;
+        if (fractionDigits < 2 || i >= length || line.charAt(i) != ']') return NO_MATCH;
+
+        position = i + 1;
+        int millis = fractionDigits == 2 ? fraction * 10 : fraction;
+        return (minutes * 60 + seconds) * 1000 + millis;
+    }
+
+    /**
+     * Quét dòng timing SRT/VTT nằm trong buffer từ vị trí from tới to (không gồm ký tự xuống dòng)
+     */
+    public boolean scanCueTiming(ByteBuffer buf, int from, int to) {
+        int i = skipSpaces(buf, from, to);
+
+        long startTime = scanClockTime(buf, i, to);
+        if (startTime == NO_MATCH) return false;
+        i = skipSpaces(buf, position, to);
+
+        if (i + 3 > to || buf.get(i) != '-' || buf.get(i + 1) != '-' || buf.get(i + 2) != '>') {
+            return false;
+        }
+        i = skipSpaces(buf, i + 3, to);
+
+        long endTime = scanClockTime(buf, i, to);
+        if (endTime == NO_MATCH) return false;
+        if (position < to && !isSpace((char) buf.get(position))) return false;
+
+        this.start = startTime;
+        this.end = endTime;
+        return true;
+    }
+
+    public static boolean isBlank(ByteBuffer buf, int from, int to) {
+        return skipSpaces(buf, from, to) == to;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    // Vị trí ngay sau phần vừa quét
+    public int getPosition() {
+        return position;
+    }
+
+    // Dòng chỉ gồm khoảng trắng (không cấp phát như trim())
+    public static boolean isBlank(CharSequence line) {
+        return skipSpaces(line, 0, line.length()) == line.length();
+    }
+
+    // [H...:]MM:SS[,.]mmm
+    private long scanClockTime(CharSequence line, int i, int length) {
+        int digitsStart = i;
+        long first = 0;
+        while (i < length && isDigit(line.charAt(i))) {
+            first = first * 10 + (line.charAt(i++) - '0');
+        }
+        if (i == digitsStart || i >= length || line.charAt(i) != ':') return NO_MATCH;
+
+        int second = twoDigits(line, i + 1, length);
+        if (second < 0) return NO_MATCH;
+        i += 3;
+
+        long hours;
+        long minutes;
+        int seconds;
+        if (i < length && line.charAt(i) == ':') {
+            int third = twoDigits(line, i + 1, length);
+            if (third < 0) return NO_MATCH;
+            i += 3;
+            hours = first;
+            minutes = second;
+            seconds = third;
+        } else {
+            hours = 0;
+            minutes = first;
+            seconds = second;
+        }
+
+        if (i + 4 > length || (line.charAt(i) != ',' && line.charAt(i) != '.')) return NO_MATCH;
+        char d1 = line.charAt(i + 1);
+        char d2 = line.charAt(i + 2);
+        char d3 = line.charAt(i + 3);
+        if (!isDigit(d1) || !isDigit(d2) || !isDigit(d3)) return NO_MATCH;
+
+        position = i + 4;
+        int millis = (d1 - '0') * 100 + (d2 - '0') * 10 + (d3 - '0');
+        return ((hours * 60 + minutes) * 60 + seconds) * 1000 + millis;
+    }
+
+    private long scanClockTime(ByteBuffer buf, int i, int to) {
+        int digitsStart = i;
+        long first = 0;
+        while (i < to && isDigit((char) buf.get(i))) {
+            first = first * 10 + (buf.get(i++) - '0');
+        }
+        if (i == digitsStart || i >= to || buf.get(i) != ':') return NO_MATCH;
+
+        int second = twoDigits(buf, i + 1, to);
+        if (second < 0) return NO_MATCH;
+        i += 3;
+
+        long hours;
+        long minutes;
+        int seconds;
+        if (i < to && buf.get(i) == ':') {
+            int third = twoDigits(buf, i + 1, to);
+            if (third < 0) return NO_MATCH;
+            i += 3;
+            hours = first;
+            minutes = second;
+            seconds = third;
+        } else {
+            hours = 0;
+            minutes = first;
+            seconds = second;
+        }
+
+        if (i + 4 > to || (buf.get(i) != ',' && buf.get(i) != '.')) return NO_MATCH;
+        int hundreds = twoDigits(buf, i + 1, to);
+        char d3 = (char) buf.get(i + 3);
+        if (hundreds < 0 || !isDigit(d3)) return NO_MATCH;
+
+        position = i + 4;
+        int millis = hundreds * 10 + (d3 - '0');
+        return ((hours * 60 + minutes) * 60 + seconds) * 1000 + millis;
+    }
+
+    private static int twoDigits(ByteBuffer buf, int i, int to) {
+        if (i + 2 > to) return -1;
+        char d1 = (char) buf.get(i);
+        char d2 = (char) buf.get(i + 1);
+        if (!isDigit(d1) || !isDigit(d2)) return -1;
+        return (d1 - '0') * 10 + (d2 - '0');
+    }
+
+    private static int skipSpaces(ByteBuffer buf, int i, int to) {
+        while (i < to && isSpace((char) buf.get(i))) i++;
+        return i;
+    }
+
+    private static int twoDigits(CharSequence line, int i, int length) {
+        if (i + 2 > length) return -1;
+        char d1 = line.charAt(i);
+        char d2 = line.charAt(i + 1);
+        if (!isDigit(d1) || !isDigit(d2)) return -1;
+        return (d1 - '0') * 10 + (d2 - '0');
+    }
+
+    private static int skipSpaces(CharSequence line, int i, int length) {
+        while (i < length && isSpace(line.charAt(i))) i++;
+        return i;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\f';
+    }
+}
@@ -0,0 +1,82 @@
+package logic;
+
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+
+/**
+ * API dịch mà Translator gọi tới: địa chỉ, cách xác thực và dạng JSON của request/response.
+ *
+ * Translator lo phần còn lại (chia chunk, gửi song song, rate limit, thử lại, stream, ghép
+ * kết quả) nên một backend chỉ cần biết nói chuyện với server của nó. Mặc định là OpenAiBackend;
+ * gateway tự host tương thích OpenAI chỉ cần đổi endpoint, StubBackend là server giả lập local.
+ */
+public interface TranslationBackend {
+
+    /**
+     * Địa chỉ nhận request chat completions. Các API khác (files, batches) tính từ địa chỉ này.
+     */
+    URI getEndpoint();
+
+    /**
+     * Request tới uri kèm header xác thực của backend
+     */
+    HttpRequest.Builder newRequest(URI uri);
+
+    /**
+     * Body JSON của request dịch một prompt
+     * @param stream true nếu muốn nhận response dạng server-sent events
+     */
+    JsonObject chatRequest(String model, String prompt, int maxTokens, boolean stream);
+
+    /**
+     * Đọc response (không stream) của một request dịch
+     * @throws IOException response báo lỗi hoặc không có bản dịch
+     */
+    Completion readCompletion(JsonObject response) throws IOException;
+
+    /**
+     * Đọc một event "data: {...}" của response stream
+     * @return phần text mới (có thể null) cùng finish reason, số token nếu event có
+     * @throws IOException event báo lỗi
+     */
+    Completion readStreamEvent(JsonObject event) throws IOException;
+
+    /**
+     * Kết quả đọc từ response hoặc một event của stream
+     */
+    final class Completion {
+        private final String content;
+        private final String finishReason;
+        private final int totalTokens;
+
+        public Completion(String content, String finishReason, int totalTokens) {
+            this.content = content;
+            this.finishReason = finishReason;
+            this.totalTokens = totalTokens;
+        }
+
+        /**
+         * Text trả về (với event stream là phần text mới), null nếu không có
+         */
+        public String getContent() {
+            return content;
+        }
+
+        /**
+         * "stop", "length"... hoặc null nếu chưa xong
+         */
+        public String getFinishReason() {
+            return finishReason;
+        }
+
+        /**
+         * Số token đã tính cho request, 0 nếu không biết
+         */
+        public int getTotalTokens() {
+            return totalTokens;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package logic;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Nhật ký dịch của một file, để dịch tiếp khi ứng dụng bị tắt hoặc crash giữa chừng.
+ *
+ * Mỗi chunk dịch xong được nối vào file nhật ký (cạnh file kết quả, đuôi .journal) thành một
+ * dòng JSON gồm vị trí các block, bản dịch và CRC32 của text gốc các block đó. Lần chạy sau
+ * đọc lại nhật ký, chỉ lấy các chunk có checksum khớp với file nguồn hiện tại, và chỉ dịch
+ * những block còn thiếu. Dịch xong cả file thì xóa nhật ký.
+ *
+ * Dòng đầu ghi ngôn ngữ đích và model, khác đi thì nhật ký cũ bị bỏ.
+ */
+final class TranslationJournal implements Closeable {
+    static final String EXTENSION = ".journal";
+    private static final Gson GSON = new Gson();
+
+    // Dòng đầu của file
+    private static final class Header {
+        String lang;
+        String model;
+    }
+
+    // Một chunk đã dịch xong
+    private static final class Record {
+        int[] blocks;
+        String[] texts;
+        long crc;
+    }
+
+    private final File file;
+    private final List<String> sources;
+    private final String[] recovered;
+    private final BufferedWriter writer;
+    private int recoveredCount = 0;
+
+    private TranslationJournal(File file, List<String> sources, String lang, String model) throws IOException {
+        this.file = file;
+        this.sources = sources;
+        this.recovered = new String[sources.size()];
+        StringBuilder valid = new StringBuilder();
+        replay(lang, model, valid);
+
+        // Ghi lại nhật ký chỉ gồm các dòng còn dùng được: bỏ dòng ghi dở lúc crash và chunk cũ
+        Header header = new Header();
+        header.lang = lang;
+        header.model = model;
+        Path path = file.toPath();
+        Path temp = path.resolveSibling(file.getName() + ".tmp");
+        Files.writeString(temp, GSON.toJson(header) + "\n" + valid, StandardCharsets.UTF_8);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Mở (hoặc tạo) nhật ký cho file kết quả
+     * @param sources text gốc của từng block trong file nguồn
+     */
+    static TranslationJournal open(File outputFile, List<String> sources, String lang, String model)
+            throws IOException {
+        return new TranslationJournal(fileFor(outputFile), sources, lang, model);
+    }
+
+    static File fileFor(File outputFile) {
+        return new File(outputFile.getPath() + EXTENSION);
+    }
+
+    private void replay(String lang, String model, StringBuilder valid) {
+        if (!file.isFile()) return;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            Header header = GSON.fromJson(reader.readLine(), Header.class);
+            if (header == null || !lang.equals(header.lang) || !model.equals(header.model)) return;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Record record;
+                try {
+                    record = GSON.fromJson(line, Record.class);
+                } catch (JsonParseException e) {
+                    // Dòng ghi dở (thường là dòng cuối)
+                    continue;
+                }
+                if (!matches(record)) continue;
+                for (int i = 0; i < record.blocks.length; i++) {
+                    if (recovered[record.blocks[i]] == null) recoveredCount++;
+                    recovered[record.blocks[i]] = record.texts[i];
+                }
+                valid.append(line).append('\n');
+            }
+        } catch (IOException | JsonParseException e) {
+            // Nhật ký hỏng: giữ những gì đã đọc được, phần còn lại dịch lại
+        }
+    }
+
+    // Chunk còn dùng được: đúng vị trí và text gốc các block không đổi
+    private boolean matches(Record record) {
+        if (record == null || record.blocks == null || record.texts == null
+                || record.blocks.length != record.texts.length) {
+            return false;
+        }
+        for (int i = 0; i < record.blocks.length; i++) {
+            if (record.blocks[i] < 0 || record.blocks[i] >= sources.size() || record.texts[i] == null) return false;
+        }
+        return record.crc == checksum(sources, record.blocks);
+    }
+
+    /**
+     * CRC32 text gốc của các block (theo thứ tự), dùng để nhận ra chunk cũ khi file nguồn đã đổi
+     */
+    static long checksum(List<String> sources, int[] blocks) {
+        CRC32 crc = new CRC32();
+        for (int block : blocks) {
+            crc.update(sources.get(block).getBytes(StandardCharsets.UTF_8));
+            crc.update(0);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Bản dịch đọc lại từ lần chạy trước của block, null nếu chưa có
+     */
+    String recovered(int block) {
+        return recovered[block];
+    }
+
+    int getRecoveredCount() {
+        return recoveredCount;
+    }
+
+    /**
+     * Ghi nhận một chunk đã dịch xong (ghi ngay ra đĩa)
+     */
+    synchronized void append(List<Integer> blocks, List<String> texts) throws IOException {
+        Record record = new Record();
+        record.blocks = new int[blocks.size()];
+        for (int i = 0; i < record.blocks.length; i++) record.blocks[i] = blocks.get(i);
+        record.texts = texts.toArray(new String[0]);
+        record.crc = checksum(sources, record.blocks);
+        writer.write(GSON.toJson(record));
+        writer.write('\n');
+        writer.flush();
+    }
+
+    /**
+     * Ghi một chunk vào nhật ký của outputFile mà không cần mở file nguồn (kết quả của Batch API,
+     * checksum đã tính lúc gửi). Nhật ký chưa có thì tạo mới.
+     */
+    static void appendRecord(File outputFile, String lang, String model, int[] blocks, List<String> texts,
+                             long checksum) throws IOException {
+        Record record = new Record();
+        record.blocks = blocks;
+        record.texts = texts.toArray(new String[0]);
+        record.crc = checksum;
+        Path path = fileFor(outputFile).toPath();
+        StringBuilder lines = new StringBuilder();
+        if (!Files.isRegularFile(path)) {
+            Header header = new Header();
+            header.lang = lang;
+            header.model = model;
+            lines.append(GSON.toJson(header)).append('\n');
+        }
+        lines.append(GSON.toJson(record)).append('\n');
+        Files.writeString(path, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * File đã dịch xong: không cần nhật ký nữa
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file.toPath());
+    }
+}
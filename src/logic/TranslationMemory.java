@@ -0,0 +1,415 @@
+package logic;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Bộ nhớ dịch lưu trên đĩa: cùng một câu gốc, ngôn ngữ đích và model thì không gọi API lần nữa.
+ *
+ * Dữ liệu nằm trong một file chỉ ghi thêm (append-only), đọc qua FileChannel.map nên text không
+ * chiếm heap. Trên heap chỉ có bảng băm (hash 64-bit -> vị trí record trong file) và một LRU
+ * nhỏ giữ các bản dịch vừa dùng (điệp khúc lặp lại liên tục chỉ đọc file một lần).
+ *
+ * Record: [độ dài key][độ dài value][CRC32][key UTF-8][value UTF-8]. Khi mở, file được quét
+ * lại để dựng bảng băm; record cuối ghi dở (tắt máy giữa chừng) bị cắt bỏ. Cùng key ghi nhiều
+ * lần thì bản mới nhất thắng.
+ *
+ * Nhiều tiến trình có thể dùng chung một file: mỗi lần ghi giữ FileLock trên file, đọc lại độ
+ * dài file và index các record tiến trình khác đã ghi thêm rồi mới ghi vào cuối.
+ *
+ * Key là text gốc đã chuẩn hóa (NFC, gộp khoảng trắng, bỏ khoảng trắng cuối dòng).
+ */
+public final class TranslationMemory implements Closeable {
+    public static final String DEFAULT_FILE = "translation_memory.tm";
+
+    private static final int MAGIC = 0x544D3031; // "TM01"
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 12;
+    // Một lần map không vượt quá 2 GB, giữ file nhỏ hơn nhiều
+    private static final long MAX_FILE_SIZE = 1L << 30;
+    private static final int DEFAULT_CACHE_ENTRIES = 10_000;
+    private static final char KEY_SEPARATOR = '\u001F';
+
+    private static final Map<String, TranslationMemory> SHARED = new ConcurrentHashMap<>();
+    // FileLock thuộc về cả tiến trình: hai bản mở cùng file trong một JVM phải nhường nhau trước
+    private static final Map<String, Object> FILE_MONITORS = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final FileChannel channel;
+    private final Object fileMonitor;
+    // Vùng đã map, map lại khi đọc record nằm sau vùng này
+    private MappedByteBuffer mapped;
+    // Cuối record hợp lệ cuối cùng
+    private long size;
+
+    // Bảng băm địa chỉ mở: hash của key -> vị trí record, hash 0 là ô trống
+    private long[] hashes = new long[1024];
+    private long[] offsets = new long[1024];
+    private int count = 0;
+
+    private final LinkedHashMap<String, String> recent;
+    private long hits = 0;
+    private long misses = 0;
+
+    private TranslationMemory(File file, FileChannel channel, int cacheEntries) {
+        this.file = file;
+        this.channel = channel;
+        this.fileMonitor = FILE_MONITORS.computeIfAbsent(
+                file.getAbsoluteFile().toPath().normalize().toString(), k -> new Object());
+        this.recent = new LinkedHashMap<String, String>(256, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheEntries;
+            }
+        };
+    }
+
+    /**
+     * Mở (hoặc tạo) bộ nhớ dịch. File hỏng thì bắt đầu lại từ đầu.
+     */
+    public static TranslationMemory open(File file) throws IOException {
+        return open(file, DEFAULT_CACHE_ENTRIES);
+    }
+
+    public static TranslationMemory open(File file, int cacheEntries) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        TranslationMemory memory = new TranslationMemory(file, channel, cacheEntries);
+        try {
+            synchronized (memory.fileMonitor) {
+                FileLock lock = channel.lock();
+                try {
+                    memory.load();
+                } finally {
+                    lock.release();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return memory;
+    }
+
+    /**
+     * Bộ nhớ dịch dùng chung trong tiến trình cho một file (mọi Translator cùng đọc/ghi một bản)
+     */
+    public static TranslationMemory shared(File file) throws IOException {
+        String key = file.getAbsoluteFile().toPath().normalize().toString();
+        synchronized (SHARED) {
+            TranslationMemory memory = SHARED.get(key);
+            if (memory == null || !memory.channel.isOpen()) {
+                memory = open(file);
+                SHARED.put(key, memory);
+            }
+            return memory;
+        }
+    }
+
+    // Gọi khi đang giữ FileLock
+    private void load() throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE || readMagic() != MAGIC) {
+            // File mới hoặc không phải bộ nhớ dịch: ghi lại từ đầu
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(0).flip();
+            channel.write(header, 0);
+            size = HEADER_SIZE;
+            return;
+        }
+
+        size = HEADER_SIZE;
+        catchUp(fileSize);
+    }
+
+    /**
+     * Index các record từ size tới fileSize (ghi bởi tiến trình khác, hoặc cả file khi mở).
+     * Gọi khi đang giữ FileLock; record cuối ghi dở (tắt máy giữa chừng) bị cắt bỏ.
+     */
+    private void catchUp(long fileSize) throws IOException {
+        if (fileSize <= size) return;
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        long start = size;
+        long position = start;
+        CRC32 crc = new CRC32();
+        while (position + RECORD_HEADER_SIZE <= fileSize) {
+            int keyLength = mapped.getInt((int) position);
+            int valueLength = mapped.getInt((int) position + 4);
+            int checksum = mapped.getInt((int) position + 8);
+            long end = position + RECORD_HEADER_SIZE + (long) keyLength + valueLength;
+            if (keyLength <= 0 || valueLength < 0 || end > fileSize) break;
+
+            ByteBuffer data = mapped.duplicate();
+            data.position((int) position + RECORD_HEADER_SIZE).limit((int) end);
+            crc.reset();
+            crc.update(data);
+            if ((int) crc.getValue() != checksum) break;
+
+            index(hash(mapped, (int) position + RECORD_HEADER_SIZE, keyLength), position);
+            position = end;
+        }
+        size = position;
+        // Key vừa được tiến trình khác ghi lại thì bản trong LRU đã cũ
+        if (position > start) recent.clear();
+        if (size < fileSize) {
+            // Record cuối ghi dở
+            channel.truncate(size);
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    private int readMagic() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        channel.read(header, 0);
+        header.flip();
+        return header.remaining() == 4 ? header.getInt() : 0;
+    }
+
+    /**
+     * Bản dịch đã lưu, null nếu chưa có
+     */
+    public synchronized String get(String source, String targetLanguage, String model) throws IOException {
+        String key = key(source, targetLanguage, model);
+        String cached = recent.get(key);
+        if (cached != null) {
+            hits++;
+            return cached;
+        }
+        long offset = find(key.getBytes(StandardCharsets.UTF_8));
+        if (offset < 0) {
+            misses++;
+            return null;
+        }
+        String value = readValue(offset);
+        recent.put(key, value);
+        hits++;
+        return value;
+    }
+
+    /**
+     * Lưu bản dịch (ghi thêm vào cuối file, không chờ fsync)
+     */
+    public synchronized void put(String source, String targetLanguage, String model, String translation)
+            throws IOException {
+        if (translation == null || source.trim().isEmpty()) return;
+        String key = key(source, targetLanguage, model);
+        if (translation.equals(recent.get(key))) return;
+
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = translation.getBytes(StandardCharsets.UTF_8);
+        long existing = find(keyBytes);
+        if (existing >= 0 && translation.equals(readValue(existing))) {
+            recent.put(key, translation);
+            return;
+        }
+        int recordSize = RECORD_HEADER_SIZE + keyBytes.length + valueBytes.length;
+        CRC32 crc = new CRC32();
+        crc.update(keyBytes);
+        crc.update(valueBytes);
+        ByteBuffer record = ByteBuffer.allocate(recordSize);
+        record.putInt(keyBytes.length).putInt(valueBytes.length).putInt((int) crc.getValue())
+              .put(keyBytes).put(valueBytes).flip();
+
+        synchronized (fileMonitor) {
+            FileLock lock = channel.lock();
+            try {
+                // Tiến trình khác có thể đã ghi thêm sau lần ghi trước của mình
+                catchUp(channel.size());
+                if (size + recordSize > MAX_FILE_SIZE) {
+                    // File đầy: chỉ giữ trong LRU
+                    recent.put(key, translation);
+                    return;
+                }
+                long offset = size;
+                long position = offset;
+                while (record.hasRemaining()) {
+                    position += channel.write(record, position);
+                }
+                // size phải tăng trước khi index: key đã có thì index đọc lại record cũ qua view(),
+                // view() chỉ map lại khi size vượt vùng đã map
+                size = position;
+                index(hash(ByteBuffer.wrap(keyBytes), 0, keyBytes.length), offset);
+            } finally {
+                lock.release();
+            }
+        }
+        recent.put(key, translation);
+    }
+
+    // Vị trí record của key, -1 nếu không có
+    private long find(byte[] keyBytes) throws IOException {
+        long hash = hash(ByteBuffer.wrap(keyBytes), 0, keyBytes.length);
+        int mask = hashes.length - 1;
+        for (int slot = (int) hash & mask; hashes[slot] != 0; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && keyEquals(offsets[slot], keyBytes)) {
+                return offsets[slot];
+            }
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(long offset, byte[] keyBytes) throws IOException {
+        ByteBuffer buffer = view(offset);
+        if (buffer.getInt(buffer.position()) != keyBytes.length) return false;
+        int start = buffer.position() + RECORD_HEADER_SIZE;
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (buffer.get(start + i) != keyBytes[i]) return false;
+        }
+        return true;
+    }
+
+    private String readValue(long offset) throws IOException {
+        ByteBuffer buffer = view(offset);
+        int keyLength = buffer.getInt(buffer.position());
+        int valueLength = buffer.getInt(buffer.position() + 4);
+        byte[] value = new byte[valueLength];
+        buffer.position(buffer.position() + RECORD_HEADER_SIZE + keyLength);
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    // Buffer đặt position ở đầu record, map lại nếu record được ghi sau lần map trước
+    private ByteBuffer view(long offset) throws IOException {
+        if (mapped == null || size > mapped.capacity()) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        ByteBuffer buffer = mapped.duplicate();
+        buffer.position((int) offset);
+        return buffer;
+    }
+
+    // Thêm hoặc thay vị trí của key (record mới hơn thắng)
+    private void index(long hash, long offset) throws IOException {
+        if ((count + 1) * 2 > hashes.length) {
+            grow();
+        }
+        int mask = hashes.length - 1;
+        int slot = (int) hash & mask;
+        while (hashes[slot] != 0) {
+            if (hashes[slot] == hash && sameKey(offsets[slot], offset)) {
+                offsets[slot] = offset;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        hashes[slot] = hash;
+        offsets[slot] = offset;
+        count++;
+    }
+
+    private boolean sameKey(long first, long second) throws IOException {
+        ByteBuffer a = view(first);
+        ByteBuffer b = view(second);
+        int length = a.getInt(a.position());
+        if (b.getInt(b.position()) != length) return false;
+        int startA = a.position() + RECORD_HEADER_SIZE;
+        int startB = b.position() + RECORD_HEADER_SIZE;
+        for (int i = 0; i < length; i++) {
+            if (a.get(startA + i) != b.get(startB + i)) return false;
+        }
+        return true;
+    }
+
+    private void grow() {
+        long[] oldHashes = hashes;
+        long[] oldOffsets = offsets;
+        hashes = new long[oldHashes.length * 2];
+        offsets = new long[oldOffsets.length * 2];
+        int mask = hashes.length - 1;
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] == 0) continue;
+            int slot = (int) oldHashes[i] & mask;
+            while (hashes[slot] != 0) slot = (slot + 1) & mask;
+            hashes[slot] = oldHashes[i];
+            offsets[slot] = oldOffsets[i];
+        }
+    }
+
+    // FNV-1a 64-bit, không bao giờ trả về 0 (0 là ô trống)
+    private static long hash(ByteBuffer buffer, int start, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < start + length; i++) {
+            hash ^= buffer.get(i) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static String key(String source, String targetLanguage, String model) {
+        return targetLanguage + KEY_SEPARATOR + model + KEY_SEPARATOR + normalize(source);
+    }
+
+    /**
+     * Chuẩn hóa text gốc: NFC (tiếng Việt có thể là dấu dựng sẵn hoặc dấu kết hợp), CRLF thành LF,
+     * gộp khoảng trắng liên tiếp, bỏ khoảng trắng đầu/cuối mỗi dòng
+     */
+    public static String normalize(String text) {
+        String nfc = Normalizer.normalize(text, Normalizer.Form.NFC);
+        StringBuilder sb = new StringBuilder(nfc.length());
+        int lineStart = 0;
+        boolean space = false;
+        for (int i = 0; i < nfc.length(); i++) {
+            char c = nfc.charAt(i);
+            if (c == '\r') continue;
+            if (c == '\n') {
+                sb.append('\n');
+                lineStart = sb.length();
+                space = false;
+            } else if (c == ' ' || c == '\t' || c == '\u00A0') {
+                space = true;
+            } else {
+                if (space && sb.length() > lineStart) sb.append(' ');
+                sb.append(c);
+                space = false;
+            }
+        }
+        // Bỏ dòng trống ở đầu và cuối
+        int from = 0;
+        int to = sb.length();
+        while (from < to && sb.charAt(from) == '\n') from++;
+        while (to > from && sb.charAt(to - 1) == '\n') to--;
+        return sb.substring(from, to);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Ghi xuống đĩa và đóng file
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) return;
+        channel.force(false);
+        channel.close();
+        mapped = null;
+    }
+}
@@ -3,25 +3,97 @@ package logic;
 import java.io.*;
 import java.net.URI;
 import java.net.http.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.*;
 import com.google.gson.*;
 
 public class Translator {
-    private static final String OPENAI_API_URL = "https://api.openai.com/v1/chat/completions";
-    private String apiKey;
+    public static final String OPENAI_API_URL = OpenAiBackend.DEFAULT_ENDPOINT;
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(120);
+    // Thread của HttpClient chủ yếu chờ mạng nên có thể nhiều hơn số core
+    private static final int IO_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    // Chunk của preview nhỏ (vài chục dòng) để dòng đầu tiên hiện sau vài giây
+    static final int PREVIEW_CHUNK_OUTPUT_TOKENS = 600;
+    // Số lần gửi tối đa cho mỗi chunk (lần đầu + thử lại)
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long RETRY_BASE_DELAY_MS = 1000;
+    // 429 không phải lỗi thật, rate limiter đã chờ đúng thời gian nên cho thử nhiều lần hơn
+    private static final int MAX_RATE_LIMITED_ATTEMPTS = 10;
+
+    private final TranslationBackend backend;
     private String modelName; // Thêm biến để lưu model được chọn
+    private final Duration requestTimeout;
+    // Một client dùng suốt vòng đời Translator: giữ kết nối (keep-alive, HTTP/2 multiplexing)
+    // nên các chunk sau không phải bắt tay TCP/TLS lại
+    private final HttpClient httpClient;
+    private volatile int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private volatile TranslationMemory memory;
+    private volatile boolean textOnly = true;
+    private volatile boolean streaming = false;
+    private volatile CueListener cueListener;
     
     // Constructor ban đầu với model mặc định
     public Translator(String apiKey) {
-        this.apiKey = apiKey;
-        this.modelName = "gpt-4o-mini"; // Mặc định là gpt-4o-mini
+        this(apiKey, "gpt-4o-mini"); // Mặc định là gpt-4o-mini
     }
     
     // Constructor mới cho phép chỉ định model
     public Translator(String apiKey, String modelName) {
-        this.apiKey = apiKey;
+        this(apiKey, modelName, URI.create(OPENAI_API_URL), DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    /**
+     * Cho phép đổi endpoint (ví dụ server giả lập chạy local khi test) và timeout
+     */
+    public Translator(String apiKey, String modelName, URI endpoint, Duration connectTimeout, Duration requestTimeout) {
+        this(new OpenAiBackend(endpoint, apiKey), modelName, connectTimeout, requestTimeout);
+    }
+
+    /**
+     * Dịch qua một backend khác (gateway tự host, server giả lập StubBackend...)
+     */
+    public Translator(TranslationBackend backend, String modelName, Duration connectTimeout, Duration requestTimeout) {
+        this.backend = backend;
         this.modelName = modelName;
+        this.requestTimeout = requestTimeout;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2) // Server không hỗ trợ thì tự về HTTP/1.1
+                .connectTimeout(connectTimeout)
+                .executor(ioExecutor())
+                .build();
+    }
+
+    // Thread daemon, tự thu hồi khi rảnh để Translator không cần close
+    private static ExecutorService ioExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(IO_THREADS, IO_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "translator-http");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public URI getEndpoint() {
+        return backend.getEndpoint();
+    }
+
+    public TranslationBackend getBackend() {
+        return backend;
     }
     
     // Getter/setter cho model name
@@ -35,162 +107,1170 @@ public class Translator {
     
     // Các phương thức dịch từng từ
     public String translateText(String text, String targetLanguage) throws IOException, InterruptedException {
+        TranslationMemory memory = this.memory;
+        String cached = lookup(memory, text, targetLanguage);
+        if (cached != null) {
+            return cached;
+        }
+
         String languageName = targetLanguage.equals("en") ? "English" : "Vietnamese";
         String prompt = String.format(
             "Translate the following text to %s. Keep the same tone and meaning:\n\n%s",
             languageName, text
         );
 
-        // Tạo JSON request
-        JsonObject requestBody = new JsonObject();
-        requestBody.addProperty("model", modelName);
-        requestBody.addProperty("max_tokens", 1024);
-        requestBody.addProperty("temperature", 0.3);
-
-        JsonArray messages = new JsonArray();
-        JsonObject message = new JsonObject();
-        message.addProperty("role", "user");
-        message.addProperty("content", prompt);
-        messages.add(message);
-        requestBody.add("messages", messages);
-
-        // Gửi request
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(OPENAI_API_URL))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Bearer " + apiKey)
-                .POST(HttpRequest.BodyPublishers.ofString(requestBody.toString()))
-                .build();
+        JsonObject requestBody = backend.chatRequest(modelName, prompt, 1024, false);
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        // Gửi request, chờ theo rate limiter dùng chung; 429 thì chờ theo Retry-After rồi gửi lại
+        RateLimiter limiter = rateLimiter();
+        int estimatedTokens = estimateTokens(prompt, 1024);
+        HttpResponse<String> response;
+        for (int attempt = 1; ; attempt++) {
+            long wait = limiter.reserve(estimatedTokens);
+            if (wait > 0) Thread.sleep(wait);
+            response = post(requestBody);
+            if (response.statusCode() != 429 || attempt >= MAX_RATE_LIMITED_ATTEMPTS) break;
+            limiter.onRateLimited(response.headers());
+        }
 
         if (response.statusCode() != 200) {
             throw new IOException("OpenAI API error: " + response.statusCode() + " - " + response.body());
         }
+        limiter.onResponse(response.headers());
 
         // Parse response
-        JsonObject responseJson = JsonParser.parseString(response.body()).getAsJsonObject();
-        JsonArray choices = responseJson.getAsJsonArray("choices");
+        TranslationBackend.Completion completion =
+                backend.readCompletion(JsonParser.parseString(response.body()).getAsJsonObject());
+        limiter.adjust(estimatedTokens, completion.getTotalTokens());
+        String translated = completion.getContent().trim();
+        remember(memory, text, targetLanguage, translated);
+        return translated;
+    }
+
+    /**
+     * Nhận bản dịch của từng text trong translateTextsAsync ngay khi có (gọi từ thread mạng)
+     */
+    public interface TextListener {
+        void onTextTranslated(int index, String translatedText);
+    }
 
-        if (choices.size() == 0) {
-            throw new IOException("No translation received from OpenAI");
+    /**
+     * Dịch nhiều text ngắn (các dòng của preview) bằng ít request: text được gom thành chunk nhỏ
+     * theo token (PREVIEW_CHUNK_OUTPUT_TOKENS) và gửi dưới dạng mảng JSON như translateSrtFile,
+     * tối đa maxInFlight chunk cùng lúc. Text trong priority được gom riêng và gửi trước, phần
+     * còn lại theo thứ tự. Text đã có trong bộ nhớ dịch được báo ngay, text trùng chỉ gửi một lần.
+     * @param priority vị trí cần dịch trước (ví dụ các dòng đang hiện trên màn hình), có thể rỗng
+     * @return số text dịch lỗi khi mọi chunk xong; cancel() để không gửi các chunk còn lại
+     */
+    public CompletableFuture<Integer> translateTextsAsync(List<String> texts, String targetLanguage,
+                                                          Collection<Integer> priority, TextListener listener) {
+        TranslationMemory memory = this.memory;
+        List<Integer> order = new ArrayList<>(texts.size());
+        boolean[] queued = new boolean[texts.size()];
+        for (int index : priority) {
+            if (index >= 0 && index < texts.size() && !queued[index]) {
+                queued[index] = true;
+                order.add(index);
+            }
+        }
+        int priorityCount = order.size();
+        for (int i = 0; i < texts.size(); i++) {
+            if (!queued[i]) order.add(i);
         }
 
-        return choices.get(0).getAsJsonObject()
-                .getAsJsonObject("message")
-                .get("content").getAsString().trim();
+        // Text trùng: các vị trí sau dùng chung bản dịch của vị trí gửi đi
+        Map<String, List<Integer>> sameText = new HashMap<>();
+        List<Integer> first = new ArrayList<>();
+        List<Integer> rest = new ArrayList<>();
+        for (int n = 0; n < order.size(); n++) {
+            int index = order.get(n);
+            String text = texts.get(index);
+            if (text == null || text.trim().isEmpty()) continue;
+            String cached = lookup(memory, text, targetLanguage);
+            if (cached != null) {
+                listener.onTextTranslated(index, cached);
+                continue;
+            }
+            List<Integer> same = sameText.get(TranslationMemory.normalize(text));
+            if (same != null) {
+                same.add(index);
+                continue;
+            }
+            sameText.put(TranslationMemory.normalize(text), new ArrayList<>(Collections.singletonList(index)));
+            (n < priorityCount ? first : rest).add(index);
+        }
+
+        SubtitleChunker chunker = SubtitleChunker.forModel(modelName).withOutputBudget(PREVIEW_CHUNK_OUTPUT_TOKENS);
+        TextTranslation translation = new TextTranslation(texts, targetLanguage, memory, chunker, sameText, listener);
+        translation.addChunks(first);
+        translation.addChunks(rest);
+        log("Dịch preview: " + (first.size() + rest.size()) + " dòng trong " + translation.chunks.size() + " chunk");
+        translation.start(maxInFlight);
+        return translation.result;
     }
 
     /**
-     * Dịch file SRT sang ngôn ngữ đích
-     * @param inputFile File SRT gốc
-     * @param outputFile File SRT đã dịch
+     * Một lần translateTextsAsync: gửi các chunk theo thứ tự, mỗi chunk xong thì gửi chunk kế
+     * tiếp nên các chunk ưu tiên luôn được gửi trước
+     */
+    private final class TextTranslation {
+        final List<String> texts;
+        final String targetLanguage;
+        final TranslationMemory memory;
+        final SubtitleChunker chunker;
+        final Map<String, List<Integer>> sameText;
+        final TextListener listener;
+        final List<SubtitleChunker.Chunk> chunks = new ArrayList<>();
+        // Vị trí text của từng chunk
+        final List<List<Integer>> chunkIndexes = new ArrayList<>();
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger remaining = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+
+        TextTranslation(List<String> texts, String targetLanguage, TranslationMemory memory, SubtitleChunker chunker,
+                        Map<String, List<Integer>> sameText, TextListener listener) {
+            this.texts = texts;
+            this.targetLanguage = targetLanguage;
+            this.memory = memory;
+            this.chunker = chunker;
+            this.sameText = sameText;
+            this.listener = listener;
+        }
+
+        void addChunks(List<Integer> indexes) {
+            List<String> items = new ArrayList<>(indexes.size());
+            for (int index : indexes) items.add(texts.get(index));
+            int from = 0;
+            for (SubtitleChunker.Chunk chunk : chunker.splitTexts(items, targetLanguage)) {
+                chunks.add(chunk);
+                chunkIndexes.add(indexes.subList(from, from + chunk.getBlockCount()));
+                from += chunk.getBlockCount();
+            }
+        }
+
+        void start(int inFlight) {
+            remaining.set(chunks.size());
+            if (chunks.isEmpty()) {
+                result.complete(0);
+                return;
+            }
+            for (int i = 0; i < Math.min(inFlight, chunks.size()); i++) sendNext();
+        }
+
+        private void sendNext() {
+            int i = next.getAndIncrement();
+            if (i >= chunks.size()) return;
+            if (result.isDone()) return; // Đã cancel
+            List<Integer> indexes = chunkIndexes.get(i);
+            translateChunkWithRetry(chunker, chunks.get(i), targetLanguage, true, null).whenComplete((translated, error) -> {
+                try {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        failed.addAndGet(indexes.size());
+                        log("Lỗi dịch preview (" + indexes.size() + " dòng): " + cause.getMessage());
+                    } else if (!result.isDone()) {
+                        for (int j = 0; j < translated.size(); j++) {
+                            String source = texts.get(indexes.get(j));
+                            remember(memory, source, targetLanguage, translated.get(j));
+                            for (int index : sameText.get(TranslationMemory.normalize(source))) {
+                                try {
+                                    listener.onTextTranslated(index, translated.get(j));
+                                } catch (RuntimeException e) {
+                                    log("Lỗi TextListener: " + e);
+                                }
+                            }
+                        }
+                    }
+                } finally {
+                    // Luôn đếm chunk xong, nếu không future của preview không bao giờ hoàn tất
+                    if (remaining.decrementAndGet() == 0) {
+                        result.complete(failed.get());
+                    } else {
+                        sendNext();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Dịch file phụ đề (SRT, VTT, LRC theo đuôi file) sang ngôn ngữ đích, mỗi cue là một block.
+     * Mặc định chỉ gửi text của cue (mảng JSON đánh số), số thứ tự, timestamp, header và NOTE được
+     * ghép lại từ file gốc (CueDocument) nên số cue và time code luôn giữ nguyên;
+     * setTextOnly(false) để gửi nguyên block SRT (chỉ với file SRT, VTT và LRC luôn chỉ gửi text).
+     * Các block được gom thành chunk theo ngân sách token của model (SubtitleChunker).
+     * Các chunk được gửi song song (tối đa maxInFlight request cùng lúc) và ghép lại đúng thứ tự;
+     * chunk lỗi được thử lại riêng, hết lượt thử thì giữ nguyên đoạn gốc.
+     * @param inputFile File phụ đề gốc
+     * @param outputFile File đã dịch, cùng định dạng với file gốc
      * @param targetLanguage Ngôn ngữ đích ("en" hoặc "vi")
+     * @return số chunk dịch lỗi (đã giữ đoạn gốc, nhật ký được giữ lại để lần sau dịch tiếp), 0 nếu dịch đủ
      * @throws IOException
      */
-    public void translateSrtFile(File inputFile, File outputFile, String targetLanguage) throws IOException {
-        String content = Files.readString(inputFile.toPath());
-        String[] subtitleBlocks = content.split("\n\n");
+    public int translateSrtFile(File inputFile, File outputFile, String targetLanguage) throws IOException {
+        CueDocument doc = CueDocument.read(inputFile);
+        List<CueDocument.Cue> blocks = doc.cues;
+        // Chunk nào lỗi thì giữ nhật ký để lần sau chỉ dịch lại phần đó
+        AtomicInteger failedChunks = new AtomicInteger();
+        TranslationJournal journal = TranslationJournal.open(outputFile, doc.texts(), targetLanguage, modelName);
+        try (FileTranslation file = new FileTranslation(inputFile, doc, outputFile, cueListener)) {
+            boolean textOnly = textOnly(doc);
+            boolean streaming = this.streaming;
+            TranslationMemory memory = this.memory;
+            SubtitleChunker chunker = SubtitleChunker.forModel(modelName);
+            FilePlan plan = plan(blocks, journal, memory, targetLanguage, textOnly, chunker);
+            for (int i = 0; i < blocks.size(); i++) {
+                if (plan.ready[i] != null) {
+                    file.deliver(i, plan.ready[i]);
+                } else if (plan.sameAs[i] >= 0) {
+                    file.sameAs(i, plan.sameAs[i]);
+                }
+            }
+            List<Integer> toSend = plan.toSend;
+            List<SubtitleChunker.Chunk> chunks = plan.chunks;
+
+            Semaphore slots = new Semaphore(maxInFlight);
+            List<CompletableFuture<Void>> pending = new ArrayList<>();
+            try {
+                int firstBlock = 0;
+                for (int i = 0; i < chunks.size(); i++) {
+                    // Chờ khi đã đủ số request đang chạy
+                    slots.acquire();
+                    int index = i;
+                    SubtitleChunker.Chunk chunk = chunks.get(i);
+                    List<Integer> chunkBlocks = toSend.subList(firstBlock, firstBlock + chunk.getBlockCount());
+                    firstBlock += chunk.getBlockCount();
+                    // Khi stream, từng cue được ghi ra ngay khi model trả xong text của nó
+                    CueSink sink = streaming ? (position, text) -> file.deliver(chunkBlocks.get(position), text) : null;
+                    pending.add(translateChunkWithRetry(chunker, chunk, targetLanguage, textOnly, sink)
+                            .handle((translated, error) -> {
+                        try {
+                            if (error != null) {
+                                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                        ? error.getCause() : error;
+                                // Nếu lỗi, giữ nguyên đoạn gốc (FileTranslation.close())
+                                failedChunks.incrementAndGet();
+                                log("Lỗi dịch chunk " + (index + 1) + "/" + chunks.size() + ": " + cause.getMessage());
+                            } else {
+                                try {
+                                    journal.append(chunkBlocks, translated);
+                                } catch (IOException e) {
+                                    log("Không ghi được nhật ký dịch: " + e.getMessage());
+                                }
+                                for (int j = 0; j < translated.size(); j++) {
+                                    int block = chunkBlocks.get(j);
+                                    remember(memory, blocks.get(block).text, targetLanguage, translated.get(j));
+                                    file.deliver(block, translated.get(j));
+                                }
+                            }
+                        } finally {
+                            // Không trả slot thì sau maxInFlight lần lỗi, slots.acquire() chờ mãi
+                            slots.release();
+                        }
+                        return null;
+                    }));
+                }
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+            } catch (InterruptedException e) {
+                for (CompletableFuture<Void> future : pending) future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Translation interrupted");
+            }
+        } finally {
+            journal.close();
+        }
+        if (failedChunks.get() == 0) {
+            journal.delete();
+        }
+        return failedChunks.get();
+    }
+
+    // Gửi nguyên block chỉ có nghĩa với SRT: model không biết giữ header WEBVTT, NOTE hay tag LRC
+    private boolean textOnly(CueDocument doc) {
+        return textOnly || doc.format != SubtitleFormat.SRT;
+    }
+
+    /**
+     * Việc còn lại của một file: bản dịch đã có (nhật ký, bộ nhớ dịch), block trùng block
+     * trước, và các block phải gửi đã chia chunk
+     */
+    private static final class FilePlan {
+        // Bản dịch đã có của từng block, null nếu chưa
+        final String[] ready;
+        // Block trùng text với block trước thì dùng bản dịch của block đó, -1 nếu không
+        final int[] sameAs;
+        final List<Integer> toSend = new ArrayList<>();
+        List<SubtitleChunker.Chunk> chunks;
+
+        FilePlan(int size) {
+            this.ready = new String[size];
+            this.sameAs = new int[size];
+            Arrays.fill(sameAs, -1);
+        }
+    }
+
+    private FilePlan plan(List<CueDocument.Cue> blocks, TranslationJournal journal, TranslationMemory memory,
+                          String targetLanguage, boolean textOnly, SubtitleChunker chunker) {
+        if (journal.getRecoveredCount() > 0) {
+            log("Dịch tiếp từ nhật ký: " + journal.getRecoveredCount() + "/" + blocks.size() + " block đã dịch");
+        }
+        FilePlan plan = new FilePlan(blocks.size());
+        // Block trùng text với block trước (điệp khúc) chỉ gửi một lần
+        Map<String, Integer> firstByText = new HashMap<>();
+        int fromMemory = 0;
+        int duplicates = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            CueDocument.Cue block = blocks.get(i);
+            if (block.text.isEmpty()) {
+                plan.ready[i] = "";
+                continue;
+            }
+            String recovered = journal.recovered(i);
+            if (recovered != null) {
+                // Bản dịch từ Batch API chỉ có trong nhật ký, lưu luôn vào bộ nhớ dịch
+                remember(memory, block.text, targetLanguage, recovered);
+                firstByText.putIfAbsent(TranslationMemory.normalize(block.text), i);
+                plan.ready[i] = recovered;
+                continue;
+            }
+            String cached = lookup(memory, block.text, targetLanguage);
+            if (cached != null) {
+                plan.ready[i] = cached;
+                fromMemory++;
+                continue;
+            }
+            Integer first = firstByText.putIfAbsent(TranslationMemory.normalize(block.text), i);
+            if (first != null) {
+                plan.sameAs[i] = first;
+                duplicates++;
+            } else {
+                plan.toSend.add(i);
+            }
+        }
+        if (memory != null || plan.toSend.size() < blocks.size()) {
+            log("Bộ nhớ dịch: " + fromMemory + "/" + blocks.size() + " block đã có, "
+                    + duplicates + " block trùng lặp, cần dịch " + plan.toSend.size());
+        }
+
+        // Gom block theo số token dự kiến thay vì số block cố định
+        List<String> sendItems = new ArrayList<>(plan.toSend.size());
+        for (int block : plan.toSend) sendItems.add(textOnly ? blocks.get(block).text : blocks.get(block).block());
+        plan.chunks = textOnly
+                ? chunker.splitTexts(sendItems, targetLanguage)
+                : chunker.split(sendItems.toArray(new String[0]), targetLanguage);
+        if (!plan.chunks.isEmpty()) {
+            log("Chia " + sendItems.size() + " block thành " + plan.chunks.size() + " chunk (tối đa ~"
+                    + chunker.getOutputBudget() + " token đầu ra mỗi chunk)");
+        }
+        return plan;
+    }
+
+    /**
+     * Một chunk chuẩn bị cho Batch API: body của request chat completions và vị trí các block
+     */
+    static final class PlannedChunk {
+        final JsonObject body;
+        final int[] blocks;
+        // CRC32 text gốc của các block, ghi vào nhật ký cùng kết quả
+        final long checksum;
+        final int maxTokens;
+        // Kết quả là mảng text (true) hay các block SRT (false)
+        final boolean textOnly;
+
+        PlannedChunk(JsonObject body, int[] blocks, long checksum, int maxTokens, boolean textOnly) {
+            this.body = body;
+            this.blocks = blocks;
+            this.checksum = checksum;
+            this.maxTokens = maxTokens;
+            this.textOnly = textOnly;
+        }
+    }
+
+    /**
+     * Các chunk của file còn phải dịch (bỏ qua block đã có trong nhật ký, bộ nhớ dịch hoặc trùng),
+     * dạng request để gửi qua Batch API. Kết quả được ghi vào nhật ký của outputFile, lần chạy
+     * translateSrtFile sau đó sẽ đọc lại thay vì gọi API.
+     */
+    List<PlannedChunk> planChunks(File inputFile, File outputFile, String targetLanguage) throws IOException {
+        CueDocument doc = CueDocument.read(inputFile);
+        List<String> sources = doc.texts();
+        boolean textOnly = textOnly(doc);
+        SubtitleChunker chunker = SubtitleChunker.forModel(modelName);
+        FilePlan plan;
+        try (TranslationJournal journal = TranslationJournal.open(outputFile, sources, targetLanguage, modelName)) {
+            plan = plan(doc.cues, journal, memory, targetLanguage, textOnly, chunker);
+        }
+        List<PlannedChunk> planned = new ArrayList<>(plan.chunks.size());
+        int firstBlock = 0;
+        for (SubtitleChunker.Chunk chunk : plan.chunks) {
+            int[] positions = new int[chunk.getBlockCount()];
+            for (int i = 0; i < positions.length; i++) positions[i] = plan.toSend.get(firstBlock + i);
+            firstBlock += positions.length;
+            JsonObject body = chunkRequestBody(chunk, chunkPrompt(chunk, targetLanguage, textOnly), false);
+            planned.add(new PlannedChunk(body, positions, TranslationJournal.checksum(sources, positions),
+                    chunk.getMaxTokens(), textOnly));
+        }
+        return planned;
+    }
+
+    /**
+     * Nhận text đã dịch của một cue trong chunk (vị trí tính trong chunk)
+     */
+    private interface CueSink {
+        void onCue(int position, String text);
+    }
+
+    /**
+     * Một file đang dịch: cue dịch xong được ghi ngay ra file đích theo đúng thứ tự (cue trước
+     * chưa xong thì chờ), và báo cho CueListener. close() ghi nốt các cue lỗi bằng text gốc.
+     */
+    private final class FileTranslation implements Closeable {
+        private final File inputFile;
+        private final CueDocument doc;
+        private final CueListener listener;
+        private final BufferedWriter writer;
+        // Block đã có nội dung ra, null nếu chưa xong
+        private final String[] output;
+        private final String[] texts;
+        // Block trùng text -> các block sau dùng chung bản dịch
+        private final Map<Integer, List<Integer>> duplicates = new HashMap<>();
+        private int written = 0;
+        private IOException writeError;
 
-        StringBuilder translatedContent = new StringBuilder();
-        int chunkSize = 30; // Số block mỗi chunk, có thể điều chỉnh
-        int totalBlocks = subtitleBlocks.length;
+        FileTranslation(File inputFile, CueDocument doc, File outputFile, CueListener listener)
+                throws IOException {
+            this.inputFile = inputFile;
+            this.doc = doc;
+            this.listener = listener;
+            this.output = new String[doc.cues.size()];
+            this.texts = new String[doc.cues.size()];
+            this.writer = Files.newBufferedWriter(outputFile.toPath());
+        }
 
-        for (int i = 0; i < totalBlocks; i += chunkSize) {
-            int end = Math.min(i + chunkSize, totalBlocks);
-            StringBuilder chunkBuilder = new StringBuilder();
-            // Gom các block thành 1 đoạn lớn, giữ nguyên số thứ tự và timestamp
-            for (int j = i; j < end; j++) {
-                chunkBuilder.append(subtitleBlocks[j].trim()).append("\n\n");
+        synchronized void sameAs(int block, int first) {
+            if (texts[first] != null) {
+                // Block đầu đã có bản dịch (từ nhật ký)
+                deliver(block, texts[first]);
+                return;
+            }
+            duplicates.computeIfAbsent(first, k -> new ArrayList<>()).add(block);
+        }
+
+        synchronized void deliver(int block, String text) {
+            if (output[block] != null) return;
+            texts[block] = text;
+            output[block] = doc.cues.get(block).withText(text);
+            if (listener != null && !text.isEmpty()) {
+                try {
+                    listener.onCueTranslated(inputFile, block, doc.cues.get(block).number, text);
+                } catch (RuntimeException e) {
+                    log("Lỗi CueListener: " + e);
+                }
+            }
+            List<Integer> same = duplicates.get(block);
+            if (same != null) {
+                for (int duplicate : same) deliver(duplicate, text);
             }
+            drain();
+        }
 
-            String chunk = chunkBuilder.toString().trim();
-            String translatedChunk;
+        // Ghi các block liên tiếp đã xong tính từ block chưa ghi đầu tiên
+        private void drain() {
+            if (writeError != null) return;
             try {
-                translatedChunk = translateChunk(chunk, targetLanguage);
-            } catch (Exception e) {
-                log("Lỗi dịch chunk: " + e.getMessage());
-                // Nếu lỗi, giữ nguyên đoạn gốc
-                translatedChunk = chunk;
+                boolean wrote = false;
+                while (written < output.length && output[written] != null) {
+                    writer.write(output[written]);
+                    written++;
+                    wrote = true;
+                }
+                if (wrote) writer.flush();
+            } catch (IOException e) {
+                writeError = e;
             }
+        }
 
-            // Ghép vào kết quả cuối
-            translatedContent.append(translatedChunk).append("\n\n");
-            // Delay nhẹ để tránh rate limit
-            try { Thread.sleep(1000); } catch (InterruptedException ignored) {}
+        @Override
+        public synchronized void close() throws IOException {
+            // Block dịch lỗi (hoặc trùng với block lỗi) giữ nguyên text gốc
+            for (int i = 0; i < output.length; i++) {
+                if (output[i] == null) output[i] = doc.cues.get(i).original();
+            }
+            drain();
+            if (writeError == null && written == output.length) {
+                try {
+                    writer.write(doc.trailer);
+                } catch (IOException e) {
+                    writeError = e;
+                }
+            }
+            writer.close();
+            if (writeError != null) throw writeError;
         }
+    }
 
-        Files.writeString(outputFile.toPath(), translatedContent.toString().trim());
+    /**
+     * true (mặc định): chỉ gửi text của cue dưới dạng mảng JSON và ghép lại SRT tại chỗ;
+     * false: gửi nguyên block SRT và để model chép lại số thứ tự, timestamp
+     */
+    public void setTextOnly(boolean textOnly) {
+        this.textOnly = textOnly;
     }
-    
+
+    public boolean isTextOnly() {
+        return textOnly;
+    }
+
     /**
-     * Dịch một chunk subtitle (nhiều block) và trả về kết quả đã format lại đúng chuẩn SRT
+     * Gửi request dịch SRT với stream: true: cue được ghi ra file và báo cho CueListener ngay khi
+     * model trả xong text của nó, không chờ hết chunk
      */
-    private String translateChunk(String chunk, String targetLanguage) throws IOException, InterruptedException {
-        String languageName = targetLanguage.equals("en") ? "English" : "Vietnamese";
-        String prompt = String.format(
-            "You are a professional subtitle translator. " +
-            "Translate the following SRT subtitles to %s. " +
-            "Keep the subtitle format (number, timestamp, line breaks). " +
-            "Do not add any explanations, just return the translated SRT content:\n\n%s",
-            languageName, chunk
-        );
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
 
-        log("Sending chunk for translation using model: " + modelName + " (" + chunk.length() + " chars)");
-        
-        // Tạo JSON request
-        JsonObject requestBody = new JsonObject();
-        requestBody.addProperty("model", modelName); // Sử dụng model đã chọn
-        requestBody.addProperty("max_tokens", 2048);
-        requestBody.addProperty("temperature", 0.3);
-
-        JsonArray messages = new JsonArray();
-        JsonObject message = new JsonObject();
-        message.addProperty("role", "user");
-        message.addProperty("content", prompt);
-        messages.add(message);
-        requestBody.add("messages", messages);
-        
-        log("Request payload created");
+    public boolean isStreaming() {
+        return streaming;
+    }
 
-        // Gửi request
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(OPENAI_API_URL))
-                .header("Content-Type", "application/json")
-                .header("Authorization", "Bearer " + apiKey)
-                .POST(HttpRequest.BodyPublishers.ofString(requestBody.toString()))
-                .build();
+    /**
+     * Nhận từng cue của translateSrtFile ngay khi dịch xong (kể cả cue lấy từ bộ nhớ dịch).
+     * Được gọi từ thread mạng, giao diện phải tự chuyển sang thread UI.
+     */
+    public interface CueListener {
+        /**
+         * @param position vị trí cue trong file (từ 0)
+         * @param cueNumber số thứ tự SRT, identifier VTT hoặc số dòng lời LRC (từ 1), "" nếu không có
+         */
+        void onCueTranslated(File inputFile, int position, String cueNumber, String translatedText);
+    }
 
-        log("Sending request to OpenAI API...");
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    public void setCueListener(CueListener listener) {
+        this.cueListener = listener;
+    }
 
-        if (response.statusCode() != 200) {
-            String error = "OpenAI API error: " + response.statusCode() + " - " + response.body();
-            log("API ERROR: " + error);
-            throw new IOException(error);
+    /**
+     * Bộ nhớ dịch được tra trước khi gọi API, null để luôn gọi API
+     */
+    public void setMemory(TranslationMemory memory) {
+        this.memory = memory;
+    }
+
+    public TranslationMemory getMemory() {
+        return memory;
+    }
+
+    // Lỗi đọc bộ nhớ dịch không làm hỏng việc dịch, chỉ coi như chưa có
+    private String lookup(TranslationMemory memory, String source, String targetLanguage) {
+        if (memory == null || source.trim().isEmpty()) return null;
+        try {
+            return memory.get(source, targetLanguage, modelName);
+        } catch (IOException | RuntimeException e) {
+            log("Không đọc được bộ nhớ dịch: " + e);
+            return null;
         }
+    }
 
-        log("Response received (status: " + response.statusCode() + ")");
-        
-        // Parse response
-        JsonObject responseJson = JsonParser.parseString(response.body()).getAsJsonObject();
-        JsonArray choices = responseJson.getAsJsonArray("choices");
+    private void remember(TranslationMemory memory, String source, String targetLanguage, String translated) {
+        if (memory == null || translated.isEmpty()) return;
+        try {
+            memory.put(source, targetLanguage, modelName, translated);
+        } catch (IOException | RuntimeException e) {
+            log("Không ghi được bộ nhớ dịch: " + e);
+        }
+    }
+
+    /**
+     * Một block SRT trong kết quả của model khi gửi nguyên block (setTextOnly(false))
+     */
+    private static final class SrtBlock {
+        final String header;
+        final String text;
+
+        SrtBlock(String raw) {
+            String[] lines = raw.split("\n", -1);
+            int headerLines = 0;
+            if (headerLines < lines.length && lines[headerLines].trim().matches("\\d+")) headerLines++;
+            if (headerLines < lines.length && lines[headerLines].contains("-->")) headerLines++;
+            this.header = String.join("\n", Arrays.asList(lines).subList(0, headerLines));
+            this.text = String.join("\n", Arrays.asList(lines).subList(headerLines, lines.length)).trim();
+        }
+
+        // Số thứ tự SRT (dòng đầu), "" nếu block không có
+        String number() {
+            int end = header.indexOf('\n');
+            String first = (end < 0 ? header : header.substring(0, end)).trim();
+            return first.matches("\\d+") ? first : "";
+        }
+    }
+
+    /**
+     * Số request dịch chunk tối đa chạy cùng lúc cho mỗi file
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Dịch một chunk, lỗi mạng hoặc 5xx thì thử lại sau một khoảng chờ tăng dần, 429 thì thử lại
+     * sau Retry-After, mà không giữ thread nào (các chunk khác vẫn chạy bình thường).
+     * Response bị cắt ở max_tokens hoặc không khớp số block thì chia đôi chunk và dịch lại từng nửa.
+     * @return text đã dịch của từng block trong chunk, đúng thứ tự
+     */
+    private CompletableFuture<List<String>> translateChunkWithRetry(SubtitleChunker chunker, SubtitleChunker.Chunk chunk,
+                                                                    String targetLanguage, boolean textOnly, CueSink sink) {
+        CompletableFuture<List<String>> result = new CompletableFuture<>();
+        attemptChunk(chunker, chunk, targetLanguage, textOnly, sink, 1, result);
+        return result;
+    }
 
-        if (choices.size() == 0) {
-            log("ERROR: No translation received from OpenAI");
-            throw new IOException("No translation received from OpenAI");
+    private void attemptChunk(SubtitleChunker chunker, SubtitleChunker.Chunk chunk, String targetLanguage,
+                              boolean textOnly, CueSink sink, int attempt, CompletableFuture<List<String>> result) {
+        if (result.isCancelled()) {
+            return;
         }
+        translateChunkAsync(chunk, targetLanguage, textOnly, sink).whenComplete((translated, error) -> {
+            if (error == null) {
+                result.complete(translated);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if ((cause instanceof TruncatedException || cause instanceof MismatchException)
+                    && chunk.getBlockCount() > 1) {
+                List<SubtitleChunker.Chunk> halves = chunker.halve(chunk);
+                log("Chunk " + chunk.getBlockCount() + " block: " + cause.getMessage() + ", chia đôi và dịch lại");
+                int offset = halves.get(0).getBlockCount();
+                CueSink secondSink = sink == null ? null : (position, text) -> sink.onCue(offset + position, text);
+                translateChunkWithRetry(chunker, halves.get(0), targetLanguage, textOnly, sink)
+                        .thenCombine(translateChunkWithRetry(chunker, halves.get(1), targetLanguage, textOnly, secondSink),
+                                (first, second) -> {
+                                    List<String> joined = new ArrayList<>(first);
+                                    joined.addAll(second);
+                                    return joined;
+                                })
+                        .whenComplete((joined, halfError) -> {
+                            if (halfError == null) {
+                                result.complete(joined);
+                            } else {
+                                result.completeExceptionally(halfError instanceof CompletionException
+                                        && halfError.getCause() != null ? halfError.getCause() : halfError);
+                            }
+                        });
+                return;
+            }
+            boolean rateLimited = cause instanceof ApiException && ((ApiException) cause).statusCode == 429;
+            int maxAttempts = rateLimited ? MAX_RATE_LIMITED_ATTEMPTS : MAX_ATTEMPTS;
+            if (attempt >= maxAttempts || !isRetryable(cause)) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            if (rateLimited) {
+                // Rate limiter đã dừng theo Retry-After, lần gửi lại sẽ tự chờ
+                attemptChunk(chunker, chunk, targetLanguage, textOnly, sink, attempt + 1, result);
+                return;
+            }
+            long delay = RETRY_BASE_DELAY_MS << (attempt - 1);
+            log("Chunk lỗi (" + cause.getMessage() + "), thử lại lần " + (attempt + 1) + " sau " + delay + " ms");
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                    .execute(() -> attemptChunk(chunker, chunk, targetLanguage, textOnly, sink, attempt + 1, result));
+        });
+    }
 
-        String translatedText = choices.get(0).getAsJsonObject()
-                .getAsJsonObject("message")
-                .get("content").getAsString().trim();
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof TruncatedException || error instanceof MismatchException) {
+            return false; // Gửi lại nguyên chunk thường vẫn bị cắt/lệch, chỉ chia nhỏ mới giúp
+        }
+        if (error instanceof ApiException) {
+            int status = ((ApiException) error).statusCode;
+            return status == 429 || status >= 500;
+        }
+        return error instanceof IOException; // Lỗi mạng, timeout
+    }
+
+    /**
+     * Dịch một chunk subtitle (nhiều block) và trả về text đã dịch của từng block.
+     * Có sink thì gửi request stream (SSE) và báo từng cue cho sink ngay khi text của nó xong.
+     */
+    private CompletableFuture<List<String>> translateChunkAsync(SubtitleChunker.Chunk chunk, String targetLanguage,
+                                                                boolean textOnly, CueSink sink) {
+        String prompt = chunkPrompt(chunk, targetLanguage, textOnly);
+        log("Sending chunk for translation using model: " + modelName + " (" + chunk.getBlockCount() + " blocks, "
+                + prompt.length() + " chars, max_tokens " + chunk.getMaxTokens() + ")");
         
+        JsonObject requestBody = chunkRequestBody(chunk, prompt, sink != null);
+
+        // Giữ chỗ trong rate limiter dùng chung, nếu phải chờ thì hẹn giờ gửi thay vì chặn thread
+        RateLimiter limiter = rateLimiter();
+        int estimatedTokens = estimateTokens(prompt, chunk.getMaxTokens());
+        long wait = limiter.reserve(estimatedTokens);
+        HttpRequest request = buildRequest(requestBody);
+        // Stream: đọc từng dòng SSE khi tới; response lỗi (không phải 200) vẫn đọc cả body JSON
+        EventStream stream = sink == null ? null
+                : new EventStream(backend, textOnly ? new ArrayItemScanner(chunk.getBlockCount(), sink)
+                                           : new SrtBlockScanner(chunk.getBlocks(), sink));
+        HttpResponse.BodyHandler<String> handler = stream == null ? HttpResponse.BodyHandlers.ofString()
+                : info -> info.statusCode() == 200
+                        ? HttpResponse.BodySubscribers.fromLineSubscriber(stream, EventStream::content, StandardCharsets.UTF_8, "\n")
+                        : HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+        CompletableFuture<HttpResponse<String>> sent;
+        if (wait > 0) {
+            log("Rate limit: chờ " + wait + " ms trước khi gửi chunk");
+            sent = CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS))
+                    .thenCompose(ignored -> httpClient.sendAsync(request, handler));
+        } else {
+            sent = httpClient.sendAsync(request, handler);
+        }
+
+        return sent.thenApply(response -> {
+                    if (response.statusCode() == 429) {
+                        long retryAfter = limiter.onRateLimited(response.headers());
+                        log("API rate limit (429), tạm dừng " + retryAfter + " ms");
+                        throw new CompletionException(new ApiException(429, "OpenAI API rate limit: " + response.body()));
+                    }
+                    if (response.statusCode() != 200) {
+                        String error = "OpenAI API error: " + response.statusCode() + " - " + response.body();
+                        log("API ERROR: " + error);
+                        throw new CompletionException(new ApiException(response.statusCode(), error));
+                    }
+
+                    limiter.onResponse(response.headers());
+
+                    String translatedText;
+                    String finishReason;
+                    if (stream != null) {
+                        if (stream.error != null) {
+                            throw new CompletionException(new IOException("Stream error: " + stream.error));
+                        }
+                        translatedText = response.body().trim();
+                        finishReason = stream.finishReason;
+                        limiter.adjust(estimatedTokens, stream.totalTokens);
+                        if (!stream.done && finishReason == null) {
+                            throw new CompletionException(new IOException("Stream ended before [DONE]"));
+                        }
+                    } else {
+                        // Parse response
+                        TranslationBackend.Completion completion;
+                        try {
+                            completion = backend.readCompletion(JsonParser.parseString(response.body()).getAsJsonObject());
+                        } catch (IOException e) {
+                            log("ERROR: " + e.getMessage());
+                            throw new CompletionException(e);
+                        }
+                        limiter.adjust(estimatedTokens, completion.getTotalTokens());
+                        translatedText = completion.getContent().trim();
+                        finishReason = completion.getFinishReason();
+                    }
+                    try {
+                        return chunkTexts(translatedText, finishReason, chunk.getBlockCount(), chunk.getMaxTokens(),
+                                textOnly);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    /**
+     * Đọc text đã dịch của từng block từ một response chat completions (không stream)
+     */
+    List<String> readChunkResponse(JsonObject responseJson, int blockCount, int maxTokens, boolean textOnly)
+            throws IOException {
+        TranslationBackend.Completion completion = backend.readCompletion(responseJson);
+        return chunkTexts(completion.getContent().trim(), completion.getFinishReason(), blockCount, maxTokens,
+                textOnly);
+    }
+
+    private List<String> chunkTexts(String translatedText, String finishReason, int blockCount, int maxTokens,
+                                    boolean textOnly) throws IOException {
+        if ("length".equals(finishReason)) {
+            throw new TruncatedException(maxTokens);
+        }
+
         log("Translation received successfully (" + translatedText.length() + " chars)");
-        return translatedText;
+        List<String> texts = textOnly
+                ? parseTextArray(translatedText, blockCount)
+                : parseSrtBlocks(translatedText, blockCount);
+        if (texts == null) {
+            throw new MismatchException(blockCount);
+        }
+        return texts;
     }
-    
+
+    private String chunkPrompt(SubtitleChunker.Chunk chunk, String targetLanguage, boolean textOnly) {
+        String languageName = targetLanguage.equals("en") ? "English" : "Vietnamese";
+        String prompt;
+        if (textOnly) {
+            // Mảng JSON đánh số, không có số thứ tự SRT hay timestamp
+            JsonArray items = new JsonArray();
+            List<String> texts = chunk.getBlocks();
+            for (int i = 0; i < texts.size(); i++) {
+                JsonObject item = new JsonObject();
+                item.addProperty("id", i + 1);
+                item.addProperty("text", texts.get(i));
+                items.add(item);
+            }
+            prompt = String.format(
+                "You are a professional subtitle translator. " +
+                "Translate the \"text\" of every item in the following JSON array to %s. " +
+                "Reply with only a JSON array with exactly the same ids, like [{\"id\":1,\"text\":\"...\"}]. " +
+                "Do not merge, split or skip items, keep line breaks inside a text as \\n:\n\n%s",
+                languageName, items.toString()
+            );
+        } else {
+            prompt = String.format(
+                "You are a professional subtitle translator. " +
+                "Translate the following SRT subtitles to %s. " +
+                "Keep the subtitle format (number, timestamp, line breaks). " +
+                "Do not add any explanations, just return the translated SRT content:\n\n%s",
+                languageName, chunk.getText()
+            );
+        }
+        return prompt;
+    }
+
+    // Tạo JSON request
+    private JsonObject chunkRequestBody(SubtitleChunker.Chunk chunk, String prompt, boolean stream) {
+        return backend.chatRequest(modelName, prompt, chunk.getMaxTokens(), stream); // Sử dụng model đã chọn
+    }
+
+    /**
+     * Đọc mảng [{"id":1,"text":"..."}] (hoặc mảng chuỗi) trong response
+     * @return text theo thứ tự id, null nếu không đọc được hoặc thiếu/thừa phần tử
+     */
+    static List<String> parseTextArray(String content, int expected) {
+        // Model đôi khi bọc trong ```json ... ``` hoặc một object
+        int start = content.indexOf('[');
+        int end = content.lastIndexOf(']');
+        if (start < 0 || end < start) return null;
+        JsonArray array;
+        try {
+            JsonElement parsed = JsonParser.parseString(content.substring(start, end + 1));
+            if (!parsed.isJsonArray()) return null;
+            array = parsed.getAsJsonArray();
+        } catch (JsonParseException e) {
+            return null;
+        }
+        if (array.size() != expected) return null;
+
+        String[] texts = new String[expected];
+        for (int i = 0; i < array.size(); i++) {
+            JsonElement element = array.get(i);
+            int position = i;
+            String text;
+            if (element.isJsonObject()) {
+                JsonObject item = element.getAsJsonObject();
+                JsonElement id = item.get("id");
+                JsonElement value = item.get("text");
+                if (value == null || !value.isJsonPrimitive()) return null;
+                if (id != null && id.isJsonPrimitive() && id.getAsJsonPrimitive().isNumber()) {
+                    position = id.getAsInt() - 1;
+                }
+                text = value.getAsString();
+            } else if (element.isJsonPrimitive()) {
+                text = element.getAsString();
+            } else {
+                return null;
+            }
+            if (position < 0 || position >= expected || texts[position] != null) return null;
+            texts[position] = text.trim();
+        }
+        return Arrays.asList(texts);
+    }
+
+    /**
+     * Tách SRT đã dịch thành text của từng block (bỏ số thứ tự, timestamp do model chép lại)
+     * @return null nếu số block khác số block đã gửi
+     */
+    private static List<String> parseSrtBlocks(String content, int expected) {
+        List<String> texts = new ArrayList<>(expected);
+        for (String part : content.replace("\r\n", "\n").split("\n\n")) {
+            if (!part.trim().isEmpty()) texts.add(new SrtBlock(part.trim()).text);
+        }
+        return texts.size() == expected ? texts : null;
+    }
+
+    private RateLimiter rateLimiter() {
+        return RateLimiter.shared(backend.getEndpoint(), modelName);
+    }
+
+    // Ước lượng token của request như API tính quota: prompt + max_tokens
+    private static int estimateTokens(String prompt, int maxTokens) {
+        return SubtitleChunker.estimateTokens(prompt) + maxTokens;
+    }
+
+    /**
+     * Response dừng ở max_tokens nên bản dịch bị thiếu cuối
+     */
+    static class TruncatedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        TruncatedException(int maxTokens) {
+            super("Translation truncated at max_tokens " + maxTokens);
+        }
+    }
+
+    /**
+     * Đọc response stream (server-sent events) của chat completions: ghép các delta.content lại
+     * và đưa cho scanner để tách những cue đã xong
+     */
+    private static final class EventStream implements Flow.Subscriber<String> {
+        private final StringBuilder content = new StringBuilder();
+        private final TranslationBackend backend;
+        private final ContentScanner scanner;
+        volatile String finishReason;
+        volatile int totalTokens;
+        volatile boolean done;
+        volatile String error;
+
+        EventStream(TranslationBackend backend, ContentScanner scanner) {
+            this.backend = backend;
+            this.scanner = scanner;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            // Bỏ qua dòng trống giữa các event, comment ": ..." và "event: ..."
+            if (!line.startsWith("data:")) return;
+            String data = line.substring(5).trim();
+            if (data.equals("[DONE]")) {
+                done = true;
+                return;
+            }
+            JsonObject event;
+            try {
+                event = JsonParser.parseString(data).getAsJsonObject();
+            } catch (RuntimeException e) {
+                return;
+            }
+            TranslationBackend.Completion delta;
+            try {
+                delta = backend.readStreamEvent(event);
+            } catch (IOException e) {
+                error = e.getMessage();
+                return;
+            }
+            if (delta.getTotalTokens() > 0) totalTokens = delta.getTotalTokens();
+            if (delta.getContent() != null) {
+                content.append(delta.getContent());
+                scanner.scan(content);
+            }
+            if (delta.getFinishReason() != null) {
+                finishReason = delta.getFinishReason();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // sendAsync tự hoàn thành với lỗi này
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        String content() {
+            return content.toString();
+        }
+    }
+
+    /**
+     * Tìm các cue đã xong trong phần text đã nhận (gọi lại mỗi khi text dài thêm)
+     */
+    private interface ContentScanner {
+        void scan(CharSequence content);
+    }
+
+    /**
+     * Cue xong khi object {"id":..,"text":..} của nó đóng ngoặc
+     */
+    private static final class ArrayItemScanner implements ContentScanner {
+        private final boolean[] seen;
+        private final CueSink sink;
+        private int position = 0;
+        private boolean inArray = false;
+
+        ArrayItemScanner(int expected, CueSink sink) {
+            this.seen = new boolean[expected];
+            this.sink = sink;
+        }
+
+        @Override
+        public void scan(CharSequence content) {
+            if (!inArray) {
+                int bracket = indexOf(content, '[', position);
+                if (bracket < 0) return;
+                position = bracket + 1;
+                inArray = true;
+            }
+            while (true) {
+                int open = indexOf(content, '{', position);
+                if (open < 0) return;
+                int close = matchingBrace(content, open);
+                if (close < 0) return;
+                position = close + 1;
+                try {
+                    JsonObject item = JsonParser.parseString(content.subSequence(open, close + 1).toString())
+                            .getAsJsonObject();
+                    int index = item.get("id").getAsInt() - 1;
+                    String text = item.get("text").getAsString();
+                    if (index >= 0 && index < seen.length && !seen[index]) {
+                        seen[index] = true;
+                        sink.onCue(index, text.trim());
+                    }
+                } catch (RuntimeException ignored) {
+                    // Phần tử lạ: để bước kiểm tra cuối chunk xử lý
+                }
+            }
+        }
+
+        private static int indexOf(CharSequence text, char c, int from) {
+            for (int i = from; i < text.length(); i++) {
+                if (text.charAt(i) == c) return i;
+            }
+            return -1;
+        }
+
+        // Vị trí '}' đóng object mở ở open, bỏ qua ngoặc trong chuỗi; -1 nếu chưa nhận đủ
+        private static int matchingBrace(CharSequence text, int open) {
+            int depth = 0;
+            boolean inString = false;
+            for (int i = open; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (inString) {
+                    if (c == '\\') i++;
+                    else if (c == '"') inString = false;
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '{') {
+                    depth++;
+                } else if (c == '}' && --depth == 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Chế độ gửi nguyên block SRT: block xong khi gặp dòng trống, vị trí tìm theo số thứ tự SRT
+     * mà model chép lại (block không có số thứ tự chờ bước kiểm tra cuối chunk)
+     */
+    private static final class SrtBlockScanner implements ContentScanner {
+        private final Map<String, Integer> positionByNumber = new HashMap<>();
+        private final boolean[] seen;
+        private final CueSink sink;
+        private int position = 0;
+        // Đã tìm "\n\n" tới đây, delta sau tìm tiếp thay vì quét lại block đang nhận dở
+        private int searched = 0;
+
+        SrtBlockScanner(List<String> sentBlocks, CueSink sink) {
+            for (int i = 0; i < sentBlocks.size(); i++) {
+                String number = new SrtBlock(sentBlocks.get(i)).number();
+                if (!number.isEmpty()) positionByNumber.putIfAbsent(number, i);
+            }
+            this.seen = new boolean[sentBlocks.size()];
+            this.sink = sink;
+        }
+
+        @Override
+        public void scan(CharSequence content) {
+            while (true) {
+                int separator = blankLine(content, Math.max(position, searched));
+                if (separator < 0) {
+                    searched = Math.max(position, content.length() - 1);
+                    return;
+                }
+                String block = content.subSequence(position, separator).toString().trim();
+                position = separator + 2;
+                if (block.isEmpty()) continue;
+                SrtBlock parsed = new SrtBlock(block);
+                Integer index = positionByNumber.get(parsed.number());
+                if (index != null && !seen[index]) {
+                    seen[index] = true;
+                    sink.onCue(index, parsed.text);
+                }
+            }
+        }
+
+        // Vị trí "\n\n" đầu tiên từ from, đọc thẳng trên CharSequence (không chép cả response)
+        private static int blankLine(CharSequence text, int from) {
+            for (int i = from; i + 1 < text.length(); i++) {
+                if (text.charAt(i) == '\n' && text.charAt(i + 1) == '\n') return i;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Response không tách được thành đúng số block đã gửi
+     */
+    static class MismatchException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        MismatchException(int expected) {
+            super("Translation does not match the " + expected + " blocks sent");
+        }
+    }
+
+    /**
+     * Lỗi HTTP từ API, giữ lại status code để quyết định có thử lại hay không
+     */
+    static class ApiException extends IOException {
+        private static final long serialVersionUID = 1L;
+        final int statusCode;
+
+        ApiException(int statusCode, String message) {
+            super(message);
+            this.statusCode = statusCode;
+        }
+    }
+
+    /**
+     * Gửi request qua client dùng chung, có timeout cho cả request
+     */
+    private HttpResponse<String> post(JsonObject requestBody) throws IOException, InterruptedException {
+        return httpClient.send(buildRequest(requestBody), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest buildRequest(JsonObject requestBody) {
+        return backend.newRequest(backend.getEndpoint())
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(requestBody.toString()))
+                .build();
+    }
+
+    /**
+     * Địa chỉ một API khác trên cùng server (files, batches...), tính từ endpoint chat completions
+     */
+    URI apiUri(String path) {
+        String url = backend.getEndpoint().toString();
+        int cut = url.lastIndexOf("/chat/completions");
+        String base = cut >= 0 ? url.substring(0, cut) : url.substring(0, url.lastIndexOf('/'));
+        return URI.create(base + "/" + path);
+    }
+
+    // Request tới API khác trên cùng server, cùng key và timeout
+    HttpRequest.Builder apiRequest(String path) {
+        return backend.newRequest(apiUri(path))
+                .timeout(requestTimeout);
+    }
+
+    <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        return httpClient.send(request, handler);
+    }
+
     // Phương thức tiện ích để lấy danh sách các model có sẵn
     public static String[] getAvailableModels() {
         return new String[] {
@@ -266,7 +1346,7 @@ public class Translator {
     }
 
     // Log message
-    private void log(String message) {
+    void log(String message) {
         if (logCallback != null) {
             logCallback.onLog(message);
         }
@@ -0,0 +1,688 @@
+package ui;
+
+import logic.BatchConverter;
+import logic.BatchTranslation;
+import logic.ConversionManifest;
+import logic.Converter;
+import logic.HotFolderWatcher;
+import logic.OpenAiBackend;
+import logic.StubBackend;
+import logic.SubtitleFormat;
+import logic.TranslationMemory;
+import logic.TranslationBackend;
+import logic.Translator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Chế độ dòng lệnh không cần giao diện, dùng cho server headless và shell pipeline.
+ *
+ * Class này chỉ dùng logic.* và java.base/java.net.http, không được đụng tới javafx.* hay
+ * javax.swing.* để JVM không phải nạp bộ công cụ giao diện nào khi khởi động.
+ *
+ * <pre>
+ *   App convert --to lrc [--out dir] [--jobs N] [--rename] inputs...
+ *   App translate --lang vi [--model gpt-4o-mini] [--key sk-...] [--out dir] [--jobs N] inputs...
+ *   (convert/translate thêm --manifest file để bỏ qua các file không đổi từ lần chạy trước)
+ *   (translate dùng lại bản dịch cũ trong translation_memory.tm, đổi bằng --memory file hoặc tắt bằng --no-memory)
+ *   (translate --batch-api gửi mọi chunk qua Batch API rồi chờ kết quả, chạy lại lệnh thì chờ tiếp batch cũ)
+ *   App watch --to lrc [--lang vi] [--out dir] [--jobs N] [--debounce ms] folders...
+ * </pre>
+ *
+ * Mỗi file tạo ra được in một dòng ra stdout, lỗi in ra stderr.
+ * Exit code: 0 thành công, 1 có file lỗi, 2 sai cú pháp.
+ *
+ * Đường chạy của convert (không có --manifest) tới file đầu tiên cố ý không dùng lambda hay nối
+ * chuỗi bằng '+' (javac biên dịch chúng thành invokedynamic, lần gọi đầu tốn vài chục ms để sinh
+ * class), vì lệnh convert được gọi hàng nghìn lần mỗi ngày. translate, watch và --manifest
+ * không giữ quy tắc này: thời gian đó không đáng kể so với request API hay việc theo dõi thư mục.
+ */
+public final class CommandLineApp {
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_FAILED = 1;
+    public static final int EXIT_USAGE = 2;
+
+    private static final String CONFIG_FILE = "user_config.properties";
+
+    private final PrintStream out;
+    private final PrintStream err;
+
+    private String command;
+    // Tùy chọn chung
+    private File outputDir;
+    private int jobs = 1;
+    private boolean rename = false;
+    private boolean timing = false;
+    // convert
+    private SubtitleFormat targetFormat;
+    // translate
+    private String targetLanguage;
+    private String modelName = "gpt-4o-mini";
+    private String apiKey;
+    private URI endpoint = URI.create(Translator.OPENAI_API_URL);
+    // --backend stub: server giả lập chạy trong tiến trình, null khi gọi API thật
+    private StubBackend.Options stubOptions;
+    private StubBackend stub;
+    private int inFlight = Translator.DEFAULT_MAX_IN_FLIGHT;
+    private boolean sendSrt = false;
+    private boolean streaming = false;
+    // --batch-api: dịch qua Batch API thay vì gọi trực tiếp
+    private boolean batchApi = false;
+    private File batchStateFile = new File(BatchTranslation.DEFAULT_STATE_FILE);
+    private long pollMillis = BatchTranslation.DEFAULT_POLL_MILLIS;
+    // null khi --no-memory, hoặc --backend stub mà không có --memory
+    private File memoryFile = new File(TranslationMemory.DEFAULT_FILE);
+    private boolean memoryOption = false;
+    // Dùng chung cho mọi file để giữ kết nối tới API
+    private Translator translator;
+    // watch
+    private long debounceMillis = HotFolderWatcher.DEFAULT_QUIET_MILLIS;
+    private ConversionManifest manifest;
+    private final List<File> inputs = new ArrayList<>();
+
+    private long startNanos;
+    private volatile long firstOutputNanos = 0;
+
+    private CommandLineApp(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * App.main chuyển sang chế độ dòng lệnh khi tham số đầu tiên là một lệnh
+     */
+    public static boolean isCommand(String arg) {
+        return "convert".equals(arg) || "translate".equals(arg) || "watch".equals(arg)
+                || "help".equals(arg) || "--help".equals(arg) || "-h".equals(arg);
+    }
+
+    /**
+     * Điểm vào riêng cho máy không có JavaFX (chỉ cần biên dịch logic/*.java và class này)
+     */
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    public static int run(String[] args) {
+        return new CommandLineApp(System.out, System.err).execute(args);
+    }
+
+    private int execute(String[] args) {
+        startNanos = System.nanoTime();
+        if (args.length == 0 || !isCommand(args[0])) {
+            printUsage(err);
+            return EXIT_USAGE;
+        }
+        command = args[0];
+        if (!command.equals("convert") && !command.equals("translate") && !command.equals("watch")) {
+            printUsage(out);
+            return EXIT_OK;
+        }
+
+        String error = parseOptions(args);
+        if (error != null) {
+            err.println("Error: " + error);
+            printUsage(err);
+            return EXIT_USAGE;
+        }
+
+        if (stubOptions != null) {
+            try {
+                stub = StubBackend.start(stubOptions);
+            } catch (IOException e) {
+                err.println("Error: cannot start stub backend: " + e.getMessage());
+                return EXIT_FAILED;
+            }
+        }
+
+        if (command.equals("watch")) {
+            return runWatch();
+        }
+        int failed;
+        try {
+            failed = runBatch();
+        } finally {
+            closeMemory();
+            if (stub != null) {
+                err.println(stub.getStats());
+                stub.close();
+            }
+        }
+
+        if (timing) {
+            long total = (System.nanoTime() - startNanos) / 1_000_000;
+            long first = firstOutputNanos == 0 ? -1 : (firstOutputNanos - startNanos) / 1_000_000;
+            err.println("timing: first output " + first + " ms, total " + total + " ms (from main)");
+        }
+        return failed == 0 ? EXIT_OK : EXIT_FAILED;
+    }
+
+    // Trả về thông báo lỗi, hoặc null nếu hợp lệ
+    private String parseOptions(String[] args) {
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--")) {
+                for (i++; i < args.length; i++) inputs.add(new File(args[i]));
+                break;
+            }
+            if (!arg.startsWith("--")) {
+                inputs.add(new File(arg));
+                continue;
+            }
+            if (arg.equals("--rename")) {
+                rename = true;
+                continue;
+            }
+            if (arg.equals("--timing")) {
+                timing = true;
+                continue;
+            }
+            if (arg.equals("--send-srt")) {
+                sendSrt = true;
+                continue;
+            }
+            if (arg.equals("--batch-api")) {
+                batchApi = true;
+                continue;
+            }
+            if (arg.equals("--stream")) {
+                streaming = true;
+                continue;
+            }
+            if (arg.equals("--no-memory")) {
+                memoryFile = null;
+                memoryOption = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                return "Missing value for " + arg;
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--out":
+                    outputDir = new File(value);
+                    break;
+                case "--jobs":
+                    try {
+                        jobs = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        return "Invalid --jobs value: " + value;
+                    }
+                    if (jobs < 1) jobs = Runtime.getRuntime().availableProcessors();
+                    break;
+                case "--to":
+                    targetFormat = formatByName(value);
+                    if (targetFormat == null) return "Unsupported format: " + value;
+                    break;
+                case "--lang":
+                    targetLanguage = value.toLowerCase();
+                    if (!targetLanguage.equals("en") && !targetLanguage.equals("vi")) {
+                        return "Unsupported language: " + value + " (en, vi)";
+                    }
+                    break;
+                case "--model":
+                    modelName = value;
+                    break;
+                case "--key":
+                    apiKey = value;
+                    break;
+                case "--in-flight":
+                    try {
+                        inFlight = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        return "Invalid --in-flight value: " + value;
+                    }
+                    break;
+                case "--endpoint":
+                    try {
+                        endpoint = new URI(value);
+                    } catch (URISyntaxException e) {
+                        return "Invalid --endpoint value: " + value;
+                    }
+                    break;
+                case "--backend":
+                    if (value.equals("openai")) {
+                        stubOptions = null;
+                    } else if (value.equals("stub") || value.startsWith("stub:")) {
+                        try {
+                            stubOptions = StubBackend.Options.parse(value.substring(Math.min(value.length(), 5)));
+                        } catch (IllegalArgumentException e) {
+                            return e.getMessage();
+                        }
+                    } else {
+                        return "Unknown backend: " + value + " (openai, stub[:options])";
+                    }
+                    break;
+                case "--memory":
+                    memoryFile = new File(value);
+                    memoryOption = true;
+                    break;
+                case "--batch-state":
+                    batchStateFile = new File(value);
+                    break;
+                case "--poll":
+                    try {
+                        pollMillis = Long.parseLong(value) * 1000;
+                    } catch (NumberFormatException e) {
+                        return "Invalid --poll value: " + value;
+                    }
+                    break;
+                case "--manifest":
+                    manifest = ConversionManifest.load(new File(value));
+                    break;
+                case "--debounce":
+                    try {
+                        debounceMillis = Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        return "Invalid --debounce value: " + value;
+                    }
+                    break;
+                default:
+                    return "Unknown option: " + arg;
+            }
+        }
+
+        if (!command.equals("translate") && targetFormat == null) {
+            return command + " requires --to srt|vtt|lrc";
+        }
+        // watch chỉ dịch khi có --lang
+        if (command.equals("translate") || (command.equals("watch") && targetLanguage != null)) {
+            if (targetLanguage == null) return "translate requires --lang en|vi";
+            if (apiKey == null && stubOptions == null) apiKey = loadApiKey();
+            if ((apiKey == null || apiKey.isEmpty()) && stubOptions == null) {
+                return "No API key: use --key, OPENAI_API_KEY or " + CONFIG_FILE;
+            }
+        }
+        // "Bản dịch" giả lập không được lẫn vào bộ nhớ dịch thật (key không có endpoint)
+        if (stubOptions != null && !memoryOption) memoryFile = null;
+        if (inputs.isEmpty()) {
+            return "No input files";
+        }
+        if (outputDir != null && !outputDir.isDirectory() && !outputDir.mkdirs()) {
+            return "Cannot create output folder: " + outputDir;
+        }
+        return null;
+    }
+
+    // Chạy lệnh cho mọi file, trả về số file lỗi
+    private int runBatch() {
+        List<File> files = expandInputs();
+        if (files.isEmpty()) {
+            err.println("Error: no supported subtitle files in input");
+            return 1;
+        }
+
+        if (manifest != null) {
+            int before = files.size();
+            files = manifest.outOfDate(files, this::isCurrent);
+            err.println((before - files.size()) + " file(s) up to date, " + files.size() + " to process");
+            if (files.isEmpty()) {
+                return 0;
+            }
+        }
+        try {
+            return process(files);
+        } finally {
+            saveManifest();
+        }
+    }
+
+    private int process(List<File> files) {
+        if (batchApi && command.equals("translate")) {
+            if (!translateWithBatchApi(files)) return files.size();
+        }
+        FileJob job = new FileJob();
+        // Một file hoặc một job: chạy luôn trên main thread, không dựng thread pool
+        if (jobs == 1 || files.size() == 1) {
+            int failed = 0;
+            for (File file : files) {
+                if (!job.process(file)) failed++;
+            }
+            return failed;
+        }
+
+        BatchConverter batch = new BatchConverter(Math.min(jobs, files.size()));
+        try {
+            return files.size() - batch.run(files, job, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return files.size();
+        } finally {
+            batch.shutdown();
+        }
+    }
+
+    /**
+     * Dịch trước mọi file qua Batch API; kết quả nằm trong nhật ký dịch của từng file kết quả nên
+     * FileJob sau đó chỉ ghép file, chunk nào batch không dịch được thì gọi API trực tiếp
+     * @return false nếu bị dừng
+     */
+    private boolean translateWithBatchApi(List<File> files) {
+        List<File> batchInputs = new ArrayList<>();
+        List<File> batchOutputs = new ArrayList<>();
+        for (File file : files) {
+            try {
+                batchOutputs.add(plannedOutput(file));
+                batchInputs.add(file);
+            } catch (IOException e) {
+                // File không hỗ trợ, để FileJob báo lỗi
+            }
+        }
+        BatchTranslation batch = new BatchTranslation(translator(), batchStateFile);
+        batch.setPollInterval(pollMillis);
+        try {
+            batch.run(batchInputs, batchOutputs, targetLanguage);
+        } catch (IOException e) {
+            String reason = e.getMessage() != null ? e.getMessage() : e.toString();
+            err.println("Error: Batch API failed, translating directly: " + reason);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Xử lý một file và in kết quả; an toàn khi gọi từ nhiều worker thread
+     */
+    private class FileJob implements BatchConverter.FileTask {
+        @Override
+        public boolean process(File input) {
+            try {
+                File planned = plannedOutput(input);
+                // Đọc thông tin file nguồn trước khi xử lý, nếu file đổi trong lúc chạy thì lần sau làm lại
+                ConversionManifest.Stamp stamp = manifest != null ? ConversionManifest.stamp(input) : null;
+                File output = command.equals("convert") ? convert(input, planned) : translate(input, planned);
+                if (manifest != null && !stubTranslation()) {
+                    manifest.record(stamp, planned, output, outputFormat(input), outputModel(), targetLanguage);
+                    // Bản dịch tốn tiền: lưu ngay để lần chạy bị dừng giữa chừng không phải dịch lại
+                    if (command.equals("translate")) saveManifest();
+                }
+                if (firstOutputNanos == 0) firstOutputNanos = System.nanoTime();
+                synchronized (out) {
+                    out.println(output.getPath());
+                }
+                return true;
+            } catch (Exception e) {
+                String reason = e instanceof NoSuchFileException ? "file not found" : e.getMessage();
+                synchronized (err) {
+                    err.println("Error: " + input.getPath() + ": " + reason);
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Theo dõi các thư mục cho tới khi tiến trình bị dừng (Ctrl+C / SIGTERM)
+     */
+    private int runWatch() {
+        for (File input : inputs) {
+            if (!input.isDirectory()) {
+                err.println("Error: not a folder: " + input.getPath());
+                return EXIT_USAGE;
+            }
+        }
+        Translator translator = targetLanguage == null ? null : translator();
+
+        HotFolderWatcher.Listener listener = new HotFolderWatcher.Listener() {
+            @Override
+            public void onConverted(File input, File output) {
+                synchronized (out) {
+                    out.println(output.getPath());
+                }
+            }
+
+            @Override
+            public void onTranslated(File input, File output) {
+                synchronized (out) {
+                    out.println(output.getPath());
+                }
+            }
+
+            @Override
+            public void onError(File input, Exception error) {
+                synchronized (err) {
+                    err.println("Error: " + input.getPath() + ": " + error.getMessage());
+                }
+            }
+        };
+
+        List<HotFolderWatcher> watchers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        try {
+            for (File folder : inputs) {
+                HotFolderWatcher watcher = new HotFolderWatcher(folder, targetFormat, outputDir, jobs,
+                        translator, targetLanguage, debounceMillis, listener);
+                watchers.add(watcher);
+                Thread thread = new Thread(() -> {
+                    try {
+                        watcher.run();
+                    } catch (IOException e) {
+                        listener.onError(folder, e);
+                    }
+                }, "watch-" + folder.getName());
+                threads.add(thread);
+            }
+        } catch (IOException e) {
+            err.println("Error: " + e.getMessage());
+            return EXIT_FAILED;
+        }
+
+        // Dừng gọn gàng: chờ các file đang chuyển đổi xong
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (HotFolderWatcher watcher : watchers) {
+                try {
+                    watcher.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }));
+
+        err.println("Watching " + inputs.size() + " folder(s), press Ctrl+C to stop");
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return EXIT_OK;
+    }
+
+    // Thư mục được mở rộng thành các file phụ đề bên trong (không đệ quy)
+    private List<File> expandInputs() {
+        List<File> files = new ArrayList<>();
+        for (File input : inputs) {
+            if (input.isDirectory()) {
+                File[] children = input.listFiles();
+                if (children == null) continue;
+                Arrays.sort(children);
+                for (File child : children) {
+                    if (child.isFile() && SubtitleFormat.fromFile(child) != null) files.add(child);
+                }
+            } else {
+                files.add(input);
+            }
+        }
+        return files;
+    }
+
+    // File kết quả dự kiến của một input (trước khi đổi tên)
+    private File plannedOutput(File input) throws IOException {
+        SubtitleFormat format = outputFormat(input);
+        if (format == null) {
+            throw new IOException("Unsupported file type");
+        }
+        return command.equals("convert")
+                ? outputFile(input, "", format)
+                : outputFile(input, "_" + targetLanguage, format);
+    }
+
+    // convert ghi ra định dạng đích, translate giữ nguyên định dạng gốc
+    private SubtitleFormat outputFormat(File input) {
+        if (SubtitleFormat.fromFile(input) == null) return null;
+        return command.equals("convert") ? targetFormat : SubtitleFormat.fromFile(input);
+    }
+
+    private String outputModel() {
+        return command.equals("translate") ? modelName : null;
+    }
+
+    // Bản dịch của --backend stub không được ghi vào manifest, lần chạy với API thật vẫn dịch lại
+    private boolean stubTranslation() {
+        return stub != null && command.equals("translate");
+    }
+
+    private boolean isCurrent(File input) {
+        try {
+            return manifest.isCurrent(input, plannedOutput(input), outputFormat(input), outputModel(), targetLanguage);
+        } catch (IOException e) {
+            return false; // File không hỗ trợ, để FileJob báo lỗi
+        }
+    }
+
+    private void saveManifest() {
+        if (manifest == null) return;
+        try {
+            manifest.save();
+        } catch (IOException e) {
+            err.println("Error: cannot save manifest " + manifest.getFile() + ": " + e.getMessage());
+        }
+    }
+
+    private File convert(File input, File output) throws IOException {
+        SubtitleFormat from = SubtitleFormat.fromFile(input);
+        if (from == targetFormat) {
+            Files.copy(input.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Converter.convert(input, from, output, targetFormat);
+        }
+        return rename ? Converter.renameFileKeepFirstNumber(output) : output;
+    }
+
+    private File translate(File input, File output) throws IOException {
+        int failedChunks = translator().translateSrtFile(input, output, targetLanguage);
+        if (failedChunks > 0) {
+            // Không ghi vào manifest: lần chạy sau dịch tiếp các chunk lỗi từ nhật ký
+            throw new IOException(failedChunks + " chunk(s) left untranslated, run again to resume");
+        }
+        return rename ? Converter.renameFileKeepFirstNumber(output) : output;
+    }
+
+    private synchronized Translator translator() {
+        if (translator == null) {
+            TranslationBackend backend = stub != null ? stub : new OpenAiBackend(endpoint, apiKey);
+            translator = new Translator(backend, modelName,
+                    Translator.DEFAULT_CONNECT_TIMEOUT, Translator.DEFAULT_REQUEST_TIMEOUT);
+            translator.setMaxInFlight(inFlight);
+            translator.setTextOnly(!sendSrt);
+            translator.setStreaming(streaming);
+            translator.setLogCallback(message -> {
+                synchronized (err) {
+                    err.println(message);
+                }
+            });
+            if (memoryFile != null) {
+                try {
+                    translator.setMemory(TranslationMemory.shared(memoryFile));
+                } catch (IOException e) {
+                    err.println("Warning: translation memory disabled: " + e.getMessage());
+                }
+            }
+        }
+        return translator;
+    }
+
+    private synchronized void closeMemory() {
+        if (translator == null || translator.getMemory() == null) return;
+        try {
+            translator.getMemory().close();
+        } catch (IOException e) {
+            err.println("Warning: cannot save translation memory: " + e.getMessage());
+        }
+    }
+
+    // Cùng quy tắc đặt tên với giao diện: name.srt -> name[suffix].lrc
+    private File outputFile(File input, String suffix, SubtitleFormat format) {
+        String name = input.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        File dir = outputDir != null ? outputDir : input.getAbsoluteFile().getParentFile();
+        return new File(dir, new StringBuilder(base).append(suffix).append(format.getExtension()).toString());
+    }
+
+    private static SubtitleFormat formatByName(String name) {
+        for (SubtitleFormat format : SubtitleFormat.values()) {
+            if (format.name().equalsIgnoreCase(name)) return format;
+        }
+        return null;
+    }
+
+    // API key lấy từ biến môi trường, nếu không có thì từ file cấu hình của giao diện
+    private static String loadApiKey() {
+        String key = System.getenv("OPENAI_API_KEY");
+        if (key != null && !key.isEmpty()) {
+            return key;
+        }
+        Path configPath = Path.of(CONFIG_FILE);
+        if (!Files.exists(configPath)) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(configPath)) {
+            props.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+        return props.getProperty("openai_api_key");
+    }
+
+    private static void printUsage(PrintStream stream) {
+        stream.println("Usage:");
+        stream.println("  App                                   start the graphical interface");
+        stream.println("  App convert --to srt|vtt|lrc [options] inputs...");
+        stream.println("  App translate --lang en|vi [--model name] [--key key] [options] inputs...");
+        stream.println("  App watch --to srt|vtt|lrc [--lang en|vi] [--debounce ms] [options] folders...");
+        stream.println();
+        stream.println("Options:");
+        stream.println("  --out dir     output folder (default: next to each input)");
+        stream.println("  --jobs N      files processed in parallel (default 1, 0 = all cores)");
+        stream.println("  --rename      keep only the first number of the output file name");
+        stream.println("  --timing      print time to first output and total time to stderr");
+        stream.println("  --in-flight N chunk requests sent concurrently per file when translating (default 4)");
+        stream.println("  --endpoint u  chat completions URL (default the OpenAI API), e.g. a self-hosted gateway");
+        stream.println("  --backend b   translate: openai (default) or stub[:latency=ms,dist=fixed|uniform|normal|lognormal,");
+        stream.println("                spread=x,errors=rate,burst=every/length,rpm=N,batch-delay=ms] to simulate the API offline");
+        stream.println("  --memory f    translate: reuse earlier translations stored in f (default "
+                + TranslationMemory.DEFAULT_FILE + ", none with --backend stub)");
+        stream.println("  --no-memory   translate: always call the API");
+        stream.println("  --send-srt    translate: send whole SRT blocks instead of only the cue text");
+        stream.println("  --stream      translate: stream responses and write each cue as soon as it arrives");
+        stream.println("  --batch-api   translate: send all chunks through the Batch API and wait for the results");
+        stream.println("  --batch-state f  translate --batch-api: pending batch state, rerun to resume waiting (default "
+                + BatchTranslation.DEFAULT_STATE_FILE + ")");
+        stream.println("  --poll s      translate: seconds between Batch API status checks (default 60)");
+        stream.println("  --manifest f  convert/translate: skip inputs unchanged since the last run recorded in f");
+        stream.println("                (translations from --backend stub are not recorded)");
+        stream.println("  --debounce ms watch: wait until a file is unchanged this long (default 1000)");
+        stream.println();
+        stream.println("Inputs may be files or folders. Each written file is printed on stdout.");
+        stream.println("The API key defaults to $OPENAI_API_KEY, then " + CONFIG_FILE + ".");
+    }
+}
@@ -6,26 +6,39 @@ import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.*;
 import javafx.concurrent.Task;
 import javafx.geometry.*;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.scene.control.skin.VirtualFlow;
 import javafx.scene.input.*;
 import javafx.scene.layout.*;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import logic.BatchConverter;
 import logic.Converter;
+import logic.FileStatusIndex;
+import logic.TranslationMemory;
 import logic.Translator;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;  // Add this import
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -51,8 +64,25 @@ public class MainApp extends Application {
     // Biến instance để lưu trữ preview
     private ListView<SubtitleEntry> subtitlePreviewList;
     private ObservableList<SubtitleEntry> subtitleEntries = FXCollections.observableArrayList();
+    // File đang hiện trong preview, để cue dịch xong của batch hiện lên ngay
+    private volatile File previewFile;
+    // Lần đọc preview đang chạy, null nếu không có
+    private Task<List<SubtitleEntry>> previewLoader;
+    // Lần dịch preview đang chạy, bị hủy khi chọn file khác
+    private Task<Void> previewTranslator;
+    private final ExecutorService previewExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "preview-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean previewRefreshPending = false;
     private Label currentFileLabel;
     private Button translatePreviewBtn;
+    private final Button cancelBtn = new Button("⏹ Cancel");
+    private BatchConverter currentBatch;
+    // Trạng thái file trong bảng, renderer chỉ đọc từ đây thay vì stat file mỗi lần vẽ
+    private final FileStatusIndex fileStatus = new FileStatusIndex((file, status) -> refreshFileTableSoon());
+    private final AtomicBoolean fileTableRefreshPending = new AtomicBoolean();
 
     @Override
     public void start(Stage stage) {
@@ -163,6 +193,12 @@ public class MainApp extends Application {
         });
         modelCombo.valueProperty().addListener((obs, oldV, newV) -> saveConfig());
         
+        // Tên file kết quả phụ thuộc các lựa chọn này
+        formatCombo.valueProperty().addListener((obs, oldV, newV) -> updateFileStatusTargets());
+        translateCombo.valueProperty().addListener((obs, oldV, newV) -> updateFileStatusTargets());
+        outputPathField.textProperty().addListener((obs, oldV, newV) -> updateFileStatusTargets());
+        updateFileStatusTargets();
+        
         return topSection;
     }
 
@@ -179,14 +215,11 @@ public class MainApp extends Application {
                 if (file == null || empty) {
                     setStyle("");
                 } else {
-                    // Kiểm tra file đã được dịch chưa
-                    File translatedFile = getTranslatedFile(file, 
-                            translateCombo.getValue().equals("English") ? "en" : "vi");
-                    
-                    if (translatedFile.exists()) {
+                    FileStatusIndex.Status status = fileStatus.get(file);
+                    if (status == FileStatusIndex.Status.TRANSLATED) {
                         // File đã dịch - màu xanh lá
                         setStyle("-fx-background-color: #2a4a2a;");
-                    } else if (getConvertedFile(file).exists() && !getConvertedFile(file).equals(file)) {
+                    } else if (status == FileStatusIndex.Status.CONVERTED) {
                         // File đã convert nhưng chưa dịch - màu xanh dương
                         setStyle("-fx-background-color: #2a3a4a;");
                     } else {
@@ -211,14 +244,11 @@ public class MainApp extends Application {
                     // Lấy file từ dòng hiện tại
                     TableRow<File> row = getTableRow();
                     if (row != null && row.getItem() != null) {
-                        File file = row.getItem();
-                        File translatedFile = getTranslatedFile(file, 
-                                translateCombo.getValue().equals("English") ? "en" : "vi");
-                        
-                        if (translatedFile.exists()) {
+                        FileStatusIndex.Status status = fileStatus.get(row.getItem());
+                        if (status == FileStatusIndex.Status.TRANSLATED) {
                             // File đã dịch - màu xanh lá
                             setStyle("-fx-text-fill: #90EE90;");
-                        } else if (getConvertedFile(file).exists() && !getConvertedFile(file).equals(file)) {
+                        } else if (status == FileStatusIndex.Status.CONVERTED) {
                             // File đã convert - màu xanh dương
                             setStyle("-fx-text-fill: #87CEFA;");
                         } else {
@@ -234,13 +264,10 @@ public class MainApp extends Application {
         // Thêm cột Status
         TableColumn<File, String> statusCol = new TableColumn<>("Status");
         statusCol.setCellValueFactory(data -> {
-            File file = data.getValue();
-            File translatedFile = getTranslatedFile(file, 
-                    translateCombo.getValue().equals("English") ? "en" : "vi");
-            
-            if (translatedFile.exists()) {
+            FileStatusIndex.Status status = fileStatus.get(data.getValue());
+            if (status == FileStatusIndex.Status.TRANSLATED) {
                 return new SimpleStringProperty("✓ Translated");
-            } else if (getConvertedFile(file).exists() && !getConvertedFile(file).equals(file)) {
+            } else if (status == FileStatusIndex.Status.CONVERTED) {
                 return new SimpleStringProperty("✓ Converted");
             } else {
                 return new SimpleStringProperty("Waiting");
@@ -288,6 +315,13 @@ public class MainApp extends Application {
         // Thêm cột mới vào đúng vị trí
         table.getColumns().setAll(nameCol, statusCol, typeCol, sizeCol, pathCol);
         table.setItems(fileList);
+        fileList.forEach(fileStatus::add);
+        fileList.addListener((ListChangeListener<File>) change -> {
+            while (change.next()) {
+                change.getRemoved().forEach(fileStatus::remove);
+                change.getAddedSubList().forEach(fileStatus::add);
+            }
+        });
         table.setPlaceholder(new Label("🎬 Drag & drop subtitle files here\n(Supports: SRT, VTT, LRC)"));
         table.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
         
@@ -403,7 +437,7 @@ public class MainApp extends Application {
         currentFileLabel = new Label("Select a file to preview");
         currentFileLabel.setStyle("-fx-text-fill: #888888; -fx-font-style: italic;");
         
-        subtitlePreviewList = new ListView<>();
+        subtitlePreviewList = new ListView<>(subtitleEntries);
         subtitlePreviewList.setPrefWidth(400);
         subtitlePreviewList.setStyle("-fx-background-color: #1E1E1E;");
         
@@ -479,85 +513,159 @@ public class MainApp extends Application {
         }
     }
 
-    // Phương thức để load nội dung subtitle khi chọn file
+    // Cue của batch vừa dịch xong: nếu thuộc file đang xem thì cập nhật preview (gọi từ thread mạng)
+    private void showStreamedCue(File translatedSource, String cueNumber, String text) {
+        File shown = previewFile;
+        if (shown == null || cueNumber.isEmpty() || !getConvertedFile(shown).equals(translatedSource)) return;
+        Platform.runLater(() -> {
+            if (previewFile != shown) return;
+            for (SubtitleEntry entry : subtitleEntries) {
+                if (entry.index.trim().equals(cueNumber)) entry.translatedText = text;
+            }
+            refreshPreviewSoon();
+        });
+    }
+
+    // Gom nhiều bản dịch tới liền nhau vào một lần vẽ lại (gọi trên FX thread)
+    private void refreshPreviewSoon() {
+        if (previewRefreshPending) return;
+        previewRefreshPending = true;
+        Platform.runLater(() -> {
+            previewRefreshPending = false;
+            subtitlePreviewList.refresh();
+        });
+    }
+
+    // Vị trí các dòng preview đang hiện trong ListView
+    private List<Integer> visiblePreviewEntries() {
+        List<Integer> visible = new ArrayList<>();
+        Node node = subtitlePreviewList.lookup(".virtual-flow");
+        if (node instanceof VirtualFlow) {
+            VirtualFlow<?> flow = (VirtualFlow<?>) node;
+            IndexedCell<?> first = flow.getFirstVisibleCell();
+            IndexedCell<?> last = flow.getLastVisibleCell();
+            if (first != null && last != null) {
+                for (int i = first.getIndex(); i <= last.getIndex(); i++) visible.add(i);
+            }
+        }
+        return visible;
+    }
+
+    // Phương thức để load nội dung subtitle khi chọn file.
+    // File được đọc trên thread nền; chọn file khác thì lần đọc cũ bị hủy và kết quả của nó bị bỏ,
+    // kết quả mới được đưa vào ListView một lần (setAll)
     private void loadSubtitlePreview(File file) {
+        if (previewLoader != null) {
+            previewLoader.cancel();
+            previewLoader = null;
+        }
+        cancelPreviewTranslation();
         if (file == null || !file.exists()) {
             clearSubtitlePreview();
             return;
         }
         
-        translatePreviewBtn.setDisable(false);
-        currentFileLabel.setText("File: " + file.getName());
-        currentFileLabel.setStyle("-fx-text-fill: #CCCCCC;");
-        
-        // Kiểm tra xem file đã được dịch chưa
+        // Đọc combo trên FX thread, phần còn lại trên thread nền
         File translatedFile = getTranslatedFile(file, translateCombo.getValue().equals("English") ? "en" : "vi");
-        if (translatedFile.exists()) {
-            // Nếu đã dịch, hiển thị nội dung dịch
-            currentFileLabel.setText("File: " + file.getName() + " (Translated)");
-            currentFileLabel.setStyle("-fx-text-fill: #90EE90;");
-            
-            // Tải nội dung file đã dịch
-            try {
-                loadTranslatedSubtitlePreview(file, translatedFile);
-                return;
-            } catch (Exception ex) {
-                addTranslationLog("ERROR: Failed to load translated preview for " + file.getName());
-                // Nếu lỗi, vẫn tiếp tục tải file gốc
+        currentFileLabel.setText("File: " + file.getName() + " (loading...)");
+        currentFileLabel.setStyle("-fx-text-fill: #888888;");
+        boolean[] translated = {false};
+        
+        Task<List<SubtitleEntry>> task = new Task<List<SubtitleEntry>>() {
+            @Override
+            protected List<SubtitleEntry> call() throws Exception {
+                if (translatedFile.exists()) {
+                    // Nếu đã dịch, hiển thị nội dung dịch
+                    try {
+                        List<SubtitleEntry> entries = readTranslatedSubtitlePreview(file, translatedFile);
+                        translated[0] = true;
+                        return entries;
+                    } catch (CancellationException ex) {
+                        throw ex;
+                    } catch (Exception ex) {
+                        addTranslationLog("ERROR: Failed to load translated preview for " + file.getName());
+                        // Nếu lỗi, vẫn tiếp tục tải file gốc
+                    }
+                }
+                return readSubtitlePreview(file);
             }
+        };
+        task.setOnSucceeded(e -> {
+            if (previewLoader != task) return; // Đã có lần chọn mới hơn
+            previewLoader = null;
+            previewFile = file;
+            subtitleEntries.setAll(task.getValue());
+            translatePreviewBtn.setDisable(false);
+            if (translated[0]) {
+                currentFileLabel.setText("File: " + file.getName() + " (Translated)");
+                currentFileLabel.setStyle("-fx-text-fill: #90EE90;");
+            } else {
+                currentFileLabel.setText("File: " + file.getName());
+                currentFileLabel.setStyle("-fx-text-fill: #CCCCCC;");
+            }
+            subtitlePreviewList.scrollTo(0);
+        });
+        task.setOnFailed(e -> {
+            if (previewLoader != task) return;
+            previewLoader = null;
+            addTranslationLog("Error loading subtitle preview: " + task.getException().getMessage());
+            clearSubtitlePreview();
+        });
+        previewLoader = task;
+        previewExecutor.execute(task);
+    }
+
+    // Lần chọn file đã đổi: dừng đọc (gọi giữa các block khi parse)
+    private static void checkPreviewCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Preview load cancelled");
         }
+    }
+
+    private List<SubtitleEntry> readSubtitlePreview(File file) throws IOException {
+        List<SubtitleEntry> entries = new ArrayList<>();
+        String content = Files.readString(file.toPath());
+        String ext = getFileExtension(file.getName()).toLowerCase();
         
-        // Tải nội dung file gốc
-        subtitleEntries.clear();
-        try {
-            String content = Files.readString(file.toPath());
-            String ext = getFileExtension(file.getName()).toLowerCase();
+        if (ext.equals(".lrc")) {
+            readLrcPreview(content, entries);
+        } else {
+            // Existing code for SRT/VTT
+            String[] blocks = content.split("\n\n");
             
-            if (ext.equals(".lrc")) {
-                loadLrcPreview(content);
-            } else {
-                // Existing code for SRT/VTT
-                String[] blocks = content.split("\n\n");
+            for (String block : blocks) {
+                checkPreviewCancelled();
+                if (block.trim().isEmpty()) continue;
                 
-                for (String block : blocks) {
-                    if (block.trim().isEmpty()) continue;
+                String[] lines = block.split("\n");
+                if (lines.length >= 3) {
+                    String index = lines[0];
+                    String timestamp = lines[1];
                     
-                    String[] lines = block.split("\n");
-                    if (lines.length >= 3) {
-                        String index = lines[0];
-                        String timestamp = lines[1];
-                        
-                        StringBuilder textBuilder = new StringBuilder();
-                        for (int i = 2; i < lines.length; i++) {
-                            if (i > 2) textBuilder.append("\n");
-                            textBuilder.append(lines[i]);
-                        }
-                        
-                        // Tạo entry mới (chưa dịch)
-                        subtitleEntries.add(new SubtitleEntry(index, timestamp, textBuilder.toString(), ""));
+                    StringBuilder textBuilder = new StringBuilder();
+                    for (int i = 2; i < lines.length; i++) {
+                        if (i > 2) textBuilder.append("\n");
+                        textBuilder.append(lines[i]);
                     }
+                    
+                    // Tạo entry mới (chưa dịch)
+                    entries.add(new SubtitleEntry(index, timestamp, textBuilder.toString(), ""));
                 }
             }
-            
-            subtitlePreviewList.setItems(subtitleEntries);
-            
-        } catch (Exception e) {
-            e.printStackTrace();
-            addTranslationLog("Error loading subtitle preview: " + e.getMessage());
         }
+        return entries;
     }
 
     // Thêm phương thức tải file subtitle đã dịch
-    private void loadTranslatedSubtitlePreview(File originalFile, File translatedFile) throws Exception {
-        subtitleEntries.clear();
-        
+    private List<SubtitleEntry> readTranslatedSubtitlePreview(File originalFile, File translatedFile) throws IOException {
+        List<SubtitleEntry> entries = new ArrayList<>();
         String originalContent = Files.readString(originalFile.toPath());
         String translatedContent = Files.readString(translatedFile.toPath());
         
         String ext = getFileExtension(originalFile.getName()).toLowerCase();
         
         if (ext.equals(".lrc")) {
-            loadLrcComparisonPreview(originalContent, translatedContent);
+            readLrcComparisonPreview(originalContent, translatedContent, entries);
         } else {
             // Xử lý SRT/VTT
             String[] originalBlocks = originalContent.split("\n\n");
@@ -566,6 +674,7 @@ public class MainApp extends Application {
             int minSize = Math.min(originalBlocks.length, translatedBlocks.length);
             
             for (int i = 0; i < minSize; i++) {
+                checkPreviewCancelled();
                 String[] originalLines = originalBlocks[i].split("\n");
                 String[] translatedLines = translatedBlocks[i].split("\n");
                 
@@ -585,7 +694,7 @@ public class MainApp extends Application {
                         translatedTextBuilder.append(translatedLines[j]);
                     }
                     
-                    subtitleEntries.add(new SubtitleEntry(
+                    entries.add(new SubtitleEntry(
                         index, timestamp, 
                         originalTextBuilder.toString(),
                         translatedTextBuilder.toString()
@@ -593,12 +702,12 @@ public class MainApp extends Application {
                 }
             }
         }
-        
-        subtitlePreviewList.setItems(subtitleEntries);
+        return entries;
     }
 
     // Phương thức để load file LRC so sánh
-    private void loadLrcComparisonPreview(String originalContent, String translatedContent) {
+    private void readLrcComparisonPreview(String originalContent, String translatedContent,
+                                          List<SubtitleEntry> entries) {
         String[] originalLines = originalContent.split("\n");
         String[] translatedLines = translatedContent.split("\n");
         Pattern timePattern = Pattern.compile("\\[(\\d{2}):(\\d{2})\\.(\\d{2})\\](.*)");
@@ -607,6 +716,7 @@ public class MainApp extends Application {
         int translatedIndex = 0;
         
         for (String line : originalLines) {
+            checkPreviewCancelled();
             Matcher matcher = timePattern.matcher(line);
             if (matcher.matches()) {
                 String min = matcher.group(1);
@@ -627,7 +737,7 @@ public class MainApp extends Application {
                     }
                 }
                 
-                subtitleEntries.add(new SubtitleEntry(
+                entries.add(new SubtitleEntry(
                     String.valueOf(index++), 
                     displayTimestamp, 
                     text,
@@ -637,8 +747,22 @@ public class MainApp extends Application {
         }
     }
 
+    // Không gửi tiếp các chunk dịch của file preview cũ
+    private void cancelPreviewTranslation() {
+        if (previewTranslator != null) {
+            previewTranslator.cancel();
+            previewTranslator = null;
+        }
+    }
+
     // Phương thức clear preview
     private void clearSubtitlePreview() {
+        if (previewLoader != null) {
+            previewLoader.cancel();
+            previewLoader = null;
+        }
+        cancelPreviewTranslation();
+        previewFile = null;
         subtitleEntries.clear();
         currentFileLabel.setText("Select a file to preview");
         currentFileLabel.setStyle("-fx-text-fill: #888888; -fx-font-style: italic;");
@@ -657,28 +781,50 @@ public class MainApp extends Application {
             return;
         }
         
+        // Dịch theo chunk, song song, dòng đang hiện trước; mỗi chunk xong thì điền ngay vào preview.
+        // Dòng đã dịch thì gửi text rỗng (bỏ qua)
+        File shown = previewFile;
+        List<Integer> visible = visiblePreviewEntries();
+        List<SubtitleEntry> entries = new ArrayList<>(subtitleEntries);
+        List<String> texts = new ArrayList<>(entries.size());
+        int pending = 0;
+        for (SubtitleEntry entry : entries) {
+            boolean untranslated = entry.translatedText == null || entry.translatedText.isEmpty();
+            texts.add(untranslated ? entry.originalText : "");
+            if (untranslated) pending++;
+        }
+        int lines = pending;
+        String apiKey = apiKeyField.getText().trim();
+        String targetLang = translateCombo.getValue().equals("English") ? "en" : "vi";
+        
         Task<Void> task = new Task<Void>() {
             @Override
             protected Void call() throws Exception {
-                Translator translator = new Translator(apiKeyField.getText().trim());
-                String targetLang = translateCombo.getValue().equals("English") ? "en" : "vi";
+                Translator translator = withMemory(new Translator(apiKey));
+                updateMessage(String.format("Translating %d preview lines...", lines));
                 
-                for (int i = 0; i < subtitleEntries.size(); i++) {
-                    SubtitleEntry entry = subtitleEntries.get(i);
-                    if (entry.translatedText == null || entry.translatedText.isEmpty()) {
-                        updateMessage(String.format("Translating preview line %d/%d...", i + 1, subtitleEntries.size()));
-                        
-                        try {
-                            String translated = translator.translateText(entry.originalText, targetLang);
-                            final int index = i;
-                            Platform.runLater(() -> {
-                                subtitleEntries.get(index).translatedText = translated;
-                                subtitlePreviewList.refresh();
-                            });
-                        } catch (Exception e) {
-                            addTranslationLog("ERROR: Failed to translate line " + (i + 1) + " - " + e.getMessage());
-                        }
-                    }
+                AtomicInteger done = new AtomicInteger();
+                CompletableFuture<Integer> translation = translator.translateTextsAsync(texts, targetLang, visible,
+                        (index, translated) -> {
+                    updateMessage(String.format("Translated preview line %d/%d...", done.incrementAndGet(), lines));
+                    Platform.runLater(() -> {
+                        // Đã chuyển sang file khác thì bỏ
+                        if (previewFile != shown) return;
+                        entries.get(index).translatedText = translated;
+                        refreshPreviewSoon();
+                    });
+                });
+                // Task bị hủy (chọn file khác) thì các chunk chưa gửi bị bỏ
+                if (isCancelled()) translation.cancel(true);
+                int failed;
+                try {
+                    failed = translation.get();
+                } catch (InterruptedException | CancellationException e) {
+                    translation.cancel(true);
+                    return null;
+                }
+                if (failed > 0) {
+                    addTranslationLog("ERROR: Failed to translate " + failed + " preview lines");
                 }
                 updateMessage("Preview translation completed.");
                 return null;
@@ -698,16 +844,24 @@ public class MainApp extends Application {
             showAlert("Error", "Failed to translate preview: " + task.getException().getMessage(), Alert.AlertType.ERROR);
         });
         
+        task.setOnCancelled(e -> {
+            statusLabel.textProperty().unbind();
+            setStatus("Preview translation cancelled");
+        });
+        
+        cancelPreviewTranslation();
+        previewTranslator = task;
         new Thread(task).start();
     }
 
     // Thêm phương thức đọc file LRC
-    private void loadLrcPreview(String content) {
+    private void readLrcPreview(String content, List<SubtitleEntry> entries) {
         String[] lines = content.split("\n");
         Pattern timePattern = Pattern.compile("\\[(\\d{2}):(\\d{2})\\.(\\d{2})\\](.*)");
         
         int index = 1;
         for (String line : lines) {
+            checkPreviewCancelled();
             Matcher matcher = timePattern.matcher(line);
             if (matcher.matches()) {
                 String min = matcher.group(1);
@@ -719,7 +873,7 @@ public class MainApp extends Application {
                 String displayTimestamp = "[" + timestamp + "]";
                 
                 // LRC không có số thứ tự, ta tự tạo
-                subtitleEntries.add(new SubtitleEntry(
+                entries.add(new SubtitleEntry(
                     String.valueOf(index++), 
                     displayTimestamp, 
                     text,
@@ -744,6 +898,15 @@ public class MainApp extends Application {
         convertBtn.setDefaultButton(true);
         convertBtn.setOnAction(e -> convertFiles());
         
+        cancelBtn.setDisable(true);
+        cancelBtn.setOnAction(e -> {
+            // Hủy các file chưa xử lý, file đang chạy sẽ được làm nốt
+            if (currentBatch != null) {
+                currentBatch.cancel();
+                setStatus("Cancelling...");
+            }
+        });
+        
         Button aboutBtn = new Button("ℹ️ About");
         aboutBtn.setOnAction(e -> showAbout());
         
@@ -754,7 +917,7 @@ public class MainApp extends Application {
         statusLabel.setStyle("-fx-font-style: italic;");
         
         // Layout
-        HBox buttonRow = new HBox(10, addBtn, removeBtn, clearBtn, new Region(), convertBtn, aboutBtn);
+        HBox buttonRow = new HBox(10, addBtn, removeBtn, clearBtn, new Region(), convertBtn, cancelBtn, aboutBtn);
         buttonRow.setAlignment(Pos.CENTER_LEFT);
         HBox.setHgrow(buttonRow.getChildren().get(3), Priority.ALWAYS); // Spacer
         
@@ -878,51 +1041,69 @@ public class MainApp extends Application {
 
         // Save config trước khi dịch
         if (needTranslation) saveConfig();
+        
+        if (currentBatch != null) {
+            setStatus("Conversion already running");
+            return;
+        }
+        
+        BatchConverter batch = new BatchConverter();
+        currentBatch = batch;
+        cancelBtn.setDisable(false);
 
         Task<Void> task = new Task<Void>() {
             @Override
             protected Void call() throws Exception {
                 int total = fileList.size();
-                int success = 0;
                 
                 // Tạo translator với model đã chọn
                 Translator translator = needTranslation ? 
-                    new Translator(apiKeyField.getText().trim(), modelCombo.getValue()) : null;
+                    withMemory(new Translator(apiKeyField.getText().trim(), modelCombo.getValue())) : null;
                 
                 // Thiết lập callback ghi log
                 if (translator != null) {
                     translator.setLogCallback(log -> addTranslationLog(log));
+                    // Stream từng cue để file đang xem trong preview được cập nhật ngay khi dịch
+                    translator.setStreaming(true);
+                    translator.setCueListener((file, position, cueNumber, text) -> showStreamedCue(file, cueNumber, text));
                     addTranslationLog("Starting translation job with model: " + modelCombo.getValue());
                 }
                 
                 String targetLang = translateCombo.getValue().equals("English") ? "en" : "vi";
                 
-                for (int i = 0; i < total; i++) {
-                    File inputFile = fileList.get(i);
-                    updateMessage("Processing: " + inputFile.getName());
-                    updateProgress(i, total);
-                    
-                    boolean converted = convertFile(inputFile);
-                    if (converted && needTranslation) {
-                        // Translate the converted file
-                        File convertedFile = getConvertedFile(inputFile);
-                        if (convertedFile.exists()) {
-                            try {
-                                updateMessage("Translating: " + inputFile.getName());
-                                File translatedFile = getTranslatedFile(inputFile, targetLang);
-                                translator.translateSrtFile(convertedFile, translatedFile, targetLang);
-                            } catch (Exception e) {
-                                updateMessage("Translation failed for: " + inputFile.getName());
+                // Chạy song song trên tất cả các core
+                int success;
+                try {
+                    success = batch.run(fileList, inputFile -> {
+                        updateMessage("Processing: " + inputFile.getName());
+                        
+                        boolean converted = convertFile(inputFile);
+                        if (converted && needTranslation) {
+                            // Translate the converted file
+                            File convertedFile = getConvertedFile(inputFile);
+                            if (convertedFile.exists()) {
+                                try {
+                                    updateMessage("Translating: " + inputFile.getName());
+                                    File translatedFile = getTranslatedFile(inputFile, targetLang);
+                                    translator.translateSrtFile(convertedFile, translatedFile, targetLang);
+                                } catch (Exception e) {
+                                    updateMessage("Translation failed for: " + inputFile.getName());
+                                }
                             }
                         }
-                    }
-                    
-                    if (converted) success++;
-                    
-                    // Cập nhật UI để hiển thị file mới
-                    Platform.runLater(() -> table.refresh());
-                    
-                    Thread.sleep(100); // Small delay for UI responsiveness
+                        return converted;
+                    }, (row, file, converted, completed, count) -> {
+                        updateProgress(completed, count);
+                        // Kiểm tra lại file này, bảng được vẽ lại khi trạng thái đổi
+                        fileStatus.invalidate(file);
+                    });
+                } finally {
+                    batch.shutdown();
+                }
+                
+                if (batch.isCancelled()) {
+                    updateMessage("Processing cancelled: " + success + "/" + total + " files");
+                    return null;
                 }
                 
                 updateProgress(total, total);
@@ -942,7 +1123,13 @@ public class MainApp extends Application {
         progressBar.setVisible(true);
         
         task.setOnSucceeded(e -> {
+            currentBatch = null;
+            cancelBtn.setDisable(true);
             progressBar.setVisible(false);
+            if (batch.isCancelled()) {
+                table.refresh();
+                return;
+            }
             showAlert("Processing Complete", 
                      "All files have been processed successfully!", 
                      Alert.AlertType.INFORMATION);
@@ -950,6 +1137,8 @@ public class MainApp extends Application {
         });
         
         task.setOnFailed(e -> {
+            currentBatch = null;
+            cancelBtn.setDisable(true);
             progressBar.setVisible(false);
             setStatus("Processing failed: " + task.getException().getMessage());
         });
@@ -958,23 +1147,31 @@ public class MainApp extends Application {
     }
 
     private File getConvertedFile(File inputFile) {
-        String targetFormat = formatCombo.getValue().toLowerCase();
-        File outputDir = outputPathField.getText().isEmpty() ? 
-                       inputFile.getParentFile() : 
-                       new File(outputPathField.getText());
-        
-        String newName = inputFile.getName().replaceAll("\\.(srt|vtt|lrc)$", "." + targetFormat);
-        return new File(outputDir, newName);
+        return FileStatusIndex.convertedFile(inputFile, outputDirectory(), formatCombo.getValue().toLowerCase());
     }
 
     private File getTranslatedFile(File inputFile, String targetLang) {
-        String targetFormat = formatCombo.getValue().toLowerCase();
-        File outputDir = outputPathField.getText().isEmpty() ? 
-                       inputFile.getParentFile() : 
-                       new File(outputPathField.getText());
-        
-        String newName = inputFile.getName().replaceAll("\\.(srt|vtt|lrc)$", "_" + targetLang + "." + targetFormat);
-        return new File(outputDir, newName);
+        return FileStatusIndex.translatedFile(inputFile, outputDirectory(),
+                formatCombo.getValue().toLowerCase(), targetLang);
+    }
+
+    // null nếu ghi cạnh file gốc
+    private File outputDirectory() {
+        return outputPathField.getText().isEmpty() ? null : new File(outputPathField.getText());
+    }
+
+    private void updateFileStatusTargets() {
+        fileStatus.setTargets(formatCombo.getValue(), outputDirectory(),
+                "English".equals(translateCombo.getValue()) ? "en" : "vi");
+    }
+
+    // Gộp các thay đổi trạng thái dồn dập thành một lần vẽ lại bảng
+    private void refreshFileTableSoon() {
+        if (!fileTableRefreshPending.compareAndSet(false, true)) return;
+        Platform.runLater(() -> {
+            fileTableRefreshPending.set(false);
+            if (table != null) table.refresh();
+        });
     }
 
     private boolean convertFile(File inputFile) {
@@ -986,22 +1183,12 @@ public class MainApp extends Application {
             File outputFile = getConvertedFile(inputFile);
             
             // Convert based on format
-            if (ext.equals(".srt") && targetFormat.equals("lrc")) {
-                Converter.convertSrtToLrc(inputFile, outputFile);
-            } else if (ext.equals(".vtt") && targetFormat.equals("lrc")) {
-                Converter.convertVttToLrc(inputFile, outputFile);
-            } else if (ext.equals(".lrc") && targetFormat.equals("srt")) {
-                Converter.convertLrcToSrt(inputFile, outputFile);
-            } else if (ext.equals(".lrc") && targetFormat.equals("vtt")) {
-                Converter.convertLrcToVtt(inputFile, outputFile);
-            } else if (ext.equals(".srt") && targetFormat.equals("srt") ||
-                      ext.equals(".vtt") && targetFormat.equals("vtt") ||
-                      ext.equals(".lrc") && targetFormat.equals("lrc")) {
+            if (ext.equals("." + targetFormat)) {
                 // Same format, just copy
                 Files.copy(inputFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
             } else {
-                // Default case: just copy for now
-                Files.copy(inputFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                // Chuyển đổi qua mô hình cue chung, hỗ trợ mọi cặp SRT/VTT/LRC
+                Converter.convert(inputFile, outputFile);
             }
             
             // Rename if requested
@@ -1190,6 +1377,16 @@ public class MainApp extends Application {
         }
     }
 
+    // Bộ nhớ dịch dùng chung cho mọi lần dịch: câu đã dịch rồi không gọi API lại
+    private Translator withMemory(Translator translator) {
+        try {
+            translator.setMemory(TranslationMemory.shared(new File(TranslationMemory.DEFAULT_FILE)));
+        } catch (IOException e) {
+            addTranslationLog("Translation memory disabled: " + e.getMessage());
+        }
+        return translator;
+    }
+
     // Thêm log mới
     private void addTranslationLog(String message) {
         String timestamp = java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
@@ -2,13 +2,20 @@ package ui;
 
 import javax.swing.*;
 import javax.swing.border.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableCellRenderer;
 
+import logic.BatchConverter;
 import logic.Converter;
+import logic.FileStatusIndex;
+import logic.TranslationMemory;
 import logic.Translator;
 
 import java.awt.*;
@@ -20,13 +27,19 @@ import java.nio.file.*;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class SwingMainApp extends JFrame {
     private static final long serialVersionUID = 1L;
     private static final String CONFIG_FILE = "user_config.properties";
+    // Chiều cao ước lượng của một dòng preview trước khi được vẽ lần đầu
+    private static final int PREVIEW_ROW_HEIGHT = 80;
     
     // UI Components
     private JTable fileTable;
@@ -41,8 +54,11 @@ public class SwingMainApp extends JFrame {
     private JProgressBar progressBar;
     private JLabel statusLabel;
     private JButton translatePreviewBtn;
+    private JButton cancelBtn;
     private JLabel currentFileLabel;
-    private JPanel subtitlePreviewPanel;
+    // Preview ảo hóa: chỉ các dòng đang hiện được vẽ, bằng một renderer dùng chung
+    private JTable subtitlePreviewTable;
+    private SubtitlePreviewModel subtitlePreviewModel;
     private JScrollPane subtitlePreviewScrollPane;
     private DefaultListModel<String> logListModel;
     private JList<String> logList;
@@ -52,7 +68,21 @@ public class SwingMainApp extends JFrame {
     // Data
     private java.util.List<File> fileList = new ArrayList<>();
     private java.util.List<SubtitleEntry> subtitleEntries = new ArrayList<>();
+    // Số thứ tự cue -> dòng trong preview, để cue dịch xong của batch không phải duyệt cả bảng
+    private Map<String, Integer> previewRowsByCue = new HashMap<>();
+    // Độ rộng bảng preview lúc tính chiều cao dòng lần cuối
+    private int previewRowsWidth = -1;
+    // File đang hiện trong preview, để cue dịch xong của batch hiện lên ngay
+    private volatile File previewFile;
+    // Lần đọc preview đang chạy, null nếu không có
+    private PreviewLoadWorker previewLoader;
+    // Lần dịch preview đang chạy, bị hủy khi chọn file khác
+    private TranslatePreviewWorker previewTranslator;
     private boolean isDarkMode = false;  // Mặc định là Dark Mode
+    private ConversionWorker currentWorker;
+    // Trạng thái file trong bảng, renderer chỉ đọc từ đây thay vì stat file mỗi lần vẽ
+    private final FileStatusIndex fileStatus = new FileStatusIndex((file, status) -> repaintFileTableSoon());
+    private final AtomicBoolean fileTableRepaintPending = new AtomicBoolean();
     
     public SwingMainApp() {
         setTitle("Subtitle Converter Pro - Swing Edition");
@@ -159,6 +189,19 @@ public class SwingMainApp extends JFrame {
         topPanel.add(new JSeparator());
         topPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 10, 0));
         
+        // Tên file kết quả phụ thuộc các lựa chọn này
+        formatCombo.addActionListener(e -> updateFileStatusTargets());
+        translateCombo.addActionListener(e -> updateFileStatusTargets());
+        outputPathField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { updateFileStatusTargets(); }
+            @Override
+            public void removeUpdate(DocumentEvent e) { updateFileStatusTargets(); }
+            @Override
+            public void changedUpdate(DocumentEvent e) { updateFileStatusTargets(); }
+        });
+        updateFileStatusTargets();
+        
         return topPanel;
     }
     
@@ -172,6 +215,13 @@ public class SwingMainApp extends JFrame {
             public boolean isCellEditable(int row, int column) {
                 return false;
             }
+            
+            @Override
+            public Object getValueAt(int row, int column) {
+                // Cột Status đọc từ index, không lưu trong model
+                if (column == 1) return statusText(fileStatus.get(fileList.get(row)));
+                return super.getValueAt(row, column);
+            }
         };
         
         fileTableModel.addColumn("File Name");
@@ -328,11 +378,27 @@ public class SwingMainApp extends JFrame {
         currentFileLabel.setFont(currentFileLabel.getFont().deriveFont(Font.ITALIC));
         
         // Preview content panel
-        subtitlePreviewPanel = new JPanel();
-        subtitlePreviewPanel.setLayout(new BoxLayout(subtitlePreviewPanel, BoxLayout.Y_AXIS));
-        subtitlePreviewPanel.setBackground(new Color(30, 30, 30));
+        subtitlePreviewModel = new SubtitlePreviewModel();
+        subtitlePreviewTable = new JTable(subtitlePreviewModel);
+        subtitlePreviewTable.setTableHeader(null);
+        subtitlePreviewTable.setShowGrid(false);
+        subtitlePreviewTable.setIntercellSpacing(new Dimension(0, 0));
+        subtitlePreviewTable.setRowSelectionAllowed(false);
+        subtitlePreviewTable.setFillsViewportHeight(true);
+        subtitlePreviewTable.setBackground(new Color(30, 30, 30));
+        subtitlePreviewTable.setRowHeight(PREVIEW_ROW_HEIGHT);
+        subtitlePreviewTable.setDefaultRenderer(Object.class, new SubtitleEntryRenderer());
+        // Cột đổi độ rộng thì text xuống dòng khác: tính lại chiều cao mọi dòng (không làm khi vẽ)
+        subtitlePreviewTable.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                if (subtitlePreviewTable.getWidth() != previewRowsWidth) {
+                    updatePreviewRowHeights(0, subtitleEntries.size());
+                }
+            }
+        });
         
-        subtitlePreviewScrollPane = new JScrollPane(subtitlePreviewPanel);
+        subtitlePreviewScrollPane = new JScrollPane(subtitlePreviewTable);
         subtitlePreviewScrollPane.getVerticalScrollBar().setUnitIncrement(16);
         subtitlePreviewScrollPane.setBorder(null);
         
@@ -368,6 +434,10 @@ public class SwingMainApp extends JFrame {
         JButton convertBtn = new JButton("🔄 Convert All");
         convertBtn.addActionListener(e -> convertFiles());
         
+        cancelBtn = new JButton("⏹ Cancel");
+        cancelBtn.setEnabled(false);
+        cancelBtn.addActionListener(e -> cancelConversion());
+        
         JButton aboutBtn = new JButton("ℹ️ About");
         aboutBtn.addActionListener(e -> showAbout());
         
@@ -376,6 +446,7 @@ public class SwingMainApp extends JFrame {
         buttonPanel.add(clearBtn);
         buttonPanel.add(Box.createHorizontalGlue());
         buttonPanel.add(convertBtn);
+        buttonPanel.add(cancelBtn);
         buttonPanel.add(aboutBtn);
         
         // Progress section
@@ -541,15 +612,8 @@ public class SwingMainApp extends JFrame {
     private void addFileToTable(File file) {
         // Add file to master list
         fileList.add(file);
-        
-        // Get status for this file
-        String status = "Waiting";
-        File translatedFile = getTranslatedFile(file, translateCombo.getSelectedItem().equals("English") ? "en" : "vi");
-        if (translatedFile.exists()) {
-            status = "✓ Translated";
-        } else if (getConvertedFile(file).exists() && !getConvertedFile(file).equals(file)) {
-            status = "✓ Converted";
-        }
+        // Trạng thái được kiểm tra trên thread nền
+        fileStatus.add(file);
         
         // Add to table with file details
         String ext = getFileExtension(file.getName()).toUpperCase();
@@ -557,7 +621,7 @@ public class SwingMainApp extends JFrame {
         
         fileTableModel.addRow(new Object[] { 
             file.getName(), 
-            status,
+            null, // Xem getValueAt
             ext,
             size,
             file.getAbsolutePath()
@@ -571,7 +635,7 @@ public class SwingMainApp extends JFrame {
         // Remove in reverse order to maintain correct indices
         Arrays.sort(selectedRows);
         for (int i = selectedRows.length - 1; i >= 0; i--) {
-            fileList.remove(selectedRows[i]);
+            fileStatus.remove(fileList.remove(selectedRows[i]));
             fileTableModel.removeRow(selectedRows[i]);
         }
         
@@ -591,6 +655,7 @@ public class SwingMainApp extends JFrame {
         
         if (option == JOptionPane.OK_OPTION) {
             fileList.clear();
+            fileStatus.clear();
             fileTableModel.setRowCount(0);
             setStatus("Cleared all files");
         }
@@ -602,6 +667,11 @@ public class SwingMainApp extends JFrame {
             return;
         }
         
+        if (currentWorker != null) {
+            setStatus("Conversion already running");
+            return;
+        }
+        
         // Check if translation is needed and API key is provided
         boolean needTranslation = !translateCombo.getSelectedItem().equals("None");
         if (needTranslation && apiKeyField.getText().trim().isEmpty()) {
@@ -634,9 +704,18 @@ public class SwingMainApp extends JFrame {
             }
         });
         
+        currentWorker = worker;
+        cancelBtn.setEnabled(true);
         worker.execute();
     }
     
+    private void cancelConversion() {
+        if (currentWorker != null) {
+            currentWorker.cancelBatch();
+            setStatus("Cancelling...");
+        }
+    }
+    
     private void toggleDarkMode() {
         isDarkMode = darkModeCheck.isSelected();
         applyTheme();
@@ -730,90 +809,141 @@ public class SwingMainApp extends JFrame {
     
     // --- SUBTITLE PREVIEW FUNCTIONS ---
     
+    /**
+     * Đọc file preview trên thread nền; chọn file khác thì lần đọc cũ bị hủy và kết quả của nó
+     * bị bỏ, kết quả mới được đưa lên bảng một lần
+     */
     private void loadSubtitlePreview(File file) {
+        if (previewLoader != null) {
+            previewLoader.cancel(true);
+            previewLoader = null;
+        }
+        cancelPreviewTranslation();
         if (file == null || !file.exists()) {
             clearSubtitlePreview();
             return;
         }
         
-        translatePreviewBtn.setEnabled(true);
-        currentFileLabel.setText("File: " + file.getName());
-        currentFileLabel.setForeground(new Color(204, 204, 204));
-        
-        // Check for translated file
+        // Đọc combo trên EDT, phần còn lại trên thread nền
         File translatedFile = getTranslatedFile(file, 
                 translateCombo.getSelectedItem().equals("English") ? "en" : "vi");
-                
-        if (translatedFile.exists()) {
-            // If translated, show comparison
-            currentFileLabel.setText("File: " + file.getName() + " (Translated)");
-            currentFileLabel.setForeground(new Color(144, 238, 144));
-            
-            try {
-                loadTranslatedSubtitlePreview(file, translatedFile);
-                return;
-            } catch (Exception ex) {
-                addTranslationLog("ERROR: Failed to load translated preview for " + file.getName());
-                // If error, continue to load original file
-            }
+        currentFileLabel.setText("File: " + file.getName() + " (loading...)");
+        currentFileLabel.setForeground(new Color(136, 136, 136));
+        previewLoader = new PreviewLoadWorker(file, translatedFile);
+        previewLoader.execute();
+    }
+    
+    /**
+     * Các dòng preview của file: so sánh với bản dịch nếu đã có, không thì chỉ text gốc
+     * (chạy trên thread nền)
+     */
+    private class PreviewLoadWorker extends SwingWorker<List<SubtitleEntry>, Void> {
+        private final File file;
+        private final File translatedFile;
+        private boolean translated = false;
+        
+        PreviewLoadWorker(File file, File translatedFile) {
+            this.file = file;
+            this.translatedFile = translatedFile;
         }
         
-        // Load original file content
-        subtitleEntries.clear();
-        subtitlePreviewPanel.removeAll();
+        @Override
+        protected List<SubtitleEntry> doInBackground() throws Exception {
+            if (translatedFile.exists()) {
+                // If translated, show comparison
+                try {
+                    List<SubtitleEntry> entries = readTranslatedSubtitlePreview(file, translatedFile);
+                    translated = true;
+                    return entries;
+                } catch (CancellationException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    addTranslationLog("ERROR: Failed to load translated preview for " + file.getName());
+                    // If error, continue to load original file
+                }
+            }
+            return readSubtitlePreview(file);
+        }
         
-        try {
-            String content = Files.readString(file.toPath());
-            String ext = getFileExtension(file.getName()).toLowerCase();
+        @Override
+        protected void done() {
+            // Đã có lần chọn mới hơn
+            if (previewLoader != this || isCancelled()) return;
+            previewLoader = null;
+            List<SubtitleEntry> entries;
+            try {
+                entries = get();
+            } catch (InterruptedException | ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                addTranslationLog("Error loading subtitle preview: " + cause.getMessage());
+                entries = new ArrayList<>();
+            }
             
-            if (ext.equals(".lrc")) {
-                loadLrcPreview(content);
+            previewFile = file;
+            subtitleEntries = entries;
+            translatePreviewBtn.setEnabled(true);
+            if (translated) {
+                currentFileLabel.setText("File: " + file.getName() + " (Translated)");
+                currentFileLabel.setForeground(new Color(144, 238, 144));
             } else {
-                // For SRT/VTT
-                String[] blocks = content.split("\n\n");
-                
-                for (String block : blocks) {
-                    if (block.trim().isEmpty()) continue;
-                    
-                    String[] lines = block.split("\n");
-                    if (lines.length >= 3) {
-                        String index = lines[0];
-                        String timestamp = lines[1];
-                        
-                        StringBuilder textBuilder = new StringBuilder();
-                        for (int i = 2; i < lines.length; i++) {
-                            if (i > 2) textBuilder.append("\n");
-                            textBuilder.append(lines[i]);
-                        }
-                        
-                        SubtitleEntry entry = new SubtitleEntry(
-                            index, timestamp, textBuilder.toString(), ""
-                        );
-                        
-                        subtitleEntries.add(entry);
-                        subtitlePreviewPanel.add(createSubtitleEntryPanel(entry));
+                currentFileLabel.setText("File: " + file.getName());
+                currentFileLabel.setForeground(new Color(204, 204, 204));
+            }
+            previewLoaded();
+        }
+    }
+    
+    // Lần chọn file đã đổi: dừng đọc (gọi giữa các block khi parse)
+    private static void checkPreviewCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Preview load cancelled");
+        }
+    }
+    
+    private List<SubtitleEntry> readSubtitlePreview(File file) throws IOException {
+        List<SubtitleEntry> entries = new ArrayList<>();
+        String content = Files.readString(file.toPath());
+        String ext = getFileExtension(file.getName()).toLowerCase();
+
+        if (ext.equals(".lrc")) {
+            readLrcPreview(content, entries);
+        } else {
+            // For SRT/VTT
+            String[] blocks = content.split("\n\n");
+
+            for (String block : blocks) {
+                checkPreviewCancelled();
+                if (block.trim().isEmpty()) continue;
+
+                String[] lines = block.split("\n");
+                if (lines.length >= 3) {
+                    String index = lines[0];
+                    String timestamp = lines[1];
+
+                    StringBuilder textBuilder = new StringBuilder();
+                    for (int i = 2; i < lines.length; i++) {
+                        if (i > 2) textBuilder.append("\n");
+                        textBuilder.append(lines[i]);
                     }
+
+                    SubtitleEntry entry = new SubtitleEntry(
+                        index, timestamp, textBuilder.toString(), ""
+                    );
+
+                    entries.add(entry);
                 }
             }
-            
-            subtitlePreviewPanel.revalidate();
-            subtitlePreviewPanel.repaint();
-            SwingUtilities.invokeLater(() -> {
-                subtitlePreviewScrollPane.getVerticalScrollBar().setValue(0);
-            });
-            
-        } catch (Exception e) {
-            e.printStackTrace();
-            addTranslationLog("Error loading subtitle preview: " + e.getMessage());
         }
+        return entries;
     }
     
-    private void loadLrcPreview(String content) {
+    private void readLrcPreview(String content, List<SubtitleEntry> entries) {
         String[] lines = content.split("\n");
         Pattern timePattern = Pattern.compile("\\[(\\d{2}):(\\d{2})\\.(\\d{2})\\](.*)");
         
         int index = 1;
         for (String line : lines) {
+            checkPreviewCancelled();
             Matcher matcher = timePattern.matcher(line);
             if (matcher.matches()) {
                 String min = matcher.group(1);
@@ -831,13 +961,13 @@ public class SwingMainApp extends JFrame {
                     ""
                 );
                 
-                subtitleEntries.add(entry);
-                subtitlePreviewPanel.add(createSubtitleEntryPanel(entry));
+                entries.add(entry);
             }
         }
     }
     
-    private void loadLrcComparisonPreview(String originalContent, String translatedContent) {
+    private void readLrcComparisonPreview(String originalContent, String translatedContent,
+                                          List<SubtitleEntry> entries) {
         String[] originalLines = originalContent.split("\n");
         String[] translatedLines = translatedContent.split("\n");
         Pattern timePattern = Pattern.compile("\\[(\\d{2}):(\\d{2})\\.(\\d{2})\\](.*)");
@@ -846,6 +976,7 @@ public class SwingMainApp extends JFrame {
         int translatedIndex = 0;
         
         for (String line : originalLines) {
+            checkPreviewCancelled();
             Matcher matcher = timePattern.matcher(line);
             if (matcher.matches()) {
                 String min = matcher.group(1);
@@ -873,23 +1004,20 @@ public class SwingMainApp extends JFrame {
                     translatedText
                 );
                 
-                subtitleEntries.add(entry);
-                subtitlePreviewPanel.add(createSubtitleEntryPanel(entry));
+                entries.add(entry);
             }
         }
     }
     
-    private void loadTranslatedSubtitlePreview(File originalFile, File translatedFile) throws Exception {
-        subtitleEntries.clear();
-        subtitlePreviewPanel.removeAll();
-        
+    private List<SubtitleEntry> readTranslatedSubtitlePreview(File originalFile, File translatedFile) throws IOException {
+        List<SubtitleEntry> entries = new ArrayList<>();
         String originalContent = Files.readString(originalFile.toPath());
         String translatedContent = Files.readString(translatedFile.toPath());
         
         String ext = getFileExtension(originalFile.getName()).toLowerCase();
         
         if (ext.equals(".lrc")) {
-            loadLrcComparisonPreview(originalContent, translatedContent);
+            readLrcComparisonPreview(originalContent, translatedContent, entries);
         } else {
             // For SRT/VTT
             String[] originalBlocks = originalContent.split("\n\n");
@@ -898,6 +1026,7 @@ public class SwingMainApp extends JFrame {
             int minSize = Math.min(originalBlocks.length, translatedBlocks.length);
             
             for (int i = 0; i < minSize; i++) {
+                checkPreviewCancelled();
                 String[] originalLines = originalBlocks[i].split("\n");
                 String[] translatedLines = translatedBlocks[i].split("\n");
                 
@@ -923,93 +1052,91 @@ public class SwingMainApp extends JFrame {
                         translatedTextBuilder.toString()
                     );
                     
-                    subtitleEntries.add(entry);
-                    subtitlePreviewPanel.add(createSubtitleEntryPanel(entry));
+                    entries.add(entry);
                 }
             }
         }
         
-        subtitlePreviewPanel.revalidate();
-        subtitlePreviewPanel.repaint();
+        return entries;
+    }
+    
+    // Danh sách dòng đã thay: báo cho bảng một lần rồi tính chiều cao các dòng
+    private void previewLoaded() {
+        previewRowsByCue = new HashMap<>();
+        for (int i = 0; i < subtitleEntries.size(); i++) {
+            previewRowsByCue.putIfAbsent(subtitleEntries.get(i).index.trim(), i);
+        }
+        subtitlePreviewModel.fireTableDataChanged();
+        subtitlePreviewTable.setRowHeight(PREVIEW_ROW_HEIGHT);
+        updatePreviewRowHeights(0, subtitleEntries.size());
         SwingUtilities.invokeLater(() -> {
             subtitlePreviewScrollPane.getVerticalScrollBar().setValue(0);
         });
     }
     
-    private JPanel createSubtitleEntryPanel(SubtitleEntry entry) {
-        JPanel panel = new JPanel();
-        panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
-        panel.setBackground(new Color(45, 45, 45));
-        panel.setBorder(BorderFactory.createCompoundBorder(
-            BorderFactory.createEmptyBorder(5, 5, 5, 5),
-            BorderFactory.createCompoundBorder(
-                BorderFactory.createLineBorder(new Color(60, 60, 60), 1),
-                BorderFactory.createEmptyBorder(8, 8, 8, 8)
-            )
-        ));
-        panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, panel.getPreferredSize().height));
-        
-        // Header with index and timestamp
-        JPanel header = new JPanel(new BorderLayout());
-        header.setOpaque(false);
-        
-        JLabel indexLabel = new JLabel(entry.index);
-        indexLabel.setForeground(Color.WHITE);
-        indexLabel.setFont(indexLabel.getFont().deriveFont(Font.BOLD));
-        
-        JLabel timeLabel = new JLabel(entry.timestamp);
-        timeLabel.setForeground(new Color(136, 136, 136));
-        timeLabel.setFont(timeLabel.getFont().deriveFont(Font.PLAIN, 12f));
-        
-        header.add(indexLabel, BorderLayout.WEST);
-        header.add(timeLabel, BorderLayout.EAST);
-        
-        // Original text
-        JTextArea originalText = new JTextArea(entry.originalText);
-        originalText.setEditable(false);
-        originalText.setWrapStyleWord(true);
-        originalText.setLineWrap(true);
-        originalText.setBackground(new Color(45, 45, 45));
-        originalText.setForeground(new Color(204, 204, 204));
-        originalText.setBorder(BorderFactory.createEmptyBorder(5, 0, 0, 0));
-        originalText.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 13));
-        
-        panel.add(header);
-        panel.add(Box.createVerticalStrut(5));
-        panel.add(originalText);
-        
-        // Add translated text if available
-        if (entry.translatedText != null && !entry.translatedText.isEmpty()) {
-            JSeparator separator = new JSeparator();
-            separator.setForeground(new Color(85, 85, 85));
-            
-            JTextArea translatedTextArea = new JTextArea(entry.translatedText);
-            translatedTextArea.setEditable(false);
-            translatedTextArea.setWrapStyleWord(true);
-            translatedTextArea.setLineWrap(true);
-            translatedTextArea.setBackground(new Color(45, 45, 45));
-            translatedTextArea.setForeground(new Color(144, 238, 144)); // Light green
-            translatedTextArea.setBorder(BorderFactory.createEmptyBorder(5, 0, 0, 0));
-            translatedTextArea.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 13));
-            
-            panel.add(Box.createVerticalStrut(5));
-            panel.add(separator);
-            panel.add(Box.createVerticalStrut(5));
-            panel.add(translatedTextArea);
+    // Cue của batch vừa dịch xong: nếu thuộc file đang xem thì cập nhật preview (gọi từ thread mạng)
+    private void showStreamedCue(File translatedSource, String cueNumber, String text) {
+        File shown = previewFile;
+        if (shown == null || cueNumber.isEmpty() || !getConvertedFile(shown).equals(translatedSource)) return;
+        SwingUtilities.invokeLater(() -> {
+            if (previewFile != shown) return;
+            Integer row = previewRowsByCue.get(cueNumber);
+            if (row == null) return;
+            subtitleEntries.get(row).translatedText = text;
+            previewRowChanged(row);
+        });
+    }
+    
+    // Một dòng preview đổi nội dung (thêm bản dịch): vẽ lại với chiều cao mới
+    private void previewRowChanged(int row) {
+        subtitlePreviewModel.fireTableRowsUpdated(row, row);
+        updatePreviewRowHeights(row, row + 1);
+    }
+    
+    // Chiều cao theo nội dung của các dòng [from, to) ở độ rộng cột hiện tại; gọi trên thread UI
+    private void updatePreviewRowHeights(int from, int to) {
+        previewRowsWidth = subtitlePreviewTable.getWidth();
+        if (previewRowsWidth <= 0) return; // Chưa hiện: tính khi bảng có kích thước
+        for (int row = from; row < to && row < subtitlePreviewTable.getRowCount(); row++) {
+            Component component = subtitlePreviewTable.prepareRenderer(
+                    subtitlePreviewTable.getCellRenderer(row, 0), row, 0);
+            int height = component.getPreferredSize().height;
+            if (subtitlePreviewTable.getRowHeight(row) != height) {
+                subtitlePreviewTable.setRowHeight(row, height);
+            }
+        }
+    }
+    
+    // Vị trí các dòng preview đang hiện trong khung cuộn
+    private List<Integer> visiblePreviewEntries() {
+        Rectangle view = subtitlePreviewScrollPane.getViewport().getViewRect();
+        List<Integer> visible = new ArrayList<>();
+        int first = subtitlePreviewTable.rowAtPoint(new Point(0, view.y));
+        if (first < 0) return visible;
+        int last = subtitlePreviewTable.rowAtPoint(new Point(0, view.y + view.height - 1));
+        if (last < 0) last = subtitleEntries.size() - 1;
+        for (int i = first; i <= last; i++) visible.add(i);
+        return visible;
+    }
+    
+    // Không gửi tiếp các chunk dịch của file preview cũ
+    private void cancelPreviewTranslation() {
+        if (previewTranslator != null) {
+            previewTranslator.cancelTranslation();
+            previewTranslator = null;
         }
-        
-        // Set full width
-        panel.setAlignmentX(Component.LEFT_ALIGNMENT);
-        originalText.setAlignmentX(Component.LEFT_ALIGNMENT);
-        
-        return panel;
     }
     
     private void clearSubtitlePreview() {
-        subtitleEntries.clear();
-        subtitlePreviewPanel.removeAll();
-        subtitlePreviewPanel.revalidate();
-        subtitlePreviewPanel.repaint();
+        if (previewLoader != null) {
+            previewLoader.cancel(true);
+            previewLoader = null;
+        }
+        cancelPreviewTranslation();
+        previewFile = null;
+        subtitleEntries = new ArrayList<>();
+        previewRowsByCue = new HashMap<>();
+        subtitlePreviewModel.fireTableDataChanged();
         
         currentFileLabel.setText("Select a file to preview");
         currentFileLabel.setForeground(new Color(136, 136, 136));
@@ -1037,31 +1164,49 @@ public class SwingMainApp extends JFrame {
             return;
         }
         
-        // Create worker for translation
-        TranslatePreviewWorker worker = new TranslatePreviewWorker();
-        worker.execute();
+        // Create worker for translation, dòng đang hiện được dịch trước
+        cancelPreviewTranslation();
+        previewTranslator = new TranslatePreviewWorker(previewFile, subtitleEntries, visiblePreviewEntries());
+        previewTranslator.execute();
     }
     
     // --- FILES & CONVERSION ---
     
     private File getConvertedFile(File inputFile) {
-        String targetFormat = formatCombo.getSelectedItem().toString().toLowerCase();
-        File outputDir = outputPathField.getText().isEmpty() ? 
-                       inputFile.getParentFile() : 
-                       new File(outputPathField.getText());
-        
-        String newName = inputFile.getName().replaceAll("\\.(srt|vtt|lrc)$", "." + targetFormat);
-        return new File(outputDir, newName);
+        return FileStatusIndex.convertedFile(inputFile, outputDirectory(),
+                formatCombo.getSelectedItem().toString().toLowerCase());
     }
     
     private File getTranslatedFile(File inputFile, String targetLang) {
-        String targetFormat = formatCombo.getSelectedItem().toString().toLowerCase();
-        File outputDir = outputPathField.getText().isEmpty() ? 
-                       inputFile.getParentFile() : 
-                       new File(outputPathField.getText());
-        
-        String newName = inputFile.getName().replaceAll("\\.(srt|vtt|lrc)$", "_" + targetLang + "." + targetFormat);
-        return new File(outputDir, newName);
+        return FileStatusIndex.translatedFile(inputFile, outputDirectory(),
+                formatCombo.getSelectedItem().toString().toLowerCase(), targetLang);
+    }
+    
+    // null nếu ghi cạnh file gốc
+    private File outputDirectory() {
+        return outputPathField.getText().isEmpty() ? null : new File(outputPathField.getText());
+    }
+    
+    private void updateFileStatusTargets() {
+        fileStatus.setTargets(formatCombo.getSelectedItem().toString(), outputDirectory(),
+                "English".equals(translateCombo.getSelectedItem()) ? "en" : "vi");
+    }
+    
+    private static String statusText(FileStatusIndex.Status status) {
+        switch (status) {
+            case TRANSLATED: return "✓ Translated";
+            case CONVERTED: return "✓ Converted";
+            default: return "Waiting";
+        }
+    }
+    
+    // Gộp các thay đổi trạng thái dồn dập thành một lần vẽ lại bảng
+    private void repaintFileTableSoon() {
+        if (!fileTableRepaintPending.compareAndSet(false, true)) return;
+        SwingUtilities.invokeLater(() -> {
+            fileTableRepaintPending.set(false);
+            if (fileTable != null) fileTable.repaint();
+        });
     }
     
     private boolean convertFile(File inputFile) {
@@ -1073,22 +1218,12 @@ public class SwingMainApp extends JFrame {
             File outputFile = getConvertedFile(inputFile);
             
             // Convert based on format
-            if (ext.equals(".srt") && targetFormat.equals("lrc")) {
-                Converter.convertSrtToLrc(inputFile, outputFile);
-            } else if (ext.equals(".vtt") && targetFormat.equals("lrc")) {
-                Converter.convertVttToLrc(inputFile, outputFile);
-            } else if (ext.equals(".lrc") && targetFormat.equals("srt")) {
-                Converter.convertLrcToSrt(inputFile, outputFile);
-            } else if (ext.equals(".lrc") && targetFormat.equals("vtt")) {
-                Converter.convertLrcToVtt(inputFile, outputFile);
-            } else if (ext.equals(".srt") && targetFormat.equals("srt") ||
-                      ext.equals(".vtt") && targetFormat.equals("vtt") ||
-                      ext.equals(".lrc") && targetFormat.equals("lrc")) {
+            if (ext.equals("." + targetFormat)) {
                 // Same format, just copy
                 Files.copy(inputFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
             } else {
-                // Default case: just copy for now
-                Files.copy(inputFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                // Chuyển đổi qua mô hình cue chung, hỗ trợ mọi cặp SRT/VTT/LRC
+                Converter.convert(inputFile, outputFile);
             }
             
             // Rename if requested
@@ -1119,6 +1254,16 @@ public class SwingMainApp extends JFrame {
         });
     }
     
+    // Bộ nhớ dịch dùng chung cho mọi lần dịch: câu đã dịch rồi không gọi API lại
+    private Translator withMemory(Translator translator) {
+        try {
+            translator.setMemory(TranslationMemory.shared(new File(TranslationMemory.DEFAULT_FILE)));
+        } catch (IOException e) {
+            addTranslationLog("Translation memory disabled: " + e.getMessage());
+        }
+        return translator;
+    }
+    
     private void saveLogsToFile() {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Save Translation Logs");
@@ -1246,6 +1391,114 @@ public class SwingMainApp extends JFrame {
         }
     }
     
+    /**
+     * Model của bảng preview: đọc thẳng subtitleEntries, mỗi bản dịch mới chỉ báo đúng dòng đó
+     */
+    private class SubtitlePreviewModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int getRowCount() {
+            return subtitleEntries.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 1;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            return subtitleEntries.get(row);
+        }
+    }
+    
+    /**
+     * Vẽ một dòng preview (số thứ tự, timestamp, text gốc và bản dịch). Một component dùng cho
+     * mọi dòng; chiều cao dòng được chỉnh theo text khi dòng được vẽ.
+     */
+    private class SubtitleEntryRenderer extends JPanel implements TableCellRenderer {
+        private static final long serialVersionUID = 1L;
+        // Viền ngoài 5 + đường viền 1 + lề trong 8 mỗi bên
+        private static final int HORIZONTAL_INSETS = 28;
+        private final JLabel indexLabel = new JLabel();
+        private final JLabel timeLabel = new JLabel();
+        private final JTextArea originalText = createTextArea(new Color(204, 204, 204));
+        private final JTextArea translatedText = createTextArea(new Color(144, 238, 144)); // Light green
+        private final JSeparator separator = new JSeparator();
+        private final Component translatedGap = Box.createVerticalStrut(5);
+        private final Component separatorGap = Box.createVerticalStrut(5);
+
+        SubtitleEntryRenderer() {
+            setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+            setBackground(new Color(45, 45, 45));
+            setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createMatteBorder(5, 5, 5, 5, new Color(30, 30, 30)),
+                BorderFactory.createCompoundBorder(
+                    BorderFactory.createLineBorder(new Color(60, 60, 60), 1),
+                    BorderFactory.createEmptyBorder(8, 8, 8, 8)
+                )
+            ));
+            
+            // Header with index and timestamp
+            JPanel header = new JPanel(new BorderLayout());
+            header.setOpaque(false);
+            indexLabel.setForeground(Color.WHITE);
+            indexLabel.setFont(indexLabel.getFont().deriveFont(Font.BOLD));
+            timeLabel.setForeground(new Color(136, 136, 136));
+            timeLabel.setFont(timeLabel.getFont().deriveFont(Font.PLAIN, 12f));
+            header.add(indexLabel, BorderLayout.WEST);
+            header.add(timeLabel, BorderLayout.EAST);
+            separator.setForeground(new Color(85, 85, 85));
+            
+            header.setAlignmentX(Component.LEFT_ALIGNMENT);
+            originalText.setAlignmentX(Component.LEFT_ALIGNMENT);
+            separator.setAlignmentX(Component.LEFT_ALIGNMENT);
+            translatedText.setAlignmentX(Component.LEFT_ALIGNMENT);
+            add(header);
+            add(Box.createVerticalStrut(5));
+            add(originalText);
+            add(translatedGap);
+            add(separator);
+            add(separatorGap);
+            add(translatedText);
+        }
+
+        private JTextArea createTextArea(Color foreground) {
+            JTextArea area = new JTextArea();
+            area.setEditable(false);
+            area.setWrapStyleWord(true);
+            area.setLineWrap(true);
+            area.setBackground(new Color(45, 45, 45));
+            area.setForeground(foreground);
+            area.setBorder(BorderFactory.createEmptyBorder(5, 0, 0, 0));
+            area.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 13));
+            return area;
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                boolean hasFocus, int row, int column) {
+            SubtitleEntry entry = (SubtitleEntry) value;
+            indexLabel.setText(entry.index);
+            timeLabel.setText(entry.timestamp);
+            originalText.setText(entry.originalText);
+            boolean translated = entry.translatedText != null && !entry.translatedText.isEmpty();
+            translatedText.setText(translated ? entry.translatedText : "");
+            translatedGap.setVisible(translated);
+            separator.setVisible(translated);
+            separatorGap.setVisible(translated);
+            translatedText.setVisible(translated);
+            
+            // Text xuống dòng theo độ rộng cột: đặt độ rộng trước khi hỏi chiều cao
+            int textWidth = Math.max(1, table.getColumnModel().getColumn(column).getWidth() - HORIZONTAL_INSETS);
+            originalText.setSize(textWidth, Short.MAX_VALUE);
+            translatedText.setSize(textWidth, Short.MAX_VALUE);
+            // Chiều cao dòng do updatePreviewRowHeights() đặt, không đổi trong lúc vẽ
+            return this;
+        }
+    }
+    
     private class LogCellRenderer extends DefaultListCellRenderer {
         private static final long serialVersionUID = 1L;
 
@@ -1273,6 +1526,7 @@ public class SwingMainApp extends JFrame {
     private class ConversionWorker extends SwingWorker<Integer, String> {
         private boolean needTranslation;
         private String targetLang;
+        private final BatchConverter batch = new BatchConverter();
         
         public ConversionWorker(boolean needTranslation, String targetLang) {
             this.needTranslation = needTranslation;
@@ -1282,63 +1536,57 @@ public class SwingMainApp extends JFrame {
         @Override
         protected Integer doInBackground() throws Exception {
             int total = fileList.size();
-            int success = 0;
             
             // Create translator with selected model
             Translator translator = needTranslation ? 
-                    new Translator(apiKeyField.getText().trim(), modelCombo.getSelectedItem().toString()) : null;
+                    withMemory(new Translator(apiKeyField.getText().trim(), modelCombo.getSelectedItem().toString())) : null;
             
             // Set up logging
             if (translator != null) {
                 translator.setLogCallback(message -> {
                     publish(message);
                 });
+                // Stream từng cue để file đang xem trong preview được cập nhật ngay khi dịch
+                translator.setStreaming(true);
+                translator.setCueListener((file, position, cueNumber, text) -> showStreamedCue(file, cueNumber, text));
                 publish("Starting translation job with model: " + modelCombo.getSelectedItem().toString());
             }
             
-            for (int i = 0; i < total; i++) {
-                // Update progress
-                setProgress((i * 100) / total);
-                File inputFile = fileList.get(i);
-                publish("Processing: " + inputFile.getName());
-                
-                // Convert file
-                boolean converted = convertFile(inputFile);
-                if (converted && needTranslation) {
-                    // Translate the converted file
-                    File convertedFile = getConvertedFile(inputFile);
-                    if (convertedFile.exists()) {
-                        try {
-                            publish("Translating: " + inputFile.getName());
-                            File translatedFile = getTranslatedFile(inputFile, targetLang);
-                            translator.translateSrtFile(convertedFile, translatedFile, targetLang);
-                        } catch (Exception e) {
-                            publish("Translation failed for: " + inputFile.getName() + " - " + e.getMessage());
-                        }
-                    }
-                }
-                
-                if (converted) success++;
-                
-                // Update UI with file status
-                final int row = i;
-                SwingUtilities.invokeLater(() -> {
-                    String status = "Waiting";
-                    File file = fileList.get(row);
-                    File translatedFile = getTranslatedFile(file, targetLang);
+            // Chạy song song trên tất cả các core
+            int success;
+            try {
+                success = batch.run(fileList, inputFile -> {
+                    publish("Processing: " + inputFile.getName());
                     
-                    if (translatedFile.exists()) {
-                        status = "✓ Translated";
-                    } else if (getConvertedFile(file).exists() && !getConvertedFile(file).equals(file)) {
-                        status = "✓ Converted";
+                    // Convert file
+                    boolean converted = convertFile(inputFile);
+                    if (converted && needTranslation) {
+                        // Translate the converted file
+                        File convertedFile = getConvertedFile(inputFile);
+                        if (convertedFile.exists()) {
+                            try {
+                                publish("Translating: " + inputFile.getName());
+                                File translatedFile = getTranslatedFile(inputFile, targetLang);
+                                translator.translateSrtFile(convertedFile, translatedFile, targetLang);
+                            } catch (Exception e) {
+                                publish("Translation failed for: " + inputFile.getName() + " - " + e.getMessage());
+                            }
+                        }
                     }
+                    return converted;
+                }, (row, file, converted, completed, count) -> {
+                    setProgress((completed * 100) / count);
                     
-                    fileTableModel.setValueAt(status, row, 1);
-                    fileTable.repaint();
+                    // Kiểm tra lại file này, bảng được vẽ lại khi trạng thái đổi
+                    fileStatus.invalidate(file);
                 });
-                
-                // Small delay for UI responsiveness
-                Thread.sleep(100);
+            } finally {
+                batch.shutdown();
+            }
+            
+            if (batch.isCancelled()) {
+                publish("Processing cancelled: " + success + "/" + total + " files successful.");
+                return success;
             }
             
             // Set final progress
@@ -1359,11 +1607,22 @@ public class SwingMainApp extends JFrame {
             }
         }
         
+        // Hủy các file chưa xử lý, file đang chạy sẽ được làm nốt
+        void cancelBatch() {
+            batch.cancel();
+        }
+        
         @Override
         protected void done() {
+            currentWorker = null;
+            cancelBtn.setEnabled(false);
             try {
-                int success = get();
+                get();
                 progressBar.setVisible(false);
+                if (batch.isCancelled()) {
+                    setStatus("Processing cancelled");
+                    return;
+                }
                 JOptionPane.showMessageDialog(
                     SwingMainApp.this,
                     "All files have been processed successfully!",
@@ -1383,36 +1642,61 @@ public class SwingMainApp extends JFrame {
         }
     }
     
+    /**
+     * Dịch các dòng preview chưa có bản dịch theo chunk, song song, dòng đang hiện trước;
+     * mỗi chunk xong thì điền ngay vào preview
+     */
     private class TranslatePreviewWorker extends SwingWorker<Void, String> {
+        private final File shown;
+        private final List<SubtitleEntry> entries;
+        private final List<Integer> visible;
+        private volatile CompletableFuture<Integer> translation;
+        private volatile boolean cancelled = false;
+        
+        TranslatePreviewWorker(File shown, List<SubtitleEntry> entries, List<Integer> visible) {
+            this.shown = shown;
+            this.entries = new ArrayList<>(entries);
+            this.visible = visible;
+        }
+        
         @Override
         protected Void doInBackground() throws Exception {
-            Translator translator = new Translator(apiKeyField.getText().trim());
+            Translator translator = withMemory(new Translator(apiKeyField.getText().trim()));
             String targetLang = translateCombo.getSelectedItem().equals("English") ? "en" : "vi";
             
-            for (int i = 0; i < subtitleEntries.size(); i++) {
-                SubtitleEntry entry = subtitleEntries.get(i);
-                if (entry.translatedText == null || entry.translatedText.isEmpty()) {
-                    publish(String.format("Translating preview line %d/%d...", i + 1, subtitleEntries.size()));
-                    
-                    try {
-                        String translated = translator.translateText(entry.originalText, targetLang);
-                        entry.translatedText = translated;
-                        
-                        // Update UI for this entry
-                        final int index = i;
-                        SwingUtilities.invokeLater(() -> {
-                            subtitlePreviewPanel.removeAll();
-                            for (SubtitleEntry e : subtitleEntries) {
-                                subtitlePreviewPanel.add(createSubtitleEntryPanel(e));
-                            }
-                            subtitlePreviewPanel.revalidate();
-                            subtitlePreviewPanel.repaint();
-                        });
-                        
-                    } catch (Exception e) {
-                        addTranslationLog("ERROR: Failed to translate line " + (i + 1) + " - " + e.getMessage());
-                    }
-                }
+            // Dòng đã dịch thì gửi text rỗng (bỏ qua)
+            List<String> texts = new ArrayList<>(entries.size());
+            int total = 0;
+            for (SubtitleEntry entry : entries) {
+                boolean pending = entry.translatedText == null || entry.translatedText.isEmpty();
+                texts.add(pending ? entry.originalText : "");
+                if (pending) total++;
+            }
+            int lines = total;
+            publish(String.format("Translating %d preview lines...", lines));
+            
+            AtomicInteger done = new AtomicInteger();
+            translation = translator.translateTextsAsync(texts, targetLang, visible, (index, translated) -> {
+                publish(String.format("Translated preview line %d/%d...", done.incrementAndGet(), lines));
+                SwingUtilities.invokeLater(() -> {
+                    // Đã chuyển sang file khác (hoặc nạp lại) thì bỏ
+                    SubtitleEntry entry = entries.get(index);
+                    if (previewFile != shown || index >= subtitleEntries.size()
+                            || subtitleEntries.get(index) != entry) return;
+                    entry.translatedText = translated;
+                    previewRowChanged(index);
+                });
+            });
+            // Bị hủy trước khi có future
+            if (cancelled) translation.cancel(true);
+            int failed;
+            try {
+                failed = translation.get();
+            } catch (CancellationException e) {
+                return null;
+            }
+            if (failed > 0) {
+                addTranslationLog("ERROR: Failed to translate " + failed + " preview lines");
             }
             
             publish("Preview translation completed.");
@@ -1426,8 +1710,22 @@ public class SwingMainApp extends JFrame {
             }
         }
         
+        /**
+         * Gọi trên thread UI khi chọn file khác: các chunk chưa gửi bị bỏ
+         */
+        void cancelTranslation() {
+            cancelled = true;
+            CompletableFuture<Integer> current = translation;
+            if (current != null) current.cancel(true);
+        }
+        
         @Override
         protected void done() {
+            if (previewTranslator == this) previewTranslator = null;
+            if (cancelled) {
+                setStatus("Preview translation cancelled");
+                return;
+            }
             try {
                 get();
                 setStatus("Preview translation completed successfully!");